@@ -1,14 +1,54 @@
 package nl.sourceassist.datastorageutility;
 
+import nl.sourceassist.datastorageutility.commander.BatchRunner;
 import nl.sourceassist.datastorageutility.commander.Commander;
-import nl.sourceassist.datastorageutility.datastructure.RootNode;
-import nl.sourceassist.datastorageutility.files.File;
-import nl.sourceassist.datastorageutility.files.FileFactory;
+import nl.sourceassist.datastorageutility.commander.Watcher;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 public class DataStorageUtility {
+    private static final String PARALLELISM_OPTION = "--parallelism=";
+    private static final String WATCH_OPTION = "--watch";
+
+    /**
+     * Start the interactive utility, or run job specs without interaction when their paths are provided.
+     * The amount of jobs running at the same time is set with --parallelism=[amount],
+     * by default a job per processor.
+     * With --watch, a single job spec is merged and merged again whenever its inputs change, until stopped.
+     *
+     * @param args the options and the paths of the job specs, none for the interactive utility
+     * @throws IOException whenever the strings of the application can not be loaded
+     */
     public static void main(String[] args) throws IOException {
+        if (args.length > 0) {
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            boolean watch = false;
+            List<Path> specs = new ArrayList<>();
+
+            for (String arg : args) {
+                if (arg.startsWith(PARALLELISM_OPTION)) {
+                    parallelism = Integer.parseInt(arg.substring(PARALLELISM_OPTION.length()));
+                }
+
+                else if (arg.equals(WATCH_OPTION)) {
+                    watch = true;
+                }
+
+                else {
+                    specs.add(Path.of(arg));
+                }
+            }
+
+            if (watch) {
+                System.exit(watch(specs) ? 0 : 1);
+            }
+
+            System.exit(new BatchRunner(parallelism).run(specs) ? 0 : 1);
+        }
+
         boolean isDone = false;
         Commander commander = new Commander();
 
@@ -16,6 +56,36 @@ public class DataStorageUtility {
             isDone = commander.execute();
         }
     }
+
+    /**
+     * Merge a job spec and keep its output up to date until the watcher is stopped.
+     *
+     * @param specs the paths of the job specs, which should hold exactly one path
+     * @return false when the job could not be watched
+     * @throws IOException whenever the spec can not be read or its inputs can not be watched
+     */
+    private static boolean watch(List<Path> specs) throws IOException {
+        if (specs.size() != 1) {
+            System.out.println("Watching needs exactly one job spec");
+            return false;
+        }
+
+        try (Watcher watcher = new Watcher(specs.get(0))) {
+            watcher.mergeAll();
+            watcher.watch();
+        }
+
+        catch (IllegalArgumentException e) {
+            System.out.println(e.toString());
+            return false;
+        }
+
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return true;
+    }
 }
 
 //File file = FileFactory.OpenFileFactory("INSERT-PATH");
@@ -0,0 +1,125 @@
+package nl.sourceassist.datastorageutility.commander;
+
+import nl.sourceassist.datastorageutility.files.File;
+import nl.sourceassist.datastorageutility.files.FileFactory;
+import nl.sourceassist.datastorageutility.parser.Parser;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The BatchRunner executes merges described by job specs, without any interaction.
+ * The jobs run concurrently in a single JVM, with at most a configured amount of jobs at the same time.
+ * All jobs share a single merger, so together they use a single pool of parser threads.
+ * Every job reports whether it succeeded, a failing job does not stop the others.
+ *
+ * @see JobSpec the format of a job spec.
+ */
+public class BatchRunner {
+    private final int parallelism;
+    private final long heapBudget;
+    private final boolean offHeap;
+
+    /**
+     * Create a runner of which the memory settings of the merges are read from system properties,
+     * like those of the interactive commander.
+     *
+     * @param parallelism the maximum amount of jobs running at the same time
+     * @throws IllegalArgumentException whenever the parallelism is lower than 1
+     */
+    public BatchRunner(int parallelism) {
+        this(parallelism, Long.getLong(Merger.HEAP_BUDGET_PROPERTY, 0), Boolean.getBoolean(Merger.OFF_HEAP_PROPERTY));
+    }
+
+    /**
+     * Create a runner with memory settings for the merges.
+     *
+     * @param parallelism the maximum amount of jobs running at the same time
+     * @param heapBudget the amount of bytes the merged files of a job may take up, 0 to keep them in memory
+     * @param offHeap whether the text of the merged files is stored outside the heap
+     * @throws IllegalArgumentException whenever the parallelism is lower than 1
+     */
+    public BatchRunner(int parallelism, long heapBudget, boolean offHeap) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("The parallelism should be at least 1");
+        }
+
+        this.parallelism = parallelism;
+        this.heapBudget = heapBudget;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Run the jobs described by the provided specs and wait for all of them to finish.
+     *
+     * @param specs the paths of the job specs
+     * @return true if every job succeeded
+     */
+    public boolean run(List<Path> specs) {
+        ExecutorService jobs = Executors.newFixedThreadPool(Math.min(this.parallelism, Math.max(1, specs.size())));
+        boolean succeeded = true;
+
+        try (Merger merger = new Merger(this.heapBudget, this.offHeap)) {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (Path spec : specs) {
+                results.add(jobs.submit(() -> this.runJob(spec, merger)));
+            }
+
+            for (Future<Boolean> result : results) {
+                succeeded &= result.get();
+            }
+        }
+
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            succeeded = false;
+        }
+
+        catch (ExecutionException e) {
+            System.out.println(e.getCause().toString());
+            succeeded = false;
+        }
+
+        finally {
+            jobs.shutdownNow();
+        }
+
+        return succeeded;
+    }
+
+    /**
+     * Run a single job, reporting its outcome.
+     *
+     * @param path the path of the job spec
+     * @param merger the merger shared by all jobs
+     * @return true if the job succeeded
+     */
+    private boolean runJob(Path path, Merger merger) {
+        String name = path.getFileName().toString();
+
+        try {
+            JobSpec spec = JobSpec.read(path);
+
+            List<File> files = new ArrayList<>();
+            for (String input : spec.inputs()) {
+                files.add(FileFactory.OpenFileFactory(input));
+            }
+
+            Parser parser = spec.createParser();
+            File output = FileFactory.CreateFileFactory(spec.output());
+            boolean merged = merger.merge(files, parser, output, error -> System.out.println(name + ": " + error));
+            System.out.println(name + (merged ? ": merged into " + spec.output() : ": failed"));
+            return merged;
+        }
+
+        catch (Exception e) {
+            System.out.println(name + ": " + e);
+            return false;
+        }
+    }
+}
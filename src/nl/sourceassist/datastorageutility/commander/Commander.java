@@ -1,18 +1,26 @@
 package nl.sourceassist.datastorageutility.commander;
 
-import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
-import nl.sourceassist.datastorageutility.datastructure.IdentifiableNode;
 import nl.sourceassist.datastorageutility.datastructure.RootNode;
 import nl.sourceassist.datastorageutility.files.File;
 import nl.sourceassist.datastorageutility.files.FileFactory;
+import nl.sourceassist.datastorageutility.parser.DataDictionaryReplacer;
+import nl.sourceassist.datastorageutility.parser.DataRegexReplacer;
 import nl.sourceassist.datastorageutility.parser.DataStringReplacer;
+import nl.sourceassist.datastorageutility.parser.KeyDictionaryReplacer;
+import nl.sourceassist.datastorageutility.parser.KeyRegexReplacer;
 import nl.sourceassist.datastorageutility.parser.KeyStringReplacer;
 import nl.sourceassist.datastorageutility.parser.NodeParser;
 import nl.sourceassist.datastorageutility.parser.Parser;
 import nl.sourceassist.datastorageutility.state.State;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.function.Consumer;
 
@@ -21,13 +29,39 @@ import java.util.function.Consumer;
  * Whenever a state is finished, the commander moves the program to the next state.
  */
 public class Commander {
+    private final long heapBudget;
+    private final boolean offHeap;
     private State state;
     private Properties properties;
     private Console console;
     private ArrayList<File> files;
     private Parser parser;
+    private RootNode mergedData;
 
+    /**
+     * Create a commander of which the memory settings for merging are read from system properties.
+     * The heap budget is read from datastorageutility.heapBudget, in bytes, and storing text outside the heap
+     * is enabled by datastorageutility.offHeap. Without the properties, merged files are kept on the heap.
+     *
+     * @throws IOException whenever the strings of the application can not be loaded
+     */
     public Commander() throws IOException {
+        this(Long.getLong(Merger.HEAP_BUDGET_PROPERTY, 0), Boolean.getBoolean(Merger.OFF_HEAP_PROPERTY));
+    }
+
+    /**
+     * Create a commander with memory settings for merging.
+     * Once the merged files take up more than the heap budget, files that have been read completely are spilled
+     * to temporary segment files and read back whenever they are used.
+     * Storing text outside the heap keeps the cell text of all merged files in a single arena, released after merging.
+     *
+     * @param heapBudget the amount of bytes the merged files may take up, 0 to keep them in memory
+     * @param offHeap whether the text of the merged files is stored outside the heap
+     * @throws IOException whenever the strings of the application can not be loaded
+     */
+    public Commander(long heapBudget, boolean offHeap) throws IOException {
+        this.heapBudget = heapBudget;
+        this.offHeap = offHeap;
         this.state = State.STARTING;
         this.properties = new Properties();
         this.console = new Console();
@@ -37,6 +71,17 @@ public class Commander {
         this.properties.load(getClass().getResourceAsStream("/strings.properties"));
     }
 
+    /**
+     * Get the data structure of the collected files, once they have been merged.
+     * Only a structure merged on the heap is kept, since spilled files and text stored outside the heap
+     * are released after merging.
+     *
+     * @return the merged data structure, null when nothing has been merged on the heap
+     */
+    public RootNode getMergedData() {
+        return this.mergedData;
+    }
+
     /**
      * Execute the next command.
      * The command to be executed is determined by the current state.
@@ -131,11 +176,11 @@ public class Commander {
         String[] input = console.readLine().split(String.valueOf(' '));
 
         if (input.length == 3) {
-            this.parser = switch (input[0].toLowerCase()) {
-                case "keystringreplacer" -> new KeyStringReplacer(this.parser, input[1], input[2]);
-                case "datastringreplacer" -> new DataStringReplacer(this.parser, input[1], input[2]);
-                default -> this.parser;
-            };
+            onInputAction(input[0], properties.getProperty("invalidParserArgument"), (name) -> this.parser = createParser(this.parser, input));
+        }
+
+        else if (input.length == 2) {
+            onInputAction(input[1], properties.getProperty("invalidDictionary"), (path) -> this.parser = createParser(this.parser, input));
         }
 
         else if (!input[0].isEmpty()) {
@@ -145,19 +190,92 @@ public class Commander {
         return input[0].isEmpty();
     }
 
-    private boolean executeMerging() {
-        RootNode rootNode = new RootNode();
+    /**
+     * Add a parser to a chain from a rule in the form [Parser] [toReplace] [replaceWith] or [Parser] [dictionaryFile].
+     * The names of the parsers are not case-sensitive.
+     *
+     * @param parent the chain to add the parser to
+     * @param rule the name of the parser followed by its arguments
+     * @return the chain with the parser added
+     * @throws IllegalArgumentException whenever the parser is unknown or does not take the amount of arguments
+     * @throws UncheckedIOException whenever the dictionary file can not be read
+     */
+    static Parser createParser(Parser parent, String[] rule) {
+        if (rule.length == 3) {
+            return switch (rule[0].toLowerCase()) {
+                case "keystringreplacer" -> new KeyStringReplacer(parent, rule[1], rule[2]);
+                case "datastringreplacer" -> new DataStringReplacer(parent, rule[1], rule[2]);
+                case "keyregexreplacer" -> new KeyRegexReplacer(parent, rule[1], rule[2]);
+                case "dataregexreplacer" -> new DataRegexReplacer(parent, rule[1], rule[2]);
+                default -> throw new IllegalArgumentException("Unknown parser " + rule[0]);
+            };
+        }
 
-        for(File file : this.files) {
-            CompositeNode fileNode = new CompositeNode(file.getFileName());
+        if (rule.length == 2) {
+            return switch (rule[0].toLowerCase()) {
+                case "keydictionaryreplacer" -> new KeyDictionaryReplacer(parent, readDictionary(rule[1]));
+                case "datadictionaryreplacer" -> new DataDictionaryReplacer(parent, readDictionary(rule[1]));
+                default -> throw new IllegalArgumentException("Unknown parser " + rule[0]);
+            };
+        }
+
+        throw new IllegalArgumentException("Invalid amount of arguments for parser " + rule[0]);
+    }
 
-            for (IdentifiableNode node : file.readAllData().getChildren()) {
-                fileNode.addChild(this.parser.process(node));
-            }
+    /**
+     * Read a dictionary of replacements from a properties file, containing a toReplace=replaceWith rule per line.
+     *
+     * @param path the path of the dictionary file
+     * @return the strings to replace, mapped to their replacements
+     */
+    private static Map<String, String> readDictionary(String path) {
+        Properties dictionary = new Properties();
 
-            rootNode.addChild(fileNode);
+        try (Reader reader = Files.newBufferedReader(Paths.get(path))) {
+            dictionary.load(reader);
         }
 
-        return true;
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Map<String, String> replacements = new HashMap<>();
+        for (String toReplace : dictionary.stringPropertyNames()) {
+            replacements.put(toReplace, dictionary.getProperty(toReplace));
+        }
+
+        return replacements;
+    }
+
+    /**
+     * Merge all collected files into a single data structure.
+     * Every file is read on its own virtual thread, while a pool of a thread per processor applies the parser
+     * to batches of rows. The rows of a file keep their order and the files are attached in the order they were
+     * collected, so the result does not depend on which file finishes first.
+     * With a heap budget, files that have been read completely are handed to a segment store,
+     * which spills them to disk once the budget is exceeded.
+     * When text is stored outside the heap, all files share one arena, which is released at once afterwards.
+     * Whenever a file can not be merged, the files have to be collected again.
+     *
+     * @return true if every file has been merged, false otherwise.
+     */
+    private boolean executeMerging() {
+        boolean keep = this.heapBudget == 0 && !this.offHeap;
+        boolean merged;
+
+        try (Merger merger = new Merger(this.heapBudget, this.offHeap)) {
+            merged = merger.merge(this.files, this.parser, rootNode -> {
+                this.mergedData = keep ? rootNode : null;
+                return true;
+            }, console::writeCommand);
+        }
+
+        if (!merged) {
+            console.writeCommand(properties.getProperty("mergeFailed"));
+            this.files.clear();
+            this.state = State.COLLECTING;
+        }
+
+        return merged;
     }
 }
@@ -5,13 +5,15 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 
 public class Console {
+
+    /**
+     * The reader of the standard input, shared by all calls so input it has buffered ahead is not lost.
+     */
+    private final BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+
     public String readLine() {
         try{
-            String line = (new BufferedReader(
-                    new InputStreamReader(System.in))
-            ).readLine();
-
-            return line;
+            return this.reader.readLine();
         }
         catch(IOException ex) {
             return "Gibberish input detected";
@@ -0,0 +1,81 @@
+package nl.sourceassist.datastorageutility.commander;
+
+import nl.sourceassist.datastorageutility.parser.NodeParser;
+import nl.sourceassist.datastorageutility.parser.Parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A JobSpec describes a merge that runs without interaction: the files to merge, the parser rules and the output.
+ * A spec is read from a text file holding one instruction per line, empty lines and lines starting with # are skipped.
+ * The instructions are "input [path]", "parser [rule]" and "output [path]", where a rule uses the same words as
+ * the rules entered while defining, for example "parser KeyStringReplacer old new".
+ * Inputs and parser rules may be repeated, parser rules are added in the order they are listed.
+ *
+ * @param inputs the paths of the files to merge
+ * @param parserRules the parser rules, each split into the name of the parser and its arguments
+ * @param output the path of the file to write the merged rows to
+ */
+record JobSpec(List<String> inputs, List<String[]> parserRules, String output) {
+
+    /**
+     * Read a spec from a file.
+     *
+     * @param path the path of the spec
+     * @return the spec
+     * @throws IOException whenever the spec can not be read
+     * @throws IllegalArgumentException whenever the spec holds an unknown instruction, or misses inputs or an output
+     */
+    static JobSpec read(Path path) throws IOException {
+        List<String> inputs = new ArrayList<>();
+        List<String[]> parserRules = new ArrayList<>();
+        String output = null;
+        List<String> lines = Files.readAllLines(path);
+
+        for (int number = 1; number <= lines.size(); number++) {
+            String line = lines.get(number - 1).strip();
+
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            int separator = line.indexOf(' ');
+            String instruction = separator < 0 ? line : line.substring(0, separator);
+            String argument = separator < 0 ? "" : line.substring(separator + 1).strip();
+
+            switch (instruction.toLowerCase()) {
+                case "input" -> inputs.add(argument);
+                case "parser" -> parserRules.add(argument.split(String.valueOf(' ')));
+                case "output" -> output = argument;
+                default -> throw new IllegalArgumentException("Unknown instruction on line " + number + ": " + line);
+            }
+        }
+
+        if (inputs.isEmpty() || output == null || output.isEmpty()) {
+            throw new IllegalArgumentException("A job needs at least one input and an output");
+        }
+
+        return new JobSpec(inputs, parserRules, output);
+    }
+
+    /**
+     * Build the parser chain of the job, adding the rules in the order they are listed.
+     *
+     * @return the parser chain
+     * @throws IllegalArgumentException whenever a rule holds an unknown parser or the wrong amount of arguments
+     * @throws java.io.UncheckedIOException whenever a dictionary file can not be read
+     */
+    Parser createParser() {
+        Parser parser = new NodeParser();
+
+        for (String[] rule : this.parserRules) {
+            parser = Commander.createParser(parser, rule);
+        }
+
+        return parser;
+    }
+}
@@ -0,0 +1,304 @@
+package nl.sourceassist.datastorageutility.commander;
+
+import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
+import nl.sourceassist.datastorageutility.datastructure.IdentifiableNode;
+import nl.sourceassist.datastorageutility.datastructure.LeafNode;
+import nl.sourceassist.datastorageutility.datastructure.NodeArena;
+import nl.sourceassist.datastorageutility.datastructure.RootNode;
+import nl.sourceassist.datastorageutility.datastructure.SegmentStore;
+import nl.sourceassist.datastorageutility.datastructure.TableNode;
+import nl.sourceassist.datastorageutility.files.File;
+import nl.sourceassist.datastorageutility.parser.Parser;
+
+import javax.management.openmbean.KeyAlreadyExistsException;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * The Merger reads files and merges their parsed rows into a single data structure.
+ * Every file is read on its own virtual thread, while a pool of a thread per processor applies the parser
+ * to batches of rows. The pool is shared by all merges of the merger, so merges running at the same time
+ * together use the processors once, instead of each starting a pool of their own.
+ * Files large enough to be parsed in parallel parse their parts on the same pool.
+ */
+final class Merger implements AutoCloseable {
+    static final String HEAP_BUDGET_PROPERTY = "datastorageutility.heapBudget";
+    static final String OFF_HEAP_PROPERTY = "datastorageutility.offHeap";
+
+    private static final int MERGE_BATCH_SIZE = 1024;
+    private static final int MAX_PENDING_BATCHES = 4;
+
+    private final long heapBudget;
+    private final boolean offHeap;
+    private final ForkJoinPool parsers;
+
+    /**
+     * Create a merger with memory settings for its merges.
+     * Once the merged files take up more than the heap budget, files that have been read completely are spilled
+     * to temporary segment files and read back whenever they are used.
+     * Storing text outside the heap keeps the cell text of all files of a merge in a single arena, released afterwards.
+     * Keys stay on the heap, just like the text of a file that holds nested values and is not kept as a table.
+     *
+     * @param heapBudget the amount of bytes the merged files of a merge may take up, 0 to keep them in memory
+     * @param offHeap whether the text of the merged files is stored outside the heap
+     */
+    Merger(long heapBudget, boolean offHeap) {
+        this.heapBudget = heapBudget;
+        this.offHeap = offHeap;
+        this.parsers = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Merge files into a single data structure and optionally write the result.
+     * The rows of a file keep their order and the files are attached in the order they are provided,
+     * so the result does not depend on which file finishes first.
+     * Files are keyed by their file name, a file named like a file before it is reported as an error.
+     * This method can be called by multiple threads at the same time.
+     *
+     * @param files the files to merge
+     * @param parser the parser applied to every row
+     * @param output the file to write the rows of all files to, null to only merge
+     * @param errors the receiver of the messages of files that could not be merged
+     * @return true if every file has been merged and the output has been written
+     */
+    boolean merge(List<File> files, Parser parser, File output, Consumer<String> errors) {
+        Predicate<RootNode> write = rootNode -> output == null || output.writeAllRows(rootNode.getChildren());
+        return this.merge(files, parser, write, errors);
+    }
+
+    /**
+     * Merge files into a single data structure and hand it to a consumer.
+     * The consumer is called before spilled files are deleted and the arena is released,
+     * so it can read the whole structure, even when it does not fit in the heap.
+     *
+     * @param files the files to merge
+     * @param parser the parser applied to every row
+     * @param consumer the consumer of the merged structure, returning false when it fails to use the structure
+     * @param errors the receiver of the messages of files that could not be merged
+     * @return true if every file has been merged and the consumer succeeded
+     */
+    boolean merge(List<File> files, Parser parser, Predicate<RootNode> consumer, Consumer<String> errors) {
+        RootNode rootNode = new RootNode();
+        ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor();
+        SegmentStore segments = null;
+        NodeArena arena = this.offHeap ? new NodeArena() : null;
+        boolean merged = true;
+
+        try {
+            if (this.heapBudget > 0) {
+                segments = new SegmentStore(this.heapBudget);
+            }
+
+            SegmentStore store = segments;
+            List<Future<CompositeNode>> fileNodes = new ArrayList<>();
+            for (File file : files) {
+                fileNodes.add(readers.submit(() -> this.mergeFile(file, parser, store, arena)));
+            }
+
+            for (Future<CompositeNode> fileNode : fileNodes) {
+                CompositeNode node = null;
+
+                try {
+                    node = fileNode.get();
+                    rootNode.addChild(node);
+                }
+
+                catch (ExecutionException e) {
+                    errors.accept(e.getCause().toString());
+                    merged = false;
+                }
+
+                catch (KeyAlreadyExistsException e) {
+                    errors.accept(e + ": " + node.getKey());
+                    merged = false;
+                }
+            }
+
+            merged &= consumer.test(rootNode);
+        }
+
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            merged = false;
+        }
+
+        catch (IOException e) {
+            errors.accept(e.toString());
+            merged = false;
+        }
+
+        finally {
+            readers.shutdownNow();
+            closeSegments(segments, errors);
+
+            if (arena != null) {
+                arena.close();
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * Stop the parser pool, merges that are still running are interrupted.
+     */
+    @Override
+    public void close() {
+        this.parsers.shutdownNow();
+    }
+
+    /**
+     * Read a single file and run its rows through the parser.
+     * While the file is read, the size of its table counts towards the budget of the segment store, if there is one.
+     * Once the file has been read completely, the table is tracked by the store, so it can be spilled.
+     * A large file is parsed in parts on the parser pool.
+     *
+     * @param file the file to read
+     * @param parser the parser applied to every row
+     * @param segments the store keeping the file nodes within the heap budget, null to keep them in memory
+     * @param arena the arena to store the text of the file in, null to keep it on the heap
+     * @return the node containing the parsed rows of the file
+     * @throws InterruptedException whenever the thread is interrupted while waiting for the parser pool
+     * @throws ExecutionException whenever reading or parsing a batch has failed
+     */
+    private CompositeNode mergeFile(File file, Parser parser, SegmentStore segments, NodeArena arena)
+        throws InterruptedException, ExecutionException {
+        CompositeNode fileNode = new TableNode(file.getFileName(), arena);
+        file.setParsePool(this.parsers);
+
+        try (Stream<CompositeNode> rows = file.streamAllData()) {
+            fileNode = this.mergeRows(rows, parser, fileNode, segments);
+        }
+
+        if (segments != null && fileNode instanceof TableNode table) {
+            segments.track(table);
+        }
+
+        return fileNode;
+    }
+
+    /**
+     * Run rows through the parser and add them to a node.
+     * Rows are handed to the parser pool in batches, of which only a limited amount is pending at a time.
+     * The parsed batches are added to the node in the order they were read.
+     * A table can only hold rows of leaf nodes, so as soon as a row holding nested nodes arrives,
+     * the table is replaced by a composite node holding copies of its rows.
+     * After every batch, a table is measured by the segment store, so the other tables are spilled in time.
+     *
+     * @param rows the rows to merge
+     * @param parser the parser applied to every row
+     * @param node the node to add the parsed rows to
+     * @param segments the store measuring the table while it is filled, null to not measure it
+     * @return the node holding the rows, which is the provided node unless a table had to be replaced
+     * @throws InterruptedException whenever the thread is interrupted while waiting for the parser pool
+     * @throws ExecutionException whenever reading or parsing a batch has failed
+     */
+    CompositeNode mergeRows(Stream<CompositeNode> rows, Parser parser, CompositeNode node, SegmentStore segments)
+        throws InterruptedException, ExecutionException {
+        ArrayDeque<Future<List<IdentifiableNode>>> pending = new ArrayDeque<>();
+        Iterator<CompositeNode> iterator = rows.iterator();
+
+        while (iterator.hasNext()) {
+            List<IdentifiableNode> batch = new ArrayList<>(MERGE_BATCH_SIZE);
+            while (batch.size() < MERGE_BATCH_SIZE && iterator.hasNext()) {
+                batch.add(iterator.next());
+            }
+
+            pending.add(this.parsers.submit(() -> {
+                batch.replaceAll(parser::process);
+                return batch;
+            }));
+
+            if (pending.size() > MAX_PENDING_BATCHES) {
+                node = addRows(node, pending.poll().get(), segments);
+            }
+        }
+
+        while (!pending.isEmpty()) {
+            node = addRows(node, pending.poll().get(), segments);
+        }
+
+        return node;
+    }
+
+    /**
+     * Add parsed rows to a node, replacing a table by a composite node when a row does not fit in it.
+     *
+     * @param node the node to add the rows to
+     * @param rows the rows to add
+     * @param segments the store measuring the table, null to not measure it
+     * @return the node holding the rows
+     */
+    private static CompositeNode addRows(CompositeNode node, List<IdentifiableNode> rows, SegmentStore segments) {
+        for (IdentifiableNode row : rows) {
+            if (node instanceof TableNode table && !TableNode.isRow(row)) {
+                node = toComposite(table);
+
+                if (segments != null) {
+                    segments.forget(table);
+                }
+            }
+
+            node.addChild(row);
+        }
+
+        if (segments != null && node instanceof TableNode table) {
+            segments.measure(table);
+        }
+
+        return node;
+    }
+
+    /**
+     * Copy the rows of a table into a composite node with the same key, keeping the types of the values.
+     *
+     * @param table the table to copy
+     * @return the composite node holding a copy of every row
+     */
+    private static CompositeNode toComposite(TableNode table) {
+        CompositeNode node = new CompositeNode(table.getKey());
+
+        for (IdentifiableNode row : table.getChildren()) {
+            CompositeNode copy = new CompositeNode(row.getKey());
+
+            for (IdentifiableNode cell : ((CompositeNode) row).getChildren()) {
+                copy.addChild(new LeafNode(cell.getKey(), cell.getData(), ((LeafNode) cell).getType()));
+            }
+
+            node.addChild(copy);
+        }
+
+        return node;
+    }
+
+    /**
+     * Close the segment store used while merging, deleting its segment files.
+     *
+     * @param segments the store to close, null if no store was used
+     * @param errors the receiver of the message when the files can not be deleted
+     */
+    private static void closeSegments(SegmentStore segments, Consumer<String> errors) {
+        if (segments == null) {
+            return;
+        }
+
+        try {
+            segments.close();
+        }
+
+        catch (IOException e) {
+            errors.accept(e.toString());
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package nl.sourceassist.datastorageutility.commander;
+
+import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
+import nl.sourceassist.datastorageutility.datastructure.IdentifiableNode;
+import nl.sourceassist.datastorageutility.datastructure.RootNode;
+import nl.sourceassist.datastorageutility.datastructure.SegmentStore;
+import nl.sourceassist.datastorageutility.datastructure.TableNode;
+import nl.sourceassist.datastorageutility.files.CSVFile;
+import nl.sourceassist.datastorageutility.files.File;
+import nl.sourceassist.datastorageutility.files.FileFactory;
+import nl.sourceassist.datastorageutility.parser.Parser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * The Watcher keeps the merge of a job spec up to date while its input files change.
+ * The merged structure stays in memory, holding a node per input.
+ * Rows appended to a CSV file are read from where the previous read ended, so only the new rows are parsed.
+ * The file is considered rewritten instead when it has shrunk, has been replaced by another file,
+ * or when a checksum of its first bytes and of the bytes right before that position has changed.
+ * A rewrite that keeps both of those ranges intact goes unnoticed.
+ * Rewritten inputs, files that have shrunk and files of other types are read again completely.
+ * When every change was an append, the new rows are appended to the output as well,
+ * as long as they end up after all rows already written and the output can grow that way.
+ * Otherwise the output is written again completely.
+ *
+ * @see JobSpec the format of a job spec.
+ */
+public class Watcher implements AutoCloseable {
+    private static final int CHECKSUM_WINDOW = 4096;
+    private static final long QUIET_PERIOD = 200;
+
+    private final String name;
+    private final JobSpec spec;
+    private final Parser parser;
+    private final File output;
+    private final Merger merger;
+    private final List<Input> inputs;
+    private RootNode rootNode;
+
+    /**
+     * Create a watcher for the job described by a spec, without reading its inputs yet.
+     *
+     * @param specPath the path of the job spec
+     * @throws IOException whenever the spec can not be read
+     * @throws IllegalArgumentException whenever the spec is invalid, an input does not exist
+     * or two inputs have the same file name
+     */
+    public Watcher(Path specPath) throws IOException {
+        this.name = specPath.getFileName().toString();
+        this.spec = JobSpec.read(specPath);
+        this.parser = this.spec.createParser();
+        this.output = FileFactory.CreateFileFactory(this.spec.output());
+        this.merger = new Merger(0, false);
+        this.inputs = new ArrayList<>();
+        this.rootNode = new RootNode();
+
+        Set<String> fileNames = new HashSet<>();
+        for (String input : this.spec.inputs()) {
+            File file = FileFactory.OpenFileFactory(input);
+
+            if (!fileNames.add(file.getFileName())) {
+                throw new IllegalArgumentException("Two inputs are named " + file.getFileName());
+            }
+
+            this.inputs.add(new Input(Path.of(input).toAbsolutePath().normalize(), file));
+        }
+    }
+
+    /**
+     * Get the merged structure, holding a node per input in the order of the spec.
+     *
+     * @return the merged structure
+     */
+    public RootNode getRootNode() {
+        return this.rootNode;
+    }
+
+    /**
+     * Read all inputs completely and write the output.
+     *
+     * @return true if every input has been merged and the output has been written
+     */
+    public boolean mergeAll() {
+        boolean merged = true;
+
+        for (Input input : this.inputs) {
+            merged &= this.readAll(input);
+        }
+
+        this.rebuild();
+        return merged & this.write();
+    }
+
+    /**
+     * Watch the directories of the inputs and update the merge whenever inputs change, until interrupted.
+     * Changes are collected until the files have been quiet for a moment, so a file being written
+     * triggers a single update instead of one per write.
+     *
+     * @throws IOException whenever the directories can not be watched
+     * @throws InterruptedException whenever the thread is interrupted while waiting for changes
+     */
+    public void watch() throws IOException, InterruptedException {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            Set<Path> directories = new HashSet<>();
+            for (Input input : this.inputs) {
+                if (directories.add(input.path.getParent())) {
+                    input.path.getParent().register(
+                        service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY
+                    );
+                }
+            }
+
+            while (true) {
+                Set<Path> changed = new HashSet<>();
+                WatchKey key = service.take();
+
+                while (key != null) {
+                    this.collect(key, changed);
+                    key = service.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS);
+                }
+
+                this.update(changed);
+            }
+        }
+    }
+
+    /**
+     * Bring the merge up to date with changed files and update the output.
+     * Appended rows are added to the node of their input, while rewritten inputs get a new node,
+     * after which the structure is rebuilt to keep the inputs in the order of the spec.
+     * When only rows have been appended, and no input after them in the spec holds rows,
+     * the new rows are appended to the output, otherwise the output is written again completely.
+     *
+     * @param changed the absolute paths of the changed files, paths that are not an input are ignored
+     * @return true if every changed input has been merged and the output has been updated
+     */
+    public boolean update(Collection<Path> changed) {
+        boolean merged = true;
+        boolean rewritten = false;
+        boolean updated = false;
+        List<IdentifiableNode> appended = new ArrayList<>();
+
+        for (Input input : this.inputs) {
+            CompositeNode node = input.node;
+            int rows = input.rows;
+
+            if (changed.contains(input.path)) {
+                updated = true;
+
+                if (this.isAppended(input)) {
+                    merged &= this.readAppended(input);
+                    rewritten |= input.node != node;
+                }
+
+                else {
+                    merged &= this.readAll(input);
+                    rewritten = true;
+                }
+            }
+
+            if (!appended.isEmpty() && rows > 0) {
+                rewritten = true;
+            }
+
+            if (!rewritten && input.rows > rows) {
+                input.node.getChildren().stream().skip(rows).forEach(appended::add);
+            }
+        }
+
+        if (rewritten) {
+            this.rebuild();
+        }
+
+        if (!updated) {
+            return merged;
+        }
+
+        return merged & (!rewritten && this.append(appended) || this.write());
+    }
+
+    /**
+     * Stop the parser pool of the watcher.
+     */
+    @Override
+    public void close() {
+        this.merger.close();
+    }
+
+    /**
+     * Add the files changed according to the events of a watch key and reset the key.
+     * When events have been lost, every input is considered changed.
+     *
+     * @param key the key of a watched directory
+     * @param changed the paths of the changed files
+     */
+    private void collect(WatchKey key, Set<Path> changed) {
+        Path directory = (Path) key.watchable();
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                this.inputs.forEach(input -> changed.add(input.path));
+            }
+
+            else {
+                changed.add(directory.resolve((Path) event.context()).toAbsolutePath().normalize());
+            }
+        }
+
+        key.reset();
+    }
+
+    /**
+     * Check whether only rows have been appended to an input since it was read.
+     * This is the case for a CSV file that is still the same file, has not shrunk,
+     * and still holds the same bytes at its start and right before the read position.
+     *
+     * @param input the input to check
+     * @return true if the input can be read from where the previous read ended
+     */
+    private boolean isAppended(Input input) {
+        if (!(input.file instanceof CSVFile) || input.offset == 0) {
+            return false;
+        }
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(input.path, BasicFileAttributes.class);
+
+            return Objects.equals(attributes.fileKey(), input.fileKey) && attributes.size() >= input.offset
+                && checksum(input.path, input.offset) == input.checksum;
+        }
+
+        catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Read an input completely into a new node, which replaces its previous node once it has been read.
+     *
+     * @param input the input to read
+     * @return true if the input has been read
+     */
+    private boolean readAll(Input input) {
+        CompositeNode node = new TableNode(input.file.getFileName());
+
+        try {
+            if (input.file instanceof CSVFile csvFile) {
+                long end = csvFile.getCompleteLength();
+                node = this.mergeRows(csvFile.streamData(0, end, 0), node);
+                input.offset = end;
+                input.checksum = checksum(input.path, end);
+                input.fileKey = Files.readAttributes(input.path, BasicFileAttributes.class).fileKey();
+            }
+
+            else {
+                node = this.mergeRows(input.file.streamAllData(), node);
+                input.offset = 0;
+            }
+        }
+
+        catch (IOException e) {
+            System.out.println(this.name + ": " + e);
+            return false;
+        }
+
+        catch (ExecutionException e) {
+            System.out.println(this.name + ": " + e.getCause());
+            return false;
+        }
+
+        input.node = node;
+        input.rows = node.getChildren().size();
+        System.out.println(this.name + ": read " + input.rows + " rows from " + input.path);
+        return true;
+    }
+
+    /**
+     * Read the complete records appended to a CSV input and add them to its node.
+     *
+     * @param input the input to read
+     * @return true if the appended records have been read
+     */
+    private boolean readAppended(Input input) {
+        CSVFile csvFile = (CSVFile) input.file;
+
+        try {
+            long end = csvFile.getCompleteLength();
+            if (end <= input.offset) {
+                return true;
+            }
+
+            int rows = input.node.getChildren().size();
+            input.node = this.mergeRows(csvFile.streamData(input.offset, end, input.rows), input.node);
+            int added = input.node.getChildren().size() - rows;
+
+            input.offset = end;
+            input.checksum = checksum(input.path, end);
+            input.rows += added;
+            System.out.println(this.name + ": appended " + added + " rows from " + input.path);
+            return true;
+        }
+
+        catch (IOException e) {
+            System.out.println(this.name + ": " + e);
+            return false;
+        }
+
+        catch (ExecutionException e) {
+            System.out.println(this.name + ": " + e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Parse rows and add them to a node, closing the rows afterwards.
+     *
+     * @param rows the rows to merge
+     * @param node the node to add the parsed rows to
+     * @return the node holding the rows
+     * @throws IOException whenever the rows can not be read
+     * @throws ExecutionException whenever parsing the rows has failed
+     * @see Merger#mergeRows(Stream, Parser, CompositeNode, SegmentStore)
+     */
+    private CompositeNode mergeRows(Stream<CompositeNode> rows, CompositeNode node)
+        throws IOException, ExecutionException {
+        try (rows) {
+            return this.merger.mergeRows(rows, this.parser, node, null);
+        }
+
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while merging", e);
+        }
+    }
+
+    /**
+     * Rebuild the merged structure from the nodes of the inputs, in the order of the spec.
+     */
+    private void rebuild() {
+        RootNode rebuilt = new RootNode();
+
+        for (Input input : this.inputs) {
+            if (input.node != null) {
+                rebuilt.addChild(input.node);
+            }
+        }
+
+        this.rootNode = rebuilt;
+    }
+
+    /**
+     * Append rows to the output of the job, which has been written before.
+     *
+     * @param rows the rows appended to the inputs, in the order of the spec
+     * @return true if the rows have been appended, false if the output has to be written completely
+     */
+    private boolean append(List<IdentifiableNode> rows) {
+        if (rows.isEmpty()) {
+            return true;
+        }
+
+        boolean appended = this.output.appendRows(rows);
+        if (appended) {
+            System.out.println(this.name + ": appended " + rows.size() + " rows to " + this.spec.output());
+        }
+
+        return appended;
+    }
+
+    /**
+     * Write the rows of all inputs to the output of the job.
+     *
+     * @return true if the output has been written
+     */
+    private boolean write() {
+        boolean written = this.output.writeAllRows(this.rootNode.getChildren());
+        System.out.println(this.name + (written ? ": merged into " + this.spec.output() : ": failed"));
+        return written;
+    }
+
+    /**
+     * Calculate the checksum of the first bytes of a file and of the bytes right before a position of it.
+     * The first bytes hold the headings of a CSV file, the last bytes the records read last.
+     *
+     * @param path the path of the file
+     * @param position the position the checked bytes end at
+     * @return the checksum of at most CHECKSUM_WINDOW bytes at the start of the file
+     * and at most CHECKSUM_WINDOW bytes before the position
+     * @throws IOException whenever the file can not be read
+     */
+    private static long checksum(Path path, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            CRC32C crc = new CRC32C();
+            long head = Math.min(position, CHECKSUM_WINDOW);
+            long tail = Math.max(head, position - CHECKSUM_WINDOW);
+
+            crc.update(read(channel, 0, head));
+            crc.update(read(channel, tail, position));
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * Read a range of bytes of a file.
+     *
+     * @param channel the channel of the file
+     * @param start the position of the first byte
+     * @param end the position after the last byte
+     * @return a buffer holding the bytes, ready to be read, which can be shorter when the file ends earlier
+     * @throws IOException whenever the file can not be read
+     */
+    private static ByteBuffer read(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) {
+            read = channel.read(buffer, start + buffer.position());
+        }
+
+        return buffer.flip();
+    }
+
+    /**
+     * The state of a single input: its node in the merged structure and how far it has been read.
+     */
+    private static final class Input {
+        private final Path path;
+        private final File file;
+        private CompositeNode node;
+        private long offset;
+        private long checksum;
+        private Object fileKey;
+        private int rows;
+
+        private Input(Path path, File file) {
+            this.path = path;
+            this.file = file;
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package nl.sourceassist.datastorageutility.datastructure;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 
 /**
  * The CompositeNode class represents a composite node in a data structure.
@@ -17,22 +24,64 @@ public class CompositeNode implements IdentifiableNode {
     private String key;
 
     /**
-     * children is an ArrayList of IdentifiableNode objects.
+     * children is an insertion ordered set of IdentifiableNode objects.
      * It represents the children of a composite node in a data structure.
-     * The CompositeNode class provides methods to manipulate the children list,
-     * such as addChild(), removeChild(), and getChildren().
+     * The CompositeNode class provides methods to manipulate the children,
+     * such as addChild(), removeChild(), getChild() and getChildren().
+     * The set is only created when the first child is added.
      */
-    private final ArrayList<IdentifiableNode> children;
+    private LinkedHashSet<IdentifiableNode> children;
+
+    /**
+     * Read-only view on the children, handed out by getChildren().
+     * Changes have to go through addChild() and removeChild() to keep the key index up to date.
+     */
+    private Collection<IdentifiableNode> childrenView;
+
+    /**
+     * Index from key to child, used to look up and check for duplicate keys in constant time.
+     * Whenever renaming creates duplicate keys, the index keeps the child that held the key first.
+     */
+    private HashMap<String, IdentifiableNode> childIndex;
+
+    /**
+     * The amount of children that share their key with another child and are therefore missing from the index.
+     * Duplicate keys can only be introduced by renaming a child through setKey().
+     */
+    private int duplicateKeys;
+
+    /**
+     * The height of the subtree starting at this node, 1 for a node without children.
+     * Kept up to date whenever a child is added or removed anywhere below this node.
+     */
+    private int height;
+
+    /**
+     * The result of the last call to getData(), null when it has not been rendered since the subtree last changed.
+     */
+    private String data;
+
+    /**
+     * The composite node this node was last added to, null if it has not been added to one.
+     * The parent is notified when the key of this node or the height of its subtree changes.
+     */
+    CompositeNode parent;
+
+    /**
+     * The RootNode this node is the anchor of, null for every other node.
+     * Changes anywhere below an anchor are reported to its owner to keep the index of the structure up to date.
+     */
+    RootNode owner;
 
     /**
      * Creates a CompositeNode object with the given key.
-     * The children list is initialized as an empty ArrayList object.
+     * The children start out empty, their storage is created when the first child is added.
      *
      * @param key the key of the CompositeNode, used to uniquely identify it within a data structure
      */
     public CompositeNode(String key) {
         this.key = key;
-        this.children = new ArrayList<>();
+        this.height = 1;
     }
 
     /** {@inheritDoc} */
@@ -42,38 +91,104 @@ public class CompositeNode implements IdentifiableNode {
 
     /** {@inheritDoc} */
     public void setKey(String newKey) {
+        String oldKey = this.key;
         this.key = newKey;
+
+        if (this.parent != null) {
+            this.parent.onChildKeyChanged(this, oldKey);
+        }
     }
 
     /**
      * Returns the concatenated data of all child nodes.
-     * The data for each child node is obtained by calling the child's getData method.
      * The data is concatenated using the key and data of each child node, separated by a colon and space.
      * The result is a string that represents the data of all child nodes,
      * with each child's key and data separated by a semicolon and space.
+     * The result is kept until the subtree changes, so repeated calls do not render it again.
      *
      * @return the concatenated data of all child nodes as a string
      */
     public String getData() {
-        return children.stream().reduce("",
-            (String acc, IdentifiableNode child) -> acc + child.getKey() + ": " + child.getData() + "; ",
-            String::concat
-        );
+        if (this.data == null) {
+            this.data = this.renderData();
+        }
+
+        return this.data;
+    }
+
+    /**
+     * Write the concatenated data of all child nodes to the provided output.
+     * The children write their own data straight to the output, no intermediate strings are built.
+     *
+     * @param out the output to write the data to
+     * @throws IOException whenever the output can not be written to
+     */
+    @Override
+    public void appendData(Appendable out) throws IOException {
+        for (IdentifiableNode child : this.getChildren()) {
+            out.append(child.getKey()).append(": ");
+            child.appendData(out);
+            out.append("; ");
+        }
+    }
+
+    /**
+     * Render the data of this node into a new string, without looking at the cached result.
+     *
+     * @return the concatenated data of all child nodes as a string
+     */
+    String renderData() {
+        StringBuilder builder = new StringBuilder();
+
+        try {
+            this.appendData(builder);
+        }
+
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Forget the rendered data of this node and of every node above it, after something in the subtree changed.
+     */
+    void invalidateData() {
+        for (CompositeNode node = this; node != null; node = node.parent) {
+            node.data = null;
+        }
     }
 
     /**
      * Adds a child node to the composite node.
      * The child node is only added if there is no existing child node with the same key.
+     * The check is done through the key index and takes constant time.
      *
      * @param child the IdentifiableNode object to be added as a child node
      * @return true if the child node was successfully added, false otherwise
      */
     public boolean addChild(IdentifiableNode child) {
-        if (this.children.stream().anyMatch(node -> node.getKey().equals(child.getKey()))) {
+        if (this.children == null) {
+            this.children = new LinkedHashSet<>();
+            this.childrenView = Collections.unmodifiableCollection(this.children);
+            this.childIndex = new HashMap<>();
+        }
+
+        if (this.childIndex.putIfAbsent(child.getKey(), child) != null) {
             return false;
         }
 
         this.children.add(child);
+        setParent(child, this);
+        this.onChildHeightChanged(0, heightOf(child));
+        this.invalidateData();
+
+        RootNode owner = this.findOwner();
+        if (owner != null) {
+            owner.onAttached(child);
+        }
+
         return true;
     }
 
@@ -84,15 +199,252 @@ public class CompositeNode implements IdentifiableNode {
      * @return true if the child node was successfully removed, false otherwise
      */
     public boolean removeChild(IdentifiableNode child) {
-        return this.children.remove(child);
+        if (this.children == null || !this.children.remove(child)) {
+            return false;
+        }
+
+        this.removeFromIndex(child, child.getKey());
+
+        RootNode owner = this.findOwner();
+        if (owner != null) {
+            owner.onDetached(child);
+        }
+
+        if (getParent(child) == this) {
+            setParent(child, null);
+        }
+
+        this.onChildHeightChanged(heightOf(child), 0);
+        this.invalidateData();
+        return true;
+    }
+
+    /**
+     * Replaces a child node by another node, which takes the place of the child among the other children.
+     * Restoring the order takes time linear in the amount of children.
+     * Nodes that create their children as views can not have their children replaced.
+     *
+     * @param child the child node to be replaced
+     * @param replacement the node to take its place
+     * @return true if the child was replaced, false if it is not a child or the key of the replacement is taken
+     */
+    public boolean replaceChild(IdentifiableNode child, IdentifiableNode replacement) {
+        if (this.children == null || this.hasChildViews() || !this.children.contains(child)) {
+            return false;
+        }
+
+        IdentifiableNode holder = this.childIndex.get(replacement.getKey());
+        if (child == replacement || (holder != null && holder != child) || this.children.contains(replacement)) {
+            return child == replacement;
+        }
+
+        ArrayList<IdentifiableNode> ordered = new ArrayList<>(this.children);
+        ordered.set(ordered.indexOf(child), replacement);
+        this.removeChild(child);
+        this.addChild(replacement);
+        this.children.clear();
+        this.children.addAll(ordered);
+        return true;
+    }
+
+    /**
+     * Get the child with the provided key in constant time.
+     *
+     * @param key the key of the child to look for
+     * @return the child with the key, null if no such child exists
+     */
+    public IdentifiableNode getChild(String key) {
+        return this.childIndex == null ? null : this.childIndex.get(key);
     }
 
     /**
-     * Returns the children of the current composite node.
+     * Returns the children of the current composite node in the order they were added.
+     * The collection is a read-only view, use addChild() and removeChild() to change the children:
+     * changing the view itself throws an UnsupportedOperationException.
+     * The children used to be returned as an ArrayList, code that needs a list has to copy the view,
+     * for example with new ArrayList<>(node.getChildren()).
      *
-     * @return an ArrayList containing the IdentifiableNode objects that represent the children of the composite node
+     * @return a collection containing the IdentifiableNode objects that represent the children of the composite node
      */
-    public ArrayList<IdentifiableNode> getChildren() {
-        return this.children;
+    public Collection<IdentifiableNode> getChildren() {
+        return this.childrenView == null ? Collections.emptySet() : this.childrenView;
+    }
+
+    /**
+     * Returns an iterator over every node below this node, depth first in pre-order.
+     * Every node is followed by the nodes below it before its next sibling is returned.
+     *
+     * @return an iterator over the nodes below this node
+     */
+    public Iterator<IdentifiableNode> depthFirstIterator() {
+        return new NodeIterator(this.getChildren(), true, true);
+    }
+
+    /**
+     * Returns an iterator over every node below this node, breadth first.
+     * All children of this node are returned before their children, and so on.
+     *
+     * @return an iterator over the nodes below this node
+     */
+    public Iterator<IdentifiableNode> breadthFirstIterator() {
+        return new NodeIterator(this.getChildren(), false, true);
+    }
+
+    /**
+     * Returns the height of the subtree starting at this node in constant time.
+     * A composite node without children has a height of 1, every level of children below it adds 1.
+     *
+     * @return the height of the subtree
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Whether the children of this node are views created on request instead of stored nodes.
+     * Nodes with views as children keep their own index and are not descended into by the RootNode key index.
+     *
+     * @return true if the children are views, false otherwise
+     */
+    boolean hasChildViews() {
+        return false;
+    }
+
+    /**
+     * Update the height of this node after the height of one of its children has changed.
+     * Adding a child is treated as a change from 0 and removing one as a change to 0.
+     * The height is only recalculated from all children when the tallest child shrinks.
+     * Whenever the height of this node changes, its parent is notified in turn.
+     *
+     * @param oldChildHeight the height of the child before the change
+     * @param newChildHeight the height of the child after the change
+     */
+    void onChildHeightChanged(int oldChildHeight, int newChildHeight) {
+        int oldHeight = this.height;
+
+        if (newChildHeight + 1 > this.height) {
+            this.height = newChildHeight + 1;
+        }
+
+        else if (newChildHeight < oldChildHeight && oldChildHeight + 1 == this.height) {
+            this.height = 1;
+
+            for (IdentifiableNode child : this.children) {
+                this.height = Math.max(this.height, heightOf(child) + 1);
+            }
+        }
+
+        if (this.height != oldHeight && this.parent != null) {
+            this.parent.onChildHeightChanged(oldHeight, this.height);
+        }
+    }
+
+    /**
+     * Update the key index after one of the children has been renamed.
+     *
+     * @param child the child of which the key has changed
+     * @param oldKey the key of the child before it was changed
+     */
+    void onChildKeyChanged(IdentifiableNode child, String oldKey) {
+        if (this.children == null || !this.children.contains(child)) {
+            return;
+        }
+
+        this.removeFromIndex(child, oldKey);
+        this.invalidateData();
+
+        if (this.childIndex.putIfAbsent(child.getKey(), child) != null) {
+            this.duplicateKeys++;
+        }
+
+        RootNode owner = this.findOwner();
+        if (owner != null) {
+            owner.onRenamed(child, oldKey);
+        }
+    }
+
+    /**
+     * Find the RootNode this node is a part of by following the parents up to the anchor.
+     *
+     * @return the RootNode containing this node, null if the node is not a part of one
+     */
+    RootNode findOwner() {
+        CompositeNode node = this;
+
+        while (node.parent != null) {
+            node = node.parent;
+        }
+
+        return node.owner;
+    }
+
+    /**
+     * Remove a child from the key index.
+     * If the child shared its key with another child, that child takes its place in the index.
+     *
+     * @param child the child to remove from the index
+     * @param key the key the child was indexed under
+     */
+    private void removeFromIndex(IdentifiableNode child, String key) {
+        if (this.childIndex.get(key) != child) {
+            this.duplicateKeys--;
+            return;
+        }
+
+        this.childIndex.remove(key);
+
+        if (this.duplicateKeys > 0) {
+            for (IdentifiableNode sibling : this.children) {
+                if (sibling != child && sibling.getKey().equals(key)) {
+                    this.childIndex.put(key, sibling);
+                    this.duplicateKeys--;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the height of any node.
+     *
+     * @param node the node to get the height of
+     * @return the height of the subtree of a composite node, 1 for any other node
+     */
+    static int heightOf(IdentifiableNode node) {
+        return node instanceof CompositeNode ? ((CompositeNode) node).getHeight() : 1;
+    }
+
+    /**
+     * Get the composite node a node was last added to.
+     *
+     * @param node the node to get the parent of
+     * @return the parent of the node, null if it has none or the node type does not track it
+     */
+    static CompositeNode getParent(IdentifiableNode node) {
+        if (node instanceof CompositeNode) {
+            return ((CompositeNode) node).parent;
+        }
+
+        if (node instanceof LeafNode) {
+            return ((LeafNode) node).parent;
+        }
+
+        return null;
+    }
+
+    /**
+     * Set the composite node a node belongs to.
+     *
+     * @param node the node to set the parent of
+     * @param parent the new parent of the node
+     */
+    private static void setParent(IdentifiableNode node, CompositeNode parent) {
+        if (node instanceof CompositeNode) {
+            ((CompositeNode) node).parent = parent;
+        }
+
+        else if (node instanceof LeafNode) {
+            ((LeafNode) node).parent = parent;
+        }
     }
 }
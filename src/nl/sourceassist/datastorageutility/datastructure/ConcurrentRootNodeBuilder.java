@@ -0,0 +1,429 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import javax.management.openmbean.KeyAlreadyExistsException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.StructureViolationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A builder of a RootNode that can be filled by many threads at once.
+ * Nodes are added directly below the root or below any composite node that has been added before, at any depth,
+ * for example the rows of a file below the node of that file and the cells of a row below that row.
+ * Every node is checked when it is added: duplicate keys are detected through a concurrent map of the keys
+ * below every parent, so checking and claiming a key is a single atomic step, and the depth of the node
+ * is checked against the maximum depth. Nodes a table or a row would refuse are rejected as well.
+ * The added nodes are kept in stripes, each with its own lock, and every thread always uses the same stripe.
+ * Threads therefore only contend when they share a stripe, instead of on a single lock for the whole structure.
+ * Once all threads are done, freeze() builds a regular RootNode with the nodes in the order they were added.
+ * The builder only takes ownership of the nodes: they should not be changed after they have been added.
+ */
+public class ConcurrentRootNodeBuilder {
+
+    /**
+     * The amount of stripes of every parent, a power of two of at least twice the amount of processors.
+     */
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1);
+
+    /**
+     * The maximum depth of the structure, checked for every node that is added.
+     */
+    private final int maxDepth;
+
+    /**
+     * The order in which nodes have been added, shared by all parents.
+     */
+    private final AtomicLong sequence;
+
+    /**
+     * The nodes added directly below the root.
+     */
+    private final Level rootLevel;
+
+    /**
+     * Whether freeze() has been called, after which no nodes can be added anymore.
+     */
+    private volatile boolean frozen;
+
+    /**
+     * Create a builder of which the maximum depth is the maximum value of the int datatype.
+     */
+    public ConcurrentRootNodeBuilder() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a builder with a maximum depth.
+     *
+     * @param maximumDepth the maximum depth of the structure, minimal value is 1.
+     * @throws NegativeArraySizeException whenever maximumDepth is lower than 1.
+     */
+    public ConcurrentRootNodeBuilder(int maximumDepth) {
+        if (maximumDepth < 1) {
+            throw new NegativeArraySizeException();
+        }
+
+        this.maxDepth = maximumDepth;
+        this.sequence = new AtomicLong();
+        this.rootLevel = new Level(null, 1, false);
+    }
+
+    /**
+     * Add a node directly below the root.
+     * This method can be called by any amount of threads at the same time.
+     *
+     * @param newChild the node to add
+     * @throws NullPointerException whenever the provided node is null
+     * @throws KeyAlreadyExistsException if a node with the same key has already been added below the root
+     * @throws IndexOutOfBoundsException if the maximum depth of the structure is violated
+     * @throws IllegalStateException whenever the builder has been frozen
+     */
+    public void addChild(IdentifiableNode newChild) {
+        this.addChild(newChild, this.rootLevel);
+    }
+
+    /**
+     * Add a node below a composite node that has been added before, or below one of the children it was added with.
+     * The parent is found by its path: the keys from the root down to the parent, separated by slashes,
+     * where at every level the longest key matching the start of the path is used, as in RootNode.
+     * This method can be called by any amount of threads at the same time.
+     *
+     * @param newChild the node to add
+     * @param parentPath the path of the parent, provide null to add the node directly below the root
+     * @throws NullPointerException whenever the provided node is null
+     * @throws KeyAlreadyExistsException if a node with the same key has already been added below the parent
+     * @throws StructureViolationException when the parent does not exist or is not a composite node,
+     * or when the parent is a table or a row and can not hold the node
+     * @throws IndexOutOfBoundsException if the maximum depth of the structure is violated
+     * @throws IllegalStateException whenever the builder has been frozen
+     */
+    public void addChild(IdentifiableNode newChild, String parentPath) {
+        if (parentPath == null) {
+            this.addChild(newChild);
+            return;
+        }
+
+        Level level = this.resolve(this.rootLevel, parentPath);
+
+        if (level == null) {
+            throw new StructureViolationException();
+        }
+
+        this.addChild(newChild, level);
+    }
+
+    /**
+     * Stop accepting nodes and build the structure.
+     * Waits for nodes that are being added at the moment of the call.
+     * The nodes below every parent are added before the parent is added to its own parent,
+     * so the key index of the RootNode is built once for every subtree.
+     *
+     * @return the RootNode containing all added nodes, in the order they were added
+     * @throws IllegalStateException whenever the builder has already been frozen
+     */
+    public RootNode freeze() {
+        synchronized (this) {
+            this.checkNotFrozen();
+            this.frozen = true;
+        }
+
+        List<Level> levels = new ArrayList<>();
+        this.rootLevel.collect(levels);
+        levels.sort(Comparator.comparingInt((Level level) -> level.depth).reversed());
+
+        RootNode rootNode = new RootNode(this.maxDepth);
+
+        for (Level level : levels) {
+            level.close();
+
+            for (IdentifiableNode node : level.inOrder()) {
+                if (level.parent == null) {
+                    rootNode.addChild(node);
+                }
+
+                else {
+                    level.parent.addChild(node);
+                }
+            }
+        }
+
+        return rootNode;
+    }
+
+    /**
+     * Check a node against the rules of the structure and add it to a level.
+     * The key is only claimed once every other check has passed.
+     *
+     * @param newChild the node to add
+     * @param level the level of the parent
+     */
+    private void addChild(IdentifiableNode newChild, Level level) {
+        if (newChild == null) {
+            throw new NullPointerException();
+        }
+
+        if (level.parent instanceof TableNode && !TableNode.isRow(newChild)) {
+            throw new StructureViolationException();
+        }
+
+        if (level.leavesOnly && newChild instanceof CompositeNode) {
+            throw new StructureViolationException();
+        }
+
+        if (this.maxDepth < level.depth - 1 + CompositeNode.heightOf(newChild)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        this.checkNotFrozen();
+
+        if (level.children.putIfAbsent(newChild.getKey(), newChild) != null) {
+            throw new KeyAlreadyExistsException();
+        }
+
+        level.add(newChild);
+    }
+
+    /**
+     * Walk a path down from a level to the level of the parent at the end of it.
+     * At every level the longest key matching the start of the remaining path is tried first.
+     *
+     * @param level the level to start at
+     * @param path the remaining path
+     * @return the level of the parent at the end of the path, null if the path does not lead to a composite node
+     */
+    private Level resolve(Level level, String path) {
+        Level child = level.levelOf(path);
+
+        if (child != null) {
+            return child;
+        }
+
+        for (int separator = path.lastIndexOf('/'); separator > 0; separator = path.lastIndexOf('/', separator - 1)) {
+            child = level.levelOf(path.substring(0, separator));
+
+            if (child != null) {
+                Level found = this.resolve(child, path.substring(separator + 1));
+
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Check whether nodes can still be added.
+     *
+     * @throws IllegalStateException whenever the builder has been frozen
+     */
+    private void checkNotFrozen() {
+        if (this.frozen) {
+            throw new IllegalStateException("The builder has been frozen");
+        }
+    }
+
+    /**
+     * Get the stripe the current thread adds its nodes to.
+     * The stripe follows from the identity of the thread, so a thread keeps using the same stripe.
+     *
+     * @return the index of the stripe
+     */
+    private static int stripeOfCurrentThread() {
+        int hash = System.identityHashCode(Thread.currentThread());
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * The nodes added below a single parent, spread over stripes.
+     */
+    private final class Level {
+
+        /**
+         * The composite node the nodes are added to, null for the root.
+         */
+        private final CompositeNode parent;
+
+        /**
+         * The depth of the nodes added to this level, 1 directly below the root.
+         */
+        private final int depth;
+
+        /**
+         * Whether the parent only accepts leaf nodes, as a row does.
+         */
+        private final boolean leavesOnly;
+
+        /**
+         * The children of the parent by their key, including the children it had when it was added.
+         */
+        private final ConcurrentHashMap<String, IdentifiableNode> children;
+
+        /**
+         * The levels of the composite children of the parent by their key, created once a path leads through them.
+         */
+        private final ConcurrentHashMap<String, Level> levels;
+
+        /**
+         * The stripes holding the added nodes, a stripe is only created when the first node is added to it.
+         */
+        private final AtomicReferenceArray<Stripe> stripes;
+
+        private Level(CompositeNode parent, int depth, boolean leavesOnly) {
+            this.parent = parent;
+            this.depth = depth;
+            this.leavesOnly = leavesOnly;
+            this.children = new ConcurrentHashMap<>();
+            this.levels = new ConcurrentHashMap<>();
+            this.stripes = new AtomicReferenceArray<>(STRIPES);
+
+            if (parent != null) {
+                for (IdentifiableNode child : parent.getChildren()) {
+                    this.children.put(child.getKey(), child);
+                }
+            }
+        }
+
+        /**
+         * Get the level of a composite child of the parent, creating it when no path has led through it yet.
+         * The children of a row of a table, or of a RowNode, may only be leaf nodes.
+         *
+         * @param key the key of the child
+         * @return the level of the child, null if the parent has no composite child with the key
+         */
+        private Level levelOf(String key) {
+            if (!(this.children.get(key) instanceof CompositeNode child)) {
+                return null;
+            }
+
+            return this.levels.computeIfAbsent(key, childKey -> new Level(
+                child, this.depth + 1, child instanceof RowNode || this.parent instanceof TableNode
+            ));
+        }
+
+        /**
+         * Add this level and every level below it to a list.
+         *
+         * @param result the list to add the levels to
+         */
+        private void collect(List<Level> result) {
+            result.add(this);
+
+            for (Level level : this.levels.values()) {
+                level.collect(result);
+            }
+        }
+
+        /**
+         * Add a node to the stripe of the current thread.
+         * The builder is checked again under the lock of the stripe,
+         * so a node that is added while freezing is rejected.
+         *
+         * @param node the node to add
+         * @throws IllegalStateException whenever the builder has been frozen
+         */
+        private void add(IdentifiableNode node) {
+            int index = stripeOfCurrentThread();
+            Stripe stripe = this.stripes.get(index);
+
+            if (stripe == null) {
+                this.stripes.compareAndSet(index, null, new Stripe());
+                stripe = this.stripes.get(index);
+            }
+
+            synchronized (stripe) {
+                if (stripe.closed || frozen) {
+                    throw new IllegalStateException("The builder has been frozen");
+                }
+
+                stripe.add(node, sequence.getAndIncrement());
+            }
+        }
+
+        /**
+         * Close every stripe, waiting for nodes that are being added to them.
+         */
+        private void close() {
+            for (int i = 0; i < STRIPES; i++) {
+                this.stripes.compareAndSet(i, null, new Stripe());
+
+                synchronized (this.stripes.get(i)) {
+                    this.stripes.get(i).closed = true;
+                }
+            }
+        }
+
+        /**
+         * Merge the stripes into a single array ordered by the moment the nodes were added.
+         * Every stripe is already ordered, so the stripes are merged through a queue of their first nodes.
+         *
+         * @return the nodes of the level in the order they were added
+         */
+        private IdentifiableNode[] inOrder() {
+            int total = 0;
+            for (int i = 0; i < STRIPES; i++) {
+                total += this.stripes.get(i).size;
+            }
+
+            int[] positions = new int[STRIPES];
+            PriorityQueue<Stripe> heads = new PriorityQueue<>(STRIPES, Comparator.comparingLong(
+                stripe -> stripe.sequences[positions[stripe.index]]
+            ));
+
+            for (int i = 0; i < STRIPES; i++) {
+                Stripe stripe = this.stripes.get(i);
+                stripe.index = i;
+
+                if (stripe.size > 0) {
+                    heads.add(stripe);
+                }
+            }
+
+            IdentifiableNode[] result = new IdentifiableNode[total];
+            for (int i = 0; i < total; i++) {
+                Stripe stripe = heads.poll();
+                result[i] = stripe.nodes[positions[stripe.index]++];
+
+                if (positions[stripe.index] < stripe.size) {
+                    heads.add(stripe);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * A part of a level, holding the nodes added by the threads that map to it and the moment they were added.
+     * The stripe is guarded by its own monitor.
+     */
+    private static final class Stripe {
+        private IdentifiableNode[] nodes = new IdentifiableNode[16];
+        private long[] sequences = new long[16];
+        private int size;
+        private int index;
+        private boolean closed;
+
+        /**
+         * Append a node to the stripe.
+         *
+         * @param node the node to append
+         * @param order the moment the node was added
+         */
+        private void add(IdentifiableNode node, long order) {
+            if (this.size == this.nodes.length) {
+                this.nodes = Arrays.copyOf(this.nodes, this.size * 2);
+                this.sequences = Arrays.copyOf(this.sequences, this.size * 2);
+            }
+
+            this.nodes[this.size] = node;
+            this.sequences[this.size++] = order;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package nl.sourceassist.datastorageutility.datastructure;
 
+import java.io.IOException;
+
 /**
  * The IdentifiableNode interface represents data within a data structure.
  * A data structure is comparable to how JavaScript handles object.
@@ -25,6 +27,17 @@ public interface IdentifiableNode {
      */
     String getData();
 
+    /**
+     * Write the data associated with the component to the provided output.
+     * The result is equal to getData(), but it is written without building it as a string first.
+     *
+     * @param out the output to write the data to, for example a StringBuilder, Writer or CharBuffer
+     * @throws IOException whenever the output can not be written to
+     */
+    default void appendData(Appendable out) throws IOException {
+        out.append(this.getData());
+    }
+
     /**
      * Set the key of the node to a new value.
      * CAREFUL, using this functions means the application isn't checking for duplicate keys anymore.
@@ -3,9 +3,16 @@ package nl.sourceassist.datastorageutility.datastructure;
 /**
  * The LeafNode class represents a leaf node in a data structure.
  * It's a point within the structure that contains a single value.
+ * A value created with a type other than STRING is stored as a primitive whenever it fits that type,
+ * a value created without a type is typed by its contents the first time its type is asked for.
  */
 public class LeafNode implements IdentifiableNode {
 
+    /**
+     * The tag of a value of which the type has not been determined yet.
+     */
+    private static final byte UNTYPED = -1;
+
     /**
      * The key variable represents the key of the leaf node in a data structure.
      * It is used to uniquely identify the leaf node within the data structure.
@@ -22,6 +29,25 @@ public class LeafNode implements IdentifiableNode {
      */
     private String data;
 
+    /**
+     * The tag of the value, saying whether it is text or a primitive, UNTYPED until it has been determined.
+     * The data is null when the value is only stored as a primitive.
+     *
+     * @see TypedValues
+     */
+    private byte tag;
+
+    /**
+     * The primitive value, only meaningful when the tag says the value is a number.
+     */
+    private long number;
+
+    /**
+     * The composite node this node was last added to, null if it has not been added to one.
+     * The parent is notified when the key of this node changes.
+     */
+    CompositeNode parent;
+
     /**
      * Constructs a new LeafNode object with the given key and data.
      *
@@ -31,6 +57,28 @@ public class LeafNode implements IdentifiableNode {
     public LeafNode(String key, String data) {
         this.key = key;
         this.data = data;
+        this.tag = UNTYPED;
+    }
+
+    /**
+     * Constructs a new LeafNode object with the given key and typed data.
+     * Numbers and booleans are stored as primitives, accepting both a decimal point and a decimal comma.
+     * Data that does not fit the type, and data of the STRING type, is stored as text.
+     *
+     * @param key the key of the leaf node, used to uniquely identify it within a data structure
+     * @param data the data associated with the leaf node
+     * @param type the type of the data
+     */
+    public LeafNode(String key, String data, ValueType type) {
+        this(key, data);
+
+        if (type == ValueType.STRING) {
+            this.tag = data == null ? TypedValues.MISSING : TypedValues.TEXT;
+        }
+
+        else if (this.determineType() != TypedValues.TEXT && this.tag != TypedValues.EMPTY) {
+            this.data = null;
+        }
     }
 
     /** {@inheritDoc} */
@@ -40,12 +88,61 @@ public class LeafNode implements IdentifiableNode {
 
     /** {@inheritDoc} */
     public String getData() {
+        if (this.data == null && this.tag != UNTYPED) {
+            return TypedValues.decode(this.tag, null, this.number);
+        }
+
         return this.data;
     }
 
     /** {@inheritDoc} */
     public void setKey(String newKey) {
+        String oldKey = this.key;
         this.key = newKey;
+
+        if (this.parent != null) {
+            this.parent.onChildKeyChanged(this, oldKey);
+        }
+    }
+
+    /**
+     * Get the type of the value of the node.
+     * Numbers are recognised with both a decimal point and a decimal comma.
+     *
+     * @return the type of the value, null if the node has no value
+     */
+    public ValueType getType() {
+        return TypedValues.typeOf(this.determineType());
+    }
+
+    /**
+     * Get the value of the node as a whole number.
+     *
+     * @return the whole number
+     * @throws IllegalStateException whenever the value is not a whole number
+     */
+    public long getLong() {
+        return TypedValues.getLong(this.determineType(), this.data, this.number);
+    }
+
+    /**
+     * Get the value of the node as a decimal number, whole numbers are converted.
+     *
+     * @return the decimal number
+     * @throws IllegalStateException whenever the value is not a number
+     */
+    public double getDouble() {
+        return TypedValues.getDouble(this.determineType(), this.data, this.number);
+    }
+
+    /**
+     * Get the value of the node as a boolean.
+     *
+     * @return the boolean
+     * @throws IllegalStateException whenever the value is neither true nor false
+     */
+    public boolean getBoolean() {
+        return TypedValues.getBoolean(this.determineType(), this.data);
     }
 
     /**
@@ -55,5 +152,26 @@ public class LeafNode implements IdentifiableNode {
      */
     public void setData(String newData) {
         this.data = newData;
+        this.tag = UNTYPED;
+
+        if (this.parent != null) {
+            this.parent.invalidateData();
+        }
+    }
+
+    /**
+     * Determine the tag of the value from its contents, unless that has been done before.
+     * The result is kept until the data changes, so the value is only parsed once.
+     *
+     * @return the tag of the value
+     */
+    private byte determineType() {
+        if (this.tag == UNTYPED) {
+            long[] parsed = new long[1];
+            this.tag = TypedValues.parse(this.data, parsed, 0);
+            this.number = parsed[0];
+        }
+
+        return this.tag;
     }
 }
@@ -0,0 +1,248 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The NodeArena stores text outside the heap, as UTF-8 bytes in large direct buffers.
+ * Every stored text is identified by a handle, a single long holding its chunk and its position in that chunk,
+ * so the heap only holds the handles instead of a string object per value.
+ * The garbage collector does not have to visit stored text, which keeps marking times down for large merges.
+ * Nothing is freed on its own: closing the arena releases everything it stores at once.
+ * The chunks of a closed arena are kept in a shared pool, so the next arena does not allocate them again.
+ * Storing is synchronized, loading is not: a handle should reach other threads the same way as the node holding it.
+ * Only the text of the cells of a TableNode is stored here: keys, and the text of other composite and leaf nodes,
+ * stay on the heap.
+ */
+public class NodeArena implements Closeable {
+
+    /**
+     * The size of a chunk, text that does not fit in a chunk gets a chunk of its own.
+     */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    /**
+     * The amount of bytes before every text, holding the length of its bytes.
+     */
+    private static final int LENGTH_SIZE = Integer.BYTES;
+
+    /**
+     * The maximum amount of chunks kept in the pool, together taking up 64 MB.
+     */
+    private static final int MAX_POOLED_CHUNKS = 64;
+
+    /**
+     * The chunks released by closed arenas, ready to be used by a new arena.
+     */
+    private static final ConcurrentLinkedQueue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The amount of chunks in the pool, kept separately since the size of the queue is not constant time.
+     */
+    private static final AtomicInteger POOLED_CHUNKS = new AtomicInteger();
+
+    /**
+     * The chunks of the arena, indexed by the chunk number of a handle, null once the arena has been closed.
+     * The array is replaced whenever a chunk is added, so loading never sees a chunk that is half set up.
+     */
+    private volatile ByteBuffer[] chunks;
+
+    /**
+     * The amount of chunks in use.
+     */
+    private int chunkCount;
+
+    /**
+     * The position of the next text in the last chunk.
+     */
+    private int position;
+
+    /**
+     * The amount of bytes the stored text takes up, including the lengths in front of it.
+     */
+    private long usedBytes;
+
+    /**
+     * Create an empty arena, its first chunk is taken when the first text is stored.
+     */
+    public NodeArena() {
+        this.chunks = new ByteBuffer[0];
+    }
+
+    /**
+     * Store text in the arena.
+     *
+     * @param text the text to store
+     * @return the handle of the stored text
+     * @throws NullPointerException whenever the text is null
+     * @throws IllegalStateException whenever the arena has been closed
+     */
+    public synchronized long store(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int size = LENGTH_SIZE + bytes.length;
+        ByteBuffer chunk = this.reserve(size);
+        int offset = this.position;
+
+        chunk.putInt(offset, bytes.length);
+        chunk.put(offset + LENGTH_SIZE, bytes);
+        this.position += size;
+        this.usedBytes += size;
+
+        return (long) (this.chunkCount - 1) << 32 | offset;
+    }
+
+    /**
+     * Load text that has been stored in the arena.
+     *
+     * @param handle the handle returned by store()
+     * @return the stored text
+     * @throws IllegalStateException whenever the arena has been closed
+     */
+    public String load(long handle) {
+        ByteBuffer chunk = this.chunkOf(handle);
+        int offset = (int) handle;
+        byte[] bytes = new byte[chunk.getInt(offset)];
+
+        chunk.get(offset + LENGTH_SIZE, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write text that has been stored in the arena to the provided output.
+     * The text is decoded straight from its chunk, without building a string or copying its bytes first.
+     *
+     * @param handle the handle returned by store()
+     * @param out the output to write the text to
+     * @throws IOException whenever the output can not be written to
+     * @throws IllegalStateException whenever the arena has been closed
+     */
+    public void appendTo(long handle, Appendable out) throws IOException {
+        ByteBuffer chunk = this.chunkOf(handle);
+        int position = (int) handle + LENGTH_SIZE;
+        int end = position + chunk.getInt((int) handle);
+
+        while (position < end) {
+            int lead = chunk.get(position++) & 0xFF;
+
+            if (lead < 0x80) {
+                out.append((char) lead);
+            }
+
+            else if (lead < 0xE0) {
+                out.append((char) ((lead & 0x1F) << 6 | chunk.get(position++) & 0x3F));
+            }
+
+            else if (lead < 0xF0) {
+                int high = (lead & 0x0F) << 12 | (chunk.get(position++) & 0x3F) << 6;
+                out.append((char) (high | chunk.get(position++) & 0x3F));
+            }
+
+            else {
+                int codePoint = (lead & 0x07) << 18 | (chunk.get(position++) & 0x3F) << 12
+                    | (chunk.get(position++) & 0x3F) << 6 | chunk.get(position++) & 0x3F;
+                out.append(Character.highSurrogate(codePoint)).append(Character.lowSurrogate(codePoint));
+            }
+        }
+    }
+
+    /**
+     * Get the amount of bytes the stored text takes up outside the heap.
+     *
+     * @return the amount of bytes
+     */
+    public synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    /**
+     * Release all stored text at once, after which none of its handles can be loaded.
+     * Chunks of the regular size are returned to the pool as long as it has room,
+     * other chunks are left to the garbage collector, which frees their memory along with the buffer objects.
+     */
+    @Override
+    public synchronized void close() {
+        ByteBuffer[] current = this.chunks;
+
+        if (current == null) {
+            return;
+        }
+
+        this.chunks = null;
+
+        for (int i = 0; i < this.chunkCount; i++) {
+            if (current[i].capacity() == CHUNK_SIZE && POOLED_CHUNKS.incrementAndGet() <= MAX_POOLED_CHUNKS) {
+                POOL.add(current[i].clear());
+            }
+
+            else if (current[i].capacity() == CHUNK_SIZE) {
+                POOLED_CHUNKS.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Get a chunk with room for the provided amount of bytes at the current position,
+     * adding a chunk when the last one is full.
+     *
+     * @param size the amount of bytes to make room for
+     * @return the chunk to write to
+     * @throws IllegalStateException whenever the arena has been closed
+     */
+    private ByteBuffer reserve(int size) {
+        ByteBuffer[] current = this.chunks;
+
+        if (current == null) {
+            throw new IllegalStateException("The arena has been closed");
+        }
+
+        if (this.chunkCount > 0 && this.position + size <= current[this.chunkCount - 1].capacity()) {
+            return current[this.chunkCount - 1];
+        }
+
+        ByteBuffer chunk = size > CHUNK_SIZE ? ByteBuffer.allocateDirect(size) : takeChunk();
+        ByteBuffer[] grown = Arrays.copyOf(current, this.chunkCount + 1);
+        grown[this.chunkCount++] = chunk;
+
+        this.chunks = grown;
+        this.position = 0;
+        return chunk;
+    }
+
+    /**
+     * Get the chunk a handle points into.
+     *
+     * @param handle the handle returned by store()
+     * @return the chunk holding the text of the handle
+     * @throws IllegalStateException whenever the arena has been closed
+     */
+    private ByteBuffer chunkOf(long handle) {
+        ByteBuffer[] current = this.chunks;
+
+        if (current == null) {
+            throw new IllegalStateException("The arena has been closed");
+        }
+
+        return current[(int) (handle >>> 32)];
+    }
+
+    /**
+     * Take a chunk of the regular size from the pool, or allocate one when the pool is empty.
+     *
+     * @return an empty chunk
+     */
+    private static ByteBuffer takeChunk() {
+        ByteBuffer chunk = POOL.poll();
+
+        if (chunk == null) {
+            return ByteBuffer.allocateDirect(CHUNK_SIZE);
+        }
+
+        POOLED_CHUNKS.decrementAndGet();
+        return chunk;
+    }
+}
@@ -0,0 +1,106 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The NodeIterator walks every node of one or more subtrees, depth first or breadth first.
+ * Instead of copying the children of a composite node into a queue, the iterator keeps a frame per composite node
+ * holding an iterator over its children. Depth first walks continue with the frame added last,
+ * breadth first walks with the frame added first, so both visit the nodes without copying the structure.
+ * The structure should not be changed while it is being iterated.
+ */
+final class NodeIterator implements Iterator<IdentifiableNode> {
+
+    /**
+     * The iterators over the children of the composite nodes that have been visited but not yet finished.
+     */
+    private final ArrayDeque<Frame> frames;
+
+    /**
+     * Whether the walk is depth first, pre-order, instead of breadth first.
+     */
+    private final boolean depthFirst;
+
+    /**
+     * Whether the children of nodes that create their children as views are visited as well.
+     */
+    private final boolean descendIntoViews;
+
+    /**
+     * The depth of the node returned last, 1 for the nodes the walk started with.
+     */
+    private int depth;
+
+    /**
+     * Create an iterator over the provided nodes and everything below them.
+     *
+     * @param nodes the nodes to start the walk with
+     * @param depthFirst true to walk depth first in pre-order, false to walk breadth first
+     * @param descendIntoViews whether the rows and cells of tables and rows are visited as well
+     */
+    NodeIterator(Collection<IdentifiableNode> nodes, boolean depthFirst, boolean descendIntoViews) {
+        this.frames = new ArrayDeque<>();
+        this.frames.add(new Frame(nodes.iterator(), 1));
+        this.depthFirst = depthFirst;
+        this.descendIntoViews = descendIntoViews;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext() {
+        while (!this.frames.isEmpty() && !this.frames.peekFirst().children.hasNext()) {
+            this.frames.pollFirst();
+        }
+
+        return !this.frames.isEmpty();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public IdentifiableNode next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Frame frame = this.frames.peekFirst();
+        IdentifiableNode node = frame.children.next();
+        this.depth = frame.depth;
+
+        if (node instanceof CompositeNode composite
+            && (this.descendIntoViews || !composite.hasChildViews())
+            && !composite.getChildren().isEmpty()) {
+            Frame children = new Frame(composite.getChildren().iterator(), frame.depth + 1);
+
+            if (this.depthFirst) {
+                this.frames.addFirst(children);
+            }
+
+            else {
+                this.frames.addLast(children);
+            }
+        }
+
+        return node;
+    }
+
+    /**
+     * Get the depth of the node returned last by next().
+     *
+     * @return the depth of the node, starting at 1 for the nodes the walk started with
+     */
+    int getDepth() {
+        return this.depth;
+    }
+
+    /**
+     * The remaining children of a visited composite node and the depth they are at.
+     *
+     * @param children the iterator over the children that have not been returned yet
+     * @param depth the depth of the children
+     */
+    private record Frame(Iterator<IdentifiableNode> children, int depth) {
+    }
+}
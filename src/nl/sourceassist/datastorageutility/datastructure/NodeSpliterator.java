@@ -0,0 +1,134 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * The NodeSpliterator covers a range of subtrees and visits their nodes depth first in pre-order.
+ * Splitting divides the range of subtrees in half. When a single subtree is left,
+ * its root is kept as the only node of this spliterator and its children become the range to split,
+ * so even a structure consisting of a single large table is divided over its rows.
+ * Splitting is only possible before the first node has been visited.
+ * The structure should not be changed while it is being traversed.
+ */
+final class NodeSpliterator implements Spliterator<IdentifiableNode> {
+
+    /**
+     * A node that is visited before the range of subtrees, without visiting its children, null if there is none.
+     */
+    private IdentifiableNode pending;
+
+    /**
+     * The roots of the subtrees covered by this spliterator.
+     */
+    private IdentifiableNode[] roots;
+
+    /**
+     * The index of the next subtree to visit.
+     */
+    private int index;
+
+    /**
+     * The index after the last subtree covered by this spliterator.
+     */
+    private int fence;
+
+    /**
+     * The walk through the subtree that is currently visited, null before the first subtree.
+     */
+    private NodeIterator current;
+
+    /**
+     * Create a spliterator over the provided subtrees.
+     *
+     * @param pending a node to visit before the subtrees, without its children, null if there is none
+     * @param roots the roots of the subtrees
+     * @param index the index of the first subtree to cover
+     * @param fence the index after the last subtree to cover
+     */
+    NodeSpliterator(IdentifiableNode pending, IdentifiableNode[] roots, int index, int fence) {
+        this.pending = pending;
+        this.roots = roots;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean tryAdvance(Consumer<? super IdentifiableNode> action) {
+        if (this.pending != null) {
+            IdentifiableNode node = this.pending;
+            this.pending = null;
+            action.accept(node);
+            return true;
+        }
+
+        while (this.current == null || !this.current.hasNext()) {
+            if (this.index >= this.fence) {
+                return false;
+            }
+
+            this.current = new NodeIterator(List.of(this.roots[this.index++]), true, true);
+        }
+
+        action.accept(this.current.next());
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Spliterator<IdentifiableNode> trySplit() {
+        if (this.current != null || this.index >= this.fence) {
+            return null;
+        }
+
+        if (this.fence - this.index > 1) {
+            int middle = (this.index + this.fence) >>> 1;
+            NodeSpliterator prefix = new NodeSpliterator(this.pending, this.roots, this.index, middle);
+            this.pending = null;
+            this.index = middle;
+            return prefix;
+        }
+
+        IdentifiableNode root = this.roots[this.index];
+        if (!(root instanceof CompositeNode) || ((CompositeNode) root).getChildren().isEmpty()) {
+            return null;
+        }
+
+        if (this.pending != null) {
+            NodeSpliterator prefix = new NodeSpliterator(this.pending, this.roots, this.index, this.index);
+            this.pending = null;
+            return prefix;
+        }
+
+        IdentifiableNode[] children = ((CompositeNode) root).getChildren().toArray(IdentifiableNode[]::new);
+        int middle = children.length >>> 1;
+        NodeSpliterator prefix = new NodeSpliterator(root, children, 0, middle);
+        this.roots = children;
+        this.index = middle;
+        this.fence = children.length;
+        return prefix;
+    }
+
+    /**
+     * Estimate the amount of nodes left, assuming every subtree has as many children as the next one.
+     *
+     * @return the estimated amount of nodes
+     */
+    @Override
+    public long estimateSize() {
+        long subtrees = this.fence - this.index;
+        long children = subtrees > 0 && this.roots[this.index] instanceof CompositeNode composite
+            ? composite.getChildren().size()
+            : 0;
+
+        return (this.pending == null ? 0 : 1) + subtrees * (1 + children);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int characteristics() {
+        return Spliterator.ORDERED | Spliterator.NONNULL;
+    }
+}
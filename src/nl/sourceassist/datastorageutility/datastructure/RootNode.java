@@ -1,8 +1,15 @@
 package nl.sourceassist.datastorageutility.datastructure;
 
 import javax.management.openmbean.KeyAlreadyExistsException;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Spliterator;
 import java.util.concurrent.StructureViolationException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The root of a data structure comprised of composable IdentifiableNode objects.
@@ -20,9 +27,41 @@ public class RootNode {
 
     /**
      * The actual data structure.
-     * Holds a composition of IdentifiableNode objects.
+     * Holds a composition of IdentifiableNode objects as the children of an anchor node.
+     * The anchor keeps a key index of the root level and the height of the whole structure up to date.
      */
-    private final ArrayList<IdentifiableNode> children;
+    private final CompositeNode root;
+
+    /**
+     * Index from key to the node closest to the root carrying it, kept up to date by the anchor.
+     * Every entry also counts the nodes sharing its key.
+     */
+    private final HashMap<String, KeyEntry> keyIndex;
+
+    /**
+     * The nodes in the structure that create their children as views, such as tables and rows,
+     * with their depth and the order in which they were added.
+     * Their children are not part of the key index, so they are looked up through the view index and the tables.
+     */
+    private final HashMap<CompositeNode, ViewParent> viewParents;
+
+    /**
+     * Index from the key of a view to the view parent closest to the root holding it, other than a table.
+     * The parent is asked for the view on lookup, so an entry of which the view or the parent has been removed
+     * since is noticed and repaired by searching the view parents once.
+     */
+    private final HashMap<String, ViewEntry> viewIndex;
+
+    /**
+     * The tables in the structure, which are asked for their rows and cells directly.
+     * A table finds both a row and the first cell of a column in constant time, so only the amount of tables counts.
+     */
+    private final LinkedHashSet<TableNode> tables;
+
+    /**
+     * The order of the next view parent to be added to the structure.
+     */
+    private long viewOrder;
 
     /**
      * Create an instance of the rootNode builder class.
@@ -31,7 +70,12 @@ public class RootNode {
      */
     public RootNode() {
         this.maxDepth = Integer.MAX_VALUE;
-        this.children = new ArrayList<>();
+        this.root = new CompositeNode("");
+        this.root.owner = this;
+        this.keyIndex = new HashMap<>();
+        this.viewParents = new HashMap<>();
+        this.viewIndex = new HashMap<>();
+        this.tables = new LinkedHashSet<>();
     }
 
     /**
@@ -47,92 +91,341 @@ public class RootNode {
         }
 
         this.maxDepth = maximumDepth;
-        this.children = new ArrayList<>();
+        this.root = new CompositeNode("");
+        this.root.owner = this;
+        this.keyIndex = new HashMap<>();
+        this.viewParents = new HashMap<>();
+        this.viewIndex = new HashMap<>();
+        this.tables = new LinkedHashSet<>();
     }
 
     /**
-     * Internal constructor used to check additional length when adding composite nodes.
-     * In order to check for the extra length, a simple instance with a single node is needed.
-     * However, none of the checks should be executed since that will create an infinite loop.
+     * Create an instance of the rootNode builder class for tabular data.
+     * The rows are stored in the provided table, so the structure has a maximum depth of 2.
+     * Added rows are copied into the columns of the table.
      *
-     * @param node the node you want to add to the structure without checks.
+     * @param table the empty table holding the rows of the structure
+     * @see TableNode the columnar layout of the rows.
      */
-    private RootNode(IdentifiableNode node) {
-        this.maxDepth = Integer.MAX_VALUE;
-        this.children = new ArrayList<>();
-        this.children.add(node);
+    public RootNode(TableNode table) {
+        this.maxDepth = 2;
+        this.root = table;
+        this.root.owner = this;
+        this.keyIndex = new HashMap<>();
+        this.viewParents = new HashMap<>();
+        this.viewIndex = new HashMap<>();
+        this.tables = new LinkedHashSet<>();
+        this.indexViews(table, 0);
     }
 
     /**
      * Return the current depth of the data structure.
      * The number returned is the deepest point the structure.
+     * The depth is maintained while nodes are added, so this takes constant time.
      *
      * @return the depth of the structure
      */
     public int getDepth() {
-        int depth = 0;
+        return this.root.getHeight() - 1;
+    }
+
+    /**
+     * Helper function to determine the depth of a node.
+     * When a composite node is provided, the depth of that node is its maintained height.
+     *
+     * @param node the node to analyze
+     * @return the extra depth required for the node.
+     */
+    private int determineExtraDepth(IdentifiableNode node) {
+        return CompositeNode.heightOf(node);
+    }
+
+    /**
+     * Returns the nodes directly below the root, in the order they were added.
+     *
+     * @return a read-only collection of the nodes at the root level
+     */
+    public Collection<IdentifiableNode> getChildren() {
+        return this.root.getChildren();
+    }
 
-        if (!this.children.isEmpty()) {
-            ArrayList<IdentifiableNode> queue = new ArrayList<>(this.children);
+    /**
+     * Returns an iterator over every node in the structure, depth first in pre-order.
+     * The rows and cells of tables are visited as well.
+     *
+     * @return an iterator over the nodes of the structure
+     */
+    public Iterator<IdentifiableNode> depthFirstIterator() {
+        return this.root.depthFirstIterator();
+    }
 
-            while(!queue.isEmpty()) {
-                ArrayList<IdentifiableNode> currentQueue = new ArrayList<>(queue);
-                queue.clear();
+    /**
+     * Returns an iterator over every node in the structure, breadth first.
+     * The rows and cells of tables are visited as well.
+     *
+     * @return an iterator over the nodes of the structure
+     */
+    public Iterator<IdentifiableNode> breadthFirstIterator() {
+        return this.root.breadthFirstIterator();
+    }
 
-                for (IdentifiableNode node : currentQueue) {
-                    if (node instanceof CompositeNode) {
-                        queue.addAll(((CompositeNode) node).getChildren());
-                    }
-                }
+    /**
+     * Returns a spliterator over every node in the structure, in the depth first order of depthFirstIterator().
+     * The spliterator divides the structure into subtrees, down to the rows of a table when necessary,
+     * so the nodes can be processed in parallel.
+     *
+     * @return a spliterator over the nodes of the structure
+     */
+    public Spliterator<IdentifiableNode> spliterator() {
+        IdentifiableNode[] children = this.root.getChildren().toArray(IdentifiableNode[]::new);
+        return new NodeSpliterator(null, children, 0, children.length);
+    }
+
+    /**
+     * Returns a sequential stream of every node in the structure, in depth first order.
+     *
+     * @return a stream of the nodes of the structure
+     */
+    public Stream<IdentifiableNode> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream of every node in the structure, processed on the common fork-join pool.
+     * The structure should not be changed while the stream is processed.
+     *
+     * @return a parallel stream of the nodes of the structure
+     */
+    public Stream<IdentifiableNode> parallelStream() {
+        return StreamSupport.stream(this.spliterator(), true);
+    }
+
+    /**
+     * Get a child from the data structure by its key.
+     * Whenever multiple nodes share the key, the node closest to the root is returned.
+     * Between nodes at the same depth, the node that was added to the structure first wins.
+     * The lookup goes through the key index, unless the winning node has been removed or renamed,
+     * in which case the structure is searched once.
+     * The cells of a RowNode are indexed by their row, which is asked for the cell on lookup.
+     * The rows and cells of a TableNode are not indexed. Instead, every table is asked for the key,
+     * where a column of a table is found in the first row holding a value in that column.
+     * Neither depends on the amount of rows, unless the indexed row of a key no longer holds it,
+     * in which case the rows are searched once.
+     * Between an indexed node and a row or cell at the same depth, the indexed node wins.
+     *
+     * @param key the key of the child to look for
+     * @return the child object, null if not found
+     */
+    public IdentifiableNode getChild(String key) {
+        KeyEntry entry = this.resolveKey(key);
+        return entry == null ? null : entry.node;
+    }
+
+    /**
+     * Get a child from the data structure by its path.
+     * A path consists of the keys from the root down to the node, separated by slashes,
+     * for example {@code 2012.csv/3/Roker (%)}.
+     * Keys may contain slashes themselves, at every level the longest key matching the start of the path is used.
+     * Each level is looked up in the key index of its parent, so the time taken only depends on the length of the path.
+     *
+     * @param path the path of the child to look for
+     * @return the child object, null if not found
+     */
+    public IdentifiableNode getChildByPath(String path) {
+        PathMatch match = this.resolvePath(this.root, path, 1);
+        return match == null ? null : match.node;
+    }
+
+    /**
+     * Get the composite node a node in the structure belongs to.
+     *
+     * @param node the node to get the parent of
+     * @return the parent of the node, null for nodes directly below the root or nodes outside the structure
+     */
+    public CompositeNode getParent(IdentifiableNode node) {
+        CompositeNode parent = CompositeNode.getParent(node);
+        return parent == this.root ? null : parent;
+    }
+
+    /**
+     * Get the depth of a specific node.
+     * The key is looked up following the rules of getChild(), when no node has the key, it is tried as a path.
+     *
+     * @param key the key or path of the node to look for
+     * @return the depth of the node, starting at 1 for root level nodes, -1 if not found
+     * @see RootNode#getChild(String)
+     * @see RootNode#getChildByPath(String)
+     */
+    public int getNodeDepth(String key) {
+        KeyEntry entry = this.resolveKey(key);
+
+        if (entry != null) {
+            return entry.depth;
+        }
+
+        PathMatch match = key == null ? null : this.resolvePath(this.root, key, 1);
+        return match == null ? -1 : match.depth;
+    }
+
+    /**
+     * Look up the index entry of a key, repairing it when its node has been removed or renamed.
+     *
+     * @param key the key to look up
+     * @return the entry of the key, null if no node has the key
+     */
+    private KeyEntry resolveKey(String key) {
+        KeyEntry entry = this.keyIndex.get(key);
+
+        if (entry != null && entry.node == null) {
+            this.findShallowest(key, entry);
 
-                depth = depth + 1;
+            if (entry.node == null) {
+                entry = null;
             }
         }
 
-        return depth;
+        KeyEntry view = this.findInViews(key, entry == null ? Integer.MAX_VALUE : entry.depth);
+        return view == null ? entry : view;
     }
 
     /**
-     * Helper function to determine the depth of a node.
-     * When a composite node is provided, the depth of that node will be calculated.
+     * Look up a key among the children of the nodes that create their children as views.
+     * The rows of a table and the cells of a row are one level below their parent, the cells of a table two levels.
+     * Between views at the same depth, the view of the parent that was added first wins.
      *
-     * @param node the node to analyze
-     * @return the extra depth required for the node.
+     * @param key the key to look for
+     * @param limit the depth a found node has to be closer to the root than
+     * @return an entry holding the closest node with the key, null if none is closer than the limit
      */
-    private int determineExtraDepth(IdentifiableNode node) {
-        int size = 1;
+    private KeyEntry findInViews(String key, int limit) {
+        KeyEntry found = null;
+        long order = Long.MAX_VALUE;
+        ViewEntry entry = this.viewIndex.get(key);
+        IdentifiableNode node = entry == null ? null : entry.parent().getChild(key);
+
+        if (entry != null && (node == null || !this.isCurrent(entry))) {
+            entry = this.findViewParent(key);
+            node = entry == null ? null : entry.parent().getChild(key);
+        }
 
-        if (node instanceof CompositeNode) {
-            RootNode structure = new RootNode(node);
-            size = structure.getDepth();
+        if (node != null && entry.view().depth() + 1 < limit) {
+            found = new KeyEntry();
+            found.node = node;
+            found.depth = entry.view().depth() + 1;
+            limit = found.depth;
+            order = entry.view().order();
         }
 
-        return size;
+        for (TableNode table : this.tables) {
+            ViewParent view = this.viewParents.get(table);
+            boolean first = found != null && view.order() < order;
+            int depth = view.depth() + 1;
+            node = depth < limit || (first && depth == limit) ? table.getChild(key) : null;
+
+            if (node == null && (depth + 1 < limit || (first && depth + 1 == limit))) {
+                node = table.findCell(key);
+                depth++;
+            }
+
+            if (node != null) {
+                found = new KeyEntry();
+                found.node = node;
+                found.depth = depth;
+                limit = depth;
+                order = view.order();
+            }
+        }
+
+        return found;
     }
 
-    public ArrayList<IdentifiableNode> getChildren() {
-        return this.children;
+    /**
+     * Search the view parents other than tables for the one closest to the root holding a key,
+     * used to repair the view index after the indexed view has been removed or renamed.
+     *
+     * @param key the key to look for
+     * @return the entry of the view parent holding the key, null if none does
+     */
+    private ViewEntry findViewParent(String key) {
+        ViewEntry found = null;
+
+        for (Map.Entry<CompositeNode, ViewParent> parent : this.viewParents.entrySet()) {
+            ViewParent view = parent.getValue();
+
+            if (!(parent.getKey() instanceof TableNode) && (found == null || view.isBefore(found.view()))
+                && parent.getKey().getChild(key) != null) {
+                found = new ViewEntry(parent.getKey(), view);
+            }
+        }
+
+        if (found == null) {
+            this.viewIndex.remove(key);
+        }
+
+        else {
+            this.viewIndex.put(key, found);
+        }
+
+        return found;
     }
 
     /**
-     * Get a child from the data structure.
+     * Check whether the parent of a view index entry is still part of the structure where it was indexed.
      *
-     * @param key the key of the child to look for
-     * @return the child object, null if not found
+     * @param entry the entry to check
+     * @return true if the parent has not been removed since it was indexed
      */
-    private IdentifiableNode getChild(String key) {
-        if (!this.children.isEmpty()) {
-            ArrayList<IdentifiableNode> queue = new ArrayList<>(this.children);
+    private boolean isCurrent(ViewEntry entry) {
+        return this.viewParents.get(entry.parent()) == entry.view();
+    }
+
+    /**
+     * Search the structure breadth first for the node closest to the root with the provided key.
+     * Used to repair an index entry after its node has left the structure or changed key.
+     *
+     * @param key the key to look for
+     * @param entry the entry to store the found node in
+     */
+    private void findShallowest(String key, KeyEntry entry) {
+        NodeIterator nodes = new NodeIterator(this.root.getChildren(), false, false);
 
-            while(!queue.isEmpty()) {
-                IdentifiableNode node = queue.removeFirst();
+        while (nodes.hasNext()) {
+            IdentifiableNode node = nodes.next();
 
-                if (node.getKey().equals(key)) {
-                    return node;
-                }
+            if (node.getKey().equals(key)) {
+                entry.node = node;
+                entry.depth = nodes.getDepth();
+                return;
+            }
+        }
 
-                if (node instanceof CompositeNode) {
-                    queue.addAll(((CompositeNode) node).getChildren());
+        this.keyIndex.remove(key);
+    }
+
+    /**
+     * Walk a path down from a composite node.
+     * At every level the longest key matching the start of the remaining path is tried first.
+     *
+     * @param parent the node to start at
+     * @param path the remaining path
+     * @param depth the depth of the children of the parent
+     * @return the node at the end of the path with its depth, null if the path does not exist
+     */
+    private PathMatch resolvePath(CompositeNode parent, String path, int depth) {
+        IdentifiableNode child = parent.getChild(path);
+
+        if (child != null) {
+            return new PathMatch(child, depth);
+        }
+
+        for (int separator = path.lastIndexOf('/'); separator > 0; separator = path.lastIndexOf('/', separator - 1)) {
+            child = parent.getChild(path.substring(0, separator));
+
+            if (child instanceof CompositeNode) {
+                PathMatch match = this.resolvePath((CompositeNode) child, path.substring(separator + 1), depth + 1);
+
+                if (match != null) {
+                    return match;
                 }
             }
         }
@@ -141,32 +434,171 @@ public class RootNode {
     }
 
     /**
-     * Get the depth of a specific node.
+     * Add a node and everything below it to the key index.
+     * Called by the anchor whenever a node is added anywhere in the structure.
      *
-     * @param key the key of the node to look for
-     * @return the depth of the node, starting at 1 for root level nodes, -1 if not found
+     * @param node the node that was added
      */
-    public int getNodeDepth(String key) {
-        if (!this.children.isEmpty()) {
-            ArrayList<IdentifiableNode> queue = new ArrayList<>(this.children);
-            int depth = 1;
+    void onAttached(IdentifiableNode node) {
+        this.index(node, this.depthOf(node));
+    }
 
-            while(!queue.isEmpty()) {
-                if (queue.stream().anyMatch(node -> node.getKey().equals(key))) {
-                    return depth;
-                }
+    /**
+     * Remove a node and everything below it from the key index.
+     * Called by the anchor whenever a node is removed anywhere in the structure.
+     *
+     * @param node the node that was removed
+     */
+    void onDetached(IdentifiableNode node) {
+        this.unindex(node, node.getKey());
+        this.viewParents.remove(node);
+        this.tables.remove(node);
+
+        if (node instanceof CompositeNode && !((CompositeNode) node).hasChildViews()) {
+            for (IdentifiableNode child : ((CompositeNode) node).getChildren()) {
+                this.onDetached(child);
+            }
+        }
+    }
 
-                for (IdentifiableNode node : new ArrayList<>(queue)) {
-                    if (node instanceof CompositeNode) {
-                        queue.addAll(((CompositeNode) node).getChildren());
-                    }
-                }
+    /**
+     * Move a node to its new key in the key index.
+     * Called by the anchor whenever a node anywhere in the structure is renamed.
+     *
+     * @param node the node that was renamed
+     * @param oldKey the key of the node before it was renamed
+     */
+    void onRenamed(IdentifiableNode node, String oldKey) {
+        this.unindex(node, oldKey);
+        this.indexNode(node, this.depthOf(node));
+    }
 
-                depth = depth + 1;
+    /**
+     * Add a node and everything below it to the key index.
+     *
+     * @param node the node to index
+     * @param depth the depth of the node
+     */
+    private void index(IdentifiableNode node, int depth) {
+        this.indexNode(node, depth);
+
+        if (node instanceof CompositeNode && ((CompositeNode) node).hasChildViews()) {
+            this.indexViews((CompositeNode) node, depth);
+        }
+
+        else if (node instanceof CompositeNode) {
+            for (IdentifiableNode child : ((CompositeNode) node).getChildren()) {
+                this.index(child, depth + 1);
             }
         }
+    }
+
+    /**
+     * Register a node that creates its children as views.
+     * A table is asked for its rows and cells directly, the keys of the children of other view parents
+     * are added to the view index whenever the parent is closer to the root than the indexed one.
+     *
+     * @param parent the node creating its children as views
+     * @param depth the depth of the node
+     */
+    private void indexViews(CompositeNode parent, int depth) {
+        this.viewParents.put(parent, new ViewParent(depth, this.viewOrder++));
+
+        if (parent instanceof TableNode table) {
+            this.tables.add(table);
+            return;
+        }
+
+        for (IdentifiableNode child : parent.getChildren()) {
+            this.indexView(parent, child.getKey());
+        }
+    }
+
+    /**
+     * Add the key of a view to the view index.
+     * The parent only becomes the entry of the key when it is closer to the root than the current one.
+     * An entry of which the view has been removed is kept, it is repaired on its next lookup.
+     *
+     * @param parent the view parent holding the view
+     * @param key the key of the view
+     */
+    private void indexView(CompositeNode parent, String key) {
+        ViewEntry current = this.viewIndex.get(key);
+        ViewParent view = this.viewParents.get(parent);
+
+        if (current == null || (this.isCurrent(current) && view.isBefore(current.view()))) {
+            this.viewIndex.put(key, new ViewEntry(parent, view));
+        }
+    }
+
+    /**
+     * Add a view that was added to a view parent to the view index.
+     * Called by the parent whenever it gains a view with a new key, after the parent was added to the structure.
+     *
+     * @param parent the view parent holding the view
+     * @param key the key of the view
+     */
+    void onViewAdded(CompositeNode parent, String key) {
+        if (this.viewParents.containsKey(parent) && !(parent instanceof TableNode)) {
+            this.indexView(parent, key);
+        }
+    }
+
+    /**
+     * Add a single node to the key index.
+     * The node only becomes the entry of its key when it is closer to the root than the current one.
+     *
+     * @param node the node to index
+     * @param depth the depth of the node
+     */
+    private void indexNode(IdentifiableNode node, int depth) {
+        KeyEntry entry = this.keyIndex.computeIfAbsent(node.getKey(), key -> new KeyEntry());
+        entry.count++;
+
+        if (entry.count == 1 || (entry.node != null && depth < entry.depth)) {
+            entry.node = node;
+            entry.depth = depth;
+        }
+    }
+
+    /**
+     * Remove a single node from the key index.
+     * When the node was the entry of its key while other nodes share the key,
+     * the entry is marked to be repaired on its next lookup.
+     *
+     * @param node the node to remove
+     * @param key the key the node was indexed under
+     */
+    private void unindex(IdentifiableNode node, String key) {
+        KeyEntry entry = this.keyIndex.get(key);
+
+        if (entry == null) {
+            return;
+        }
+
+        if (--entry.count == 0) {
+            this.keyIndex.remove(key);
+        }
+
+        else if (entry.node == node) {
+            entry.node = null;
+        }
+    }
+
+    /**
+     * Determine the depth of a node by following its parents up to the root.
+     *
+     * @param node the node to determine the depth of
+     * @return the depth of the node, starting at 1 for root level nodes
+     */
+    private int depthOf(IdentifiableNode node) {
+        int depth = 0;
+
+        for (CompositeNode parent = CompositeNode.getParent(node); parent != null; parent = parent.parent) {
+            depth = depth + 1;
+        }
 
-        return -1;
+        return depth;
     }
 
     /**
@@ -176,8 +608,7 @@ public class RootNode {
      * @return true if the node exists, false if not
      */
     private boolean doesParentHaveChildWithKey(String key) {
-        ArrayList<IdentifiableNode> children = new ArrayList<>(this.children);
-        return hasChild(key, children);
+        return this.root.getChild(key) != null;
     }
 
     /**
@@ -188,27 +619,7 @@ public class RootNode {
      * @return true if the node exists, false if not
      */
     private boolean doesParentHaveChildWithKey(String key, CompositeNode parent) {
-        ArrayList<IdentifiableNode> children = parent.getChildren();
-        return hasChild(key, children);
-    }
-
-    /**
-     * Check whether a child exists in a list of children.
-     * This function is meant to be used in combination with doesParentHaveChildWithKey.
-     *
-     * @param key the key of the child to look for
-     * @param children the list of children to search in
-     * @return true if the child exists, false otherwise
-     * @see RootNode#doesParentHaveChildWithKey
-     */
-    private static boolean hasChild(String key, ArrayList<IdentifiableNode> children) {
-        for (IdentifiableNode child : children) {
-            if (child.getKey().equals(key)) {
-                return true;
-            }
-        }
-
-        return false;
+        return parent.getChild(key) != null;
     }
 
     /**
@@ -237,7 +648,7 @@ public class RootNode {
         }
 
         else {
-            this.children.add(newChild);
+            this.root.addChild(newChild);
         }
     }
 
@@ -247,14 +658,22 @@ public class RootNode {
      * whether the parent exists and whether the parent is a composite node.
      *
      * @param newChild the child node to add to the structure
-     * @param parentKey the key of the parent, provide null add the child directly to the root
+     * @param parentKey the key or path of the parent, provide null add the child directly to the root
      * @throws NullPointerException whenever the provided node is null
      * @throws KeyAlreadyExistsException if a child with the same key already exists
      * @throws StructureViolationException when the chosen parent is LeafNode or does not exist
      * @throws IndexOutOfBoundsException if the maximum depth of the structure is violated
      */
     public void addChild(IdentifiableNode newChild, String parentKey) {
-        IdentifiableNode parent = getChild(parentKey);
+        if (parentKey == null) {
+            this.addChild(newChild);
+            return;
+        }
+
+        KeyEntry entry = this.resolveKey(parentKey);
+        PathMatch match = entry == null ? this.resolvePath(this.root, parentKey, 1) : null;
+        IdentifiableNode parent = entry != null ? entry.node : match == null ? null : match.node;
+        int parentDepth = entry != null ? entry.depth : match == null ? -1 : match.depth;
 
         if (newChild == null) {
             throw new NullPointerException();
@@ -268,10 +687,49 @@ public class RootNode {
             throw new KeyAlreadyExistsException();
         }
 
-        if (this.maxDepth < this.getNodeDepth(parentKey) + this.determineExtraDepth(newChild)) {
+        if (this.maxDepth < parentDepth + this.determineExtraDepth(newChild)) {
             throw new IndexOutOfBoundsException();
         }
 
         ((CompositeNode) parent).addChild(newChild);
     }
-}
\ No newline at end of file
+
+    /**
+     * Entry of the key index.
+     * Holds the node closest to the root with a key and the amount of nodes sharing that key.
+     * The node is null when it has to be searched for again.
+     */
+    private static final class KeyEntry {
+        private IdentifiableNode node;
+        private int depth;
+        private int count;
+    }
+
+    /**
+     * The result of walking a path: the node at the end of it and its depth.
+     */
+    private record PathMatch(IdentifiableNode node, int depth) {
+    }
+
+    /**
+     * The depth of a view parent and the order in which it was added to the structure.
+     */
+    private record ViewParent(int depth, long order) {
+
+        /**
+         * Check whether views of this parent win from views of another parent.
+         *
+         * @param other the other view parent
+         * @return true if this parent is closer to the root, or as close and added before the other
+         */
+        private boolean isBefore(ViewParent other) {
+            return this.depth < other.depth || (this.depth == other.depth && this.order < other.order);
+        }
+    }
+
+    /**
+     * Entry of the view index: the view parent holding a key, with the registration it was indexed under.
+     */
+    private record ViewEntry(CompositeNode parent, ViewParent view) {
+    }
+}
@@ -0,0 +1,497 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.StructureViolationException;
+
+/**
+ * The RowNode class represents a single row of tabular data.
+ * Instead of a leaf node per cell, a row only holds an array of values.
+ * The names of the columns come from a RowSchema, which is shared by all rows with the same columns.
+ * Cells are handed out as lightweight views, which read from and write to the values directly.
+ * Values of the typed columns of the schema are stored as primitives whenever they fit their type.
+ * The cells of a row are not a part of the key index of a RootNode, they are found through their path.
+ */
+public class RowNode extends CompositeNode {
+
+    /**
+     * The columns of the row.
+     */
+    private RowSchema schema;
+
+    /**
+     * The text of the values of the row, indexed by the ordinal of their column.
+     * Only values tagged as text have an entry, the entry of other values is null.
+     */
+    private String[] values;
+
+    /**
+     * The tags of the values, saying whether a value is missing, text or a primitive.
+     *
+     * @see TypedValues
+     */
+    private byte[] tags;
+
+    /**
+     * The numbers of the values stored as primitives, indexed by ordinal, null when no value is stored as one.
+     */
+    private long[] numbers;
+
+    /**
+     * Creates a row with the provided values.
+     * The values array is used as is, it should not be changed by the caller afterwards.
+     * Values of typed columns are converted to their type once, when the row is created.
+     *
+     * @param key the key of the row, used to uniquely identify it within a data structure
+     * @param schema the columns of the row
+     * @param values the values of the row, null for missing cells, at most one per column
+     * @throws IndexOutOfBoundsException whenever there are more values than columns
+     */
+    public RowNode(String key, RowSchema schema, String[] values) {
+        super(key);
+
+        if (values.length > schema.size()) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        this.schema = schema;
+        this.values = values.length == schema.size() ? values : Arrays.copyOf(values, schema.size());
+        this.tags = new byte[schema.size()];
+
+        if (schema.isTyped()) {
+            this.numbers = new long[schema.size()];
+        }
+
+        for (int ordinal = 0; ordinal < this.values.length; ordinal++) {
+            this.store(ordinal, this.values[ordinal]);
+        }
+    }
+
+    /**
+     * Creates a row from slots that have already been encoded, used when reading a snapshot.
+     *
+     * @param key the key of the row
+     * @param schema the columns of the row
+     * @param values the text of the slots, one per column
+     * @param tags the tags of the slots
+     * @param numbers the numbers of the slots, null when no slot holds a number
+     */
+    private RowNode(String key, RowSchema schema, String[] values, byte[] tags, long[] numbers) {
+        super(key);
+        this.schema = schema;
+        this.values = values;
+        this.tags = tags;
+        this.numbers = numbers;
+    }
+
+    /**
+     * Creates an empty row with the provided columns.
+     *
+     * @param key the key of the row, used to uniquely identify it within a data structure
+     * @param schema the columns of the row
+     */
+    public RowNode(String key, RowSchema schema) {
+        this(key, schema, new String[schema.size()]);
+    }
+
+    /**
+     * Get the columns of the row.
+     *
+     * @return the schema of the row
+     */
+    public RowSchema getSchema() {
+        return this.schema;
+    }
+
+    /**
+     * Get a value of the row by the ordinal of its column, without creating a view.
+     *
+     * @param ordinal the position of the column in the schema
+     * @return the value, null if the row has no cell in the column
+     */
+    public String getValue(int ordinal) {
+        return TypedValues.decode(this.tags[ordinal], this.values[ordinal], this.getNumber(ordinal));
+    }
+
+    /**
+     * Get the tag of a value, saying whether it is missing, text or a primitive.
+     *
+     * @param ordinal the position of the column in the schema
+     * @return the tag of the value
+     * @see TypedValues
+     */
+    byte getTag(int ordinal) {
+        return this.tags[ordinal];
+    }
+
+    /**
+     * Get the stored text of a value, only present when its tag says the value is text.
+     *
+     * @param ordinal the position of the column in the schema
+     * @return the text of the value
+     */
+    String getText(int ordinal) {
+        return this.values[ordinal];
+    }
+
+    /**
+     * Get the stored number of a value, only meaningful when its tag says the value is a number.
+     *
+     * @param ordinal the position of the column in the schema
+     * @return the number of the value
+     */
+    long getNumber(int ordinal) {
+        return this.numbers == null ? 0 : this.numbers[ordinal];
+    }
+
+    /**
+     * Write the key and the slots of the row, numbers are written as primitives.
+     * The schema is not written, the caller writes it once for all rows sharing it.
+     *
+     * @param out the output to write the row to
+     * @throws IOException whenever the output can not be written to
+     */
+    void writeSlots(DataOutput out) throws IOException {
+        TypedValues.writeText(this.getKey(), out);
+
+        for (int ordinal = 0; ordinal < this.values.length; ordinal++) {
+            TypedValues.writeSlot(this.tags[ordinal], this.values[ordinal], out);
+
+            if (TypedValues.isNumber(this.tags[ordinal])) {
+                out.writeLong(this.numbers[ordinal]);
+            }
+        }
+    }
+
+    /**
+     * Read a row written by writeSlots(), without encoding its values again.
+     *
+     * @param in the input to read the row from
+     * @param schema the schema the row was written with
+     * @return the row
+     * @throws IOException whenever the input can not be read or does not hold a row
+     */
+    static RowNode readSlots(DataInput in, RowSchema schema) throws IOException {
+        String key = TypedValues.readText(in);
+        String[] values = new String[schema.size()];
+        byte[] tags = new byte[schema.size()];
+        long[] numbers = schema.isTyped() ? new long[schema.size()] : null;
+
+        for (int ordinal = 0; ordinal < values.length; ordinal++) {
+            values[ordinal] = TypedValues.readSlot(in, tags, ordinal);
+
+            if (TypedValues.isNumber(tags[ordinal])) {
+                if (numbers == null) {
+                    numbers = new long[schema.size()];
+                }
+
+                numbers[ordinal] = in.readLong();
+            }
+        }
+
+        return new RowNode(key, schema, values, tags, numbers);
+    }
+
+    /**
+     * Adds a cell to the row.
+     * A column is added to the schema of this row when the key is unknown.
+     *
+     * @param child the leaf node of which the key and data are stored
+     * @return true if the cell was added, false if the row already has a cell with the same key
+     * @throws StructureViolationException whenever the child is a composite node
+     */
+    @Override
+    public boolean addChild(IdentifiableNode child) {
+        if (child instanceof CompositeNode) {
+            throw new StructureViolationException();
+        }
+
+        if (child.getData() == null) {
+            return false;
+        }
+
+        int ordinal = this.schema.getOrdinal(child.getKey());
+
+        if (ordinal < 0) {
+            ordinal = this.schema.size();
+            this.schema = this.schema.withColumn(child.getKey());
+            this.values = Arrays.copyOf(this.values, this.schema.size());
+            this.tags = Arrays.copyOf(this.tags, this.schema.size());
+
+            if (this.numbers != null) {
+                this.numbers = Arrays.copyOf(this.numbers, this.schema.size());
+            }
+        }
+
+        if (this.tags[ordinal] != TypedValues.MISSING) {
+            return false;
+        }
+
+        int oldHeight = this.getHeight();
+        this.store(ordinal, child.getData());
+        this.notifyHeightChanged(oldHeight);
+        this.invalidateData();
+        this.notifyViewAdded(child.getKey());
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean removeChild(IdentifiableNode child) {
+        if (!(child instanceof Cell cell) || cell.row() != this || this.tags[cell.ordinal] == TypedValues.MISSING) {
+            return false;
+        }
+
+        int oldHeight = this.getHeight();
+        this.store(cell.ordinal, null);
+        this.notifyHeightChanged(oldHeight);
+        this.invalidateData();
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public IdentifiableNode getChild(String key) {
+        int ordinal = this.schema.getOrdinal(key);
+        return ordinal < 0 || this.tags[ordinal] == TypedValues.MISSING ? null : new Cell(ordinal);
+    }
+
+    /**
+     * Returns views on the cells of the row, in the order of the columns.
+     *
+     * @return a read-only collection of the cells
+     */
+    @Override
+    public Collection<IdentifiableNode> getChildren() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<IdentifiableNode> iterator() {
+                return new Iterator<>() {
+                    private int ordinal = this.advance(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.ordinal < RowNode.this.tags.length;
+                    }
+
+                    @Override
+                    public IdentifiableNode next() {
+                        if (!this.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+
+                        Cell cell = new Cell(this.ordinal);
+                        this.ordinal = this.advance(this.ordinal + 1);
+                        return cell;
+                    }
+
+                    private int advance(int from) {
+                        while (from < RowNode.this.tags.length && RowNode.this.tags[from] == TypedValues.MISSING) {
+                            from++;
+                        }
+
+                        return from;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+
+                for (byte tag : RowNode.this.tags) {
+                    if (tag != TypedValues.MISSING) {
+                        size++;
+                    }
+                }
+
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns the height of the row: 2 when it has cells, 1 otherwise.
+     *
+     * @return the height of the row
+     */
+    @Override
+    public int getHeight() {
+        for (byte tag : this.tags) {
+            if (tag != TypedValues.MISSING) {
+                return 2;
+            }
+        }
+
+        return 1;
+    }
+
+    /**
+     * Write the data of the cells straight from the values of the row, without creating views.
+     *
+     * @param out the output to write the data to
+     * @throws IOException whenever the output can not be written to
+     */
+    @Override
+    public void appendData(Appendable out) throws IOException {
+        for (int ordinal = 0; ordinal < this.tags.length; ordinal++) {
+            if (this.tags[ordinal] != TypedValues.MISSING) {
+                out.append(this.schema.getColumn(ordinal)).append(": ");
+                TypedValues.append(this.tags[ordinal], this.values[ordinal], this.getNumber(ordinal), out);
+                out.append("; ");
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    boolean hasChildViews() {
+        return true;
+    }
+
+    /**
+     * Store a value according to the type of its column, as text or as a primitive.
+     *
+     * @param ordinal the position of the column in the schema
+     * @param value the value to store, null to remove the value
+     */
+    private void store(int ordinal, String value) {
+        ValueType type = this.schema.getType(ordinal);
+
+        if (type != ValueType.STRING && this.numbers == null) {
+            this.numbers = new long[this.tags.length];
+        }
+
+        this.tags[ordinal] = TypedValues.encode(value, type, this.schema.getDecimalSeparator(), this.numbers, ordinal);
+        this.values[ordinal] = this.tags[ordinal] == TypedValues.TEXT ? value : null;
+    }
+
+    /**
+     * Notify the structure the row is a part of that it holds a cell with a new key, so the cell can be looked up.
+     *
+     * @param key the key of the cell
+     */
+    private void notifyViewAdded(String key) {
+        RootNode owner = this.findOwner();
+        if (owner != null) {
+            owner.onViewAdded(this, key);
+        }
+    }
+
+    /**
+     * Notify the parent of the row whenever a change altered its height.
+     *
+     * @param oldHeight the height of the row before the change
+     */
+    private void notifyHeightChanged(int oldHeight) {
+        if (this.getHeight() != oldHeight && this.parent != null) {
+            this.parent.onChildHeightChanged(oldHeight, this.getHeight());
+        }
+    }
+
+    /**
+     * A view on a single cell of the row.
+     * Its key is the name of its column and its data the value stored in the row.
+     */
+    private final class Cell extends LeafNode {
+
+        /**
+         * The position of the column of the cell.
+         */
+        private final int ordinal;
+
+        private Cell(int ordinal) {
+            super(null, null);
+            this.ordinal = ordinal;
+            this.parent = RowNode.this;
+        }
+
+        private RowNode row() {
+            return RowNode.this;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String getKey() {
+            return schema.getColumn(this.ordinal);
+        }
+
+        /**
+         * Renames the column of the cell in the schema of this row.
+         * Rows renaming the same column of the same schema share the resulting schema.
+         *
+         * @param newKey the new name of the column
+         */
+        @Override
+        public void setKey(String newKey) {
+            schema = schema.withColumnName(this.ordinal, newKey);
+            invalidateData();
+            notifyViewAdded(newKey);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String getData() {
+            return getValue(this.ordinal);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void appendData(Appendable out) throws IOException {
+            TypedValues.append(tags[this.ordinal], values[this.ordinal], getNumber(this.ordinal), out);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ValueType getType() {
+            return TypedValues.typeOf(tags[this.ordinal]);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public long getLong() {
+            return TypedValues.getLong(tags[this.ordinal], values[this.ordinal], getNumber(this.ordinal));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public double getDouble() {
+            return TypedValues.getDouble(tags[this.ordinal], values[this.ordinal], getNumber(this.ordinal));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean getBoolean() {
+            return TypedValues.getBoolean(tags[this.ordinal], values[this.ordinal]);
+        }
+
+        /**
+         * Set the data of the cell, setting it to null removes the cell from its row.
+         *
+         * @param newData the new data of the cell
+         */
+        @Override
+        public void setData(String newData) {
+            int oldHeight = RowNode.this.getHeight();
+            store(this.ordinal, newData);
+            notifyHeightChanged(oldHeight);
+            invalidateData();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Cell cell && cell.row() == RowNode.this && cell.ordinal == this.ordinal;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(RowNode.this) * 31 + this.ordinal;
+        }
+    }
+}
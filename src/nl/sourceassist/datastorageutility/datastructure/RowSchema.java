@@ -0,0 +1,237 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The RowSchema class describes the columns of a row: an ordered list of column names.
+ * A schema is immutable and shared by every row with the same columns,
+ * so the rows themselves only have to hold their values.
+ * Whenever a row needs a different set of columns, a derived schema is requested.
+ * Derived schemas are remembered, which means all rows making the same change end up sharing one schema again.
+ * A schema may also carry the type of every column, rows store the values of typed columns as primitives.
+ */
+public final class RowSchema {
+
+    /**
+     * The names of the columns in order.
+     */
+    private final String[] columns;
+
+    /**
+     * Index from the name of a column to its ordinal.
+     * Whenever names are duplicated, the first column with the name is used.
+     */
+    private final HashMap<String, Integer> ordinals;
+
+    /**
+     * The types of the columns in order, null when every column holds strings.
+     */
+    private final ValueType[] types;
+
+    /**
+     * The decimal separator of the decimal numbers in the typed columns.
+     */
+    private final char decimalSeparator;
+
+    /**
+     * Schemas derived from this one, keyed by the change that produced them.
+     */
+    private final ConcurrentHashMap<Object, RowSchema> derived;
+
+    /**
+     * Create a schema with the provided columns.
+     *
+     * @param columns the names of the columns in order
+     */
+    public RowSchema(String... columns) {
+        this(columns.clone(), null, '.');
+    }
+
+    /**
+     * Create a schema with the provided columns and types.
+     *
+     * @param columns the names of the columns in order, used as is
+     * @param types the types of the columns in order, null when every column holds strings
+     * @param decimalSeparator the decimal separator of the decimal numbers in the typed columns
+     */
+    private RowSchema(String[] columns, ValueType[] types, char decimalSeparator) {
+        this.columns = columns;
+        this.types = types;
+        this.decimalSeparator = decimalSeparator;
+        this.ordinals = new HashMap<>();
+        this.derived = new ConcurrentHashMap<>();
+
+        for (int ordinal = 0; ordinal < this.columns.length; ordinal++) {
+            this.ordinals.putIfAbsent(this.columns[ordinal], ordinal);
+        }
+    }
+
+    /**
+     * Get the amount of columns in the schema.
+     *
+     * @return the amount of columns
+     */
+    public int size() {
+        return this.columns.length;
+    }
+
+    /**
+     * Get the name of a column.
+     *
+     * @param ordinal the position of the column
+     * @return the name of the column
+     */
+    public String getColumn(int ordinal) {
+        return this.columns[ordinal];
+    }
+
+    /**
+     * Get the position of a column in constant time.
+     *
+     * @param name the name of the column
+     * @return the position of the column, -1 if the schema has no such column
+     */
+    public int getOrdinal(String name) {
+        Integer ordinal = this.ordinals.get(name);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Get the names of all columns in order.
+     *
+     * @return a read-only list of the column names
+     */
+    public List<String> getColumns() {
+        return List.of(this.columns);
+    }
+
+    /**
+     * Get the type of a column.
+     *
+     * @param ordinal the position of the column
+     * @return the type of the column, STRING for columns without a known type
+     */
+    public ValueType getType(int ordinal) {
+        return this.types == null ? ValueType.STRING : this.types[ordinal];
+    }
+
+    /**
+     * Whether any of the columns has a type other than STRING.
+     *
+     * @return true if the rows of this schema store typed values
+     */
+    public boolean isTyped() {
+        return this.types != null;
+    }
+
+    /**
+     * Get the decimal separator of the decimal numbers in the typed columns.
+     *
+     * @return the decimal separator
+     */
+    public char getDecimalSeparator() {
+        return this.decimalSeparator;
+    }
+
+    /**
+     * Get the schema with the provided column types.
+     * Columns that are empty or of an unknown type are treated as STRING columns.
+     *
+     * @param types the types of the columns in order, missing entries are treated as STRING columns
+     * @param decimalSeparator the decimal separator of the decimal numbers in the typed columns
+     * @return the typed schema, shared by everyone requesting the same types
+     */
+    public RowSchema withTypes(ValueType[] types, char decimalSeparator) {
+        ValueType[] columnTypes = new ValueType[this.columns.length];
+        boolean typed = false;
+
+        for (int ordinal = 0; ordinal < columnTypes.length; ordinal++) {
+            ValueType type = ordinal < types.length ? types[ordinal] : null;
+            columnTypes[ordinal] = type == null || type == ValueType.EMPTY ? ValueType.STRING : type;
+            typed |= columnTypes[ordinal] != ValueType.STRING;
+        }
+
+        if (!typed && this.types == null) {
+            return this;
+        }
+
+        ValueType[] storedTypes = typed ? columnTypes : null;
+        return this.derived.computeIfAbsent(new Typed(List.of(columnTypes), decimalSeparator), change ->
+            new RowSchema(this.columns, storedTypes, decimalSeparator)
+        );
+    }
+
+    /**
+     * Get the schema with an extra column at the end.
+     *
+     * @param name the name of the new column
+     * @return the extended schema, shared by everyone requesting the same extension
+     */
+    public RowSchema withColumn(String name) {
+        return this.derived.computeIfAbsent(new Append(name), change -> {
+            String[] extended = Arrays.copyOf(this.columns, this.columns.length + 1);
+            extended[this.columns.length] = name;
+
+            if (this.types == null) {
+                return new RowSchema(extended, null, this.decimalSeparator);
+            }
+
+            ValueType[] types = Arrays.copyOf(this.types, extended.length);
+            types[this.columns.length] = ValueType.STRING;
+            return new RowSchema(extended, types, this.decimalSeparator);
+        });
+    }
+
+    /**
+     * Get the schema with one of the columns renamed.
+     *
+     * @param ordinal the position of the column to rename
+     * @param name the new name of the column
+     * @return the renamed schema, shared by everyone requesting the same rename
+     */
+    public RowSchema withColumnName(int ordinal, String name) {
+        if (this.columns[ordinal].equals(name)) {
+            return this;
+        }
+
+        return this.derived.computeIfAbsent(new Rename(ordinal, name), change -> {
+            String[] renamed = this.columns.clone();
+            renamed[ordinal] = name;
+            return new RowSchema(renamed, this.types, this.decimalSeparator);
+        });
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof RowSchema schema
+            && Arrays.equals(this.columns, schema.columns)
+            && Arrays.equals(this.types, schema.types)
+            && this.decimalSeparator == schema.decimalSeparator;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.columns) * 31 + Arrays.hashCode(this.types);
+    }
+
+    /**
+     * Change adding a column to the end of a schema.
+     */
+    private record Append(String name) {
+    }
+
+    /**
+     * Change renaming a column of a schema.
+     */
+    private record Rename(int ordinal, String name) {
+    }
+
+    /**
+     * Change setting the types of the columns of a schema.
+     */
+    private record Typed(List<ValueType> types, char decimalSeparator) {
+    }
+}
@@ -0,0 +1,221 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The SegmentStore keeps the tables it tracks within a budget of heap memory.
+ * Once the tables that are in memory together exceed the budget, the table that was loaded longest ago
+ * is spilled to a segment file in a temporary directory, until the others fit in the budget again.
+ * A spilled table reads its segment back through the store as soon as it is used,
+ * so traversing the structure or writing it to a file works the same as when nothing was spilled.
+ * Tables that are still being filled count towards the budget as they grow, but are only spilled once tracked,
+ * so a single table that exceeds the budget while it is being filled stays in memory until it is complete.
+ * Spilling and loading happen under the lock of the store, but a table that is spilled while another thread
+ * is reading from it is not noticed by that thread: the tables should be used by a single thread at a time.
+ */
+public class SegmentStore implements Closeable {
+
+    /**
+     * The amount of bytes the tracked tables may take up together before tables are spilled.
+     */
+    private final long budget;
+
+    /**
+     * The directory the segment files are written to.
+     */
+    private final Path directory;
+
+    /**
+     * The tables that are in memory with their size at the moment they were loaded, loaded longest ago first.
+     */
+    private final LinkedHashMap<TableNode, Long> loaded;
+
+    /**
+     * The tables that are still being filled with their size when they were last measured.
+     */
+    private final HashMap<TableNode, Long> growing;
+
+    /**
+     * The sum of the sizes of the tables that are in memory.
+     */
+    private long loadedSize;
+
+    /**
+     * The amount of segment files that have been created, used to name the next one.
+     */
+    private int segmentCount;
+
+    /**
+     * Create a store with a budget, creating the directory for its segment files.
+     *
+     * @param budget the amount of bytes the tracked tables may take up together
+     * @throws IllegalArgumentException whenever the budget is not positive
+     * @throws IOException whenever the temporary directory can not be created
+     */
+    public SegmentStore(long budget) throws IOException {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("The budget should be positive");
+        }
+
+        this.budget = budget;
+        this.directory = Files.createTempDirectory("data-storage-utility");
+        this.loaded = new LinkedHashMap<>();
+        this.growing = new HashMap<>();
+    }
+
+    /**
+     * Count the current size of a table that is still being filled towards the budget,
+     * spilling tracked tables when the tables together do not fit.
+     * The table itself is not spilled, call track() once it is complete.
+     * Only the thread filling the table should measure it.
+     *
+     * @param table the table that is being filled
+     * @throws UncheckedIOException whenever a segment file can not be written
+     */
+    public synchronized void measure(TableNode table) {
+        long size = table.getRetainedSize();
+        Long oldSize = this.growing.put(table, size);
+
+        this.loadedSize += size - (oldSize == null ? 0 : oldSize);
+        this.spillUntilFits(0);
+    }
+
+    /**
+     * Start keeping a table within the budget, spilling other tables if it does not fit.
+     * The table itself stays in memory until another table is tracked or loaded.
+     * The table should be complete: from now on its size is only measured when it is tracked or loaded.
+     *
+     * @param table the table to track
+     * @throws IllegalStateException whenever the table is already tracked by another store
+     * @throws UncheckedIOException whenever a segment file can not be written
+     */
+    public synchronized void track(TableNode table) {
+        if (table.store != null && table.store != this) {
+            throw new IllegalStateException("The table is tracked by another store");
+        }
+
+        this.forget(table);
+        table.store = this;
+        this.markLoaded(table);
+    }
+
+    /**
+     * Stop counting a table that was measured while it was being filled, for example because it has been replaced.
+     *
+     * @param table the table to stop counting
+     */
+    public synchronized void forget(TableNode table) {
+        Long size = this.growing.remove(table);
+
+        if (size != null) {
+            this.loadedSize -= size;
+        }
+    }
+
+    /**
+     * Read a spilled table back into memory, spilling other tables if it does not fit.
+     *
+     * @param table the table to load
+     * @throws UncheckedIOException whenever a segment file can not be read or written
+     */
+    synchronized void load(TableNode table) {
+        if (!table.isSpilled()) {
+            return;
+        }
+
+        try {
+            table.unspill();
+        }
+
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        this.markLoaded(table);
+    }
+
+    /**
+     * Get the amount of bytes the tracked tables that are in memory and the tables being filled take up together.
+     *
+     * @return the approximate amount of bytes
+     */
+    public synchronized long getLoadedSize() {
+        return this.loadedSize;
+    }
+
+    /**
+     * Create a new segment file in the directory of the store.
+     *
+     * @return the path of the segment file
+     */
+    Path createSegment() {
+        return this.directory.resolve("segment-" + this.segmentCount++ + ".bin");
+    }
+
+    /**
+     * Record a table as loaded most recently and spill the tables loaded longest ago until the budget is met.
+     * The provided table is never spilled, even if it exceeds the budget by itself.
+     *
+     * @param table the table that is in memory
+     */
+    private void markLoaded(TableNode table) {
+        Long oldSize = this.loaded.remove(table);
+        long size = table.getRetainedSize();
+
+        this.loadedSize += size - (oldSize == null ? 0 : oldSize);
+        this.loaded.put(table, size);
+        this.spillUntilFits(1);
+    }
+
+    /**
+     * Spill the tables loaded longest ago until the tables that are in memory fit in the budget again.
+     *
+     * @param keep the amount of tables loaded most recently that are never spilled
+     */
+    private void spillUntilFits(int keep) {
+        Iterator<Map.Entry<TableNode, Long>> iterator = this.loaded.entrySet().iterator();
+        while (this.loadedSize > this.budget && this.loaded.size() > keep) {
+            Map.Entry<TableNode, Long> eldest = iterator.next();
+
+            try {
+                eldest.getKey().spill();
+            }
+
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            this.loadedSize -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Delete the segment files and their directory.
+     * Tables that are spilled at that moment can no longer be read.
+     *
+     * @throws IOException whenever the files can not be deleted
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try (Stream<Path> segments = Files.list(this.directory)) {
+            for (Path segment : segments.toList()) {
+                Files.deleteIfExists(segment);
+            }
+        }
+
+        Files.deleteIfExists(this.directory);
+        this.loaded.clear();
+        this.growing.clear();
+        this.loadedSize = 0;
+    }
+}
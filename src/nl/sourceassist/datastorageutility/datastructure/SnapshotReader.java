@@ -0,0 +1,127 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The SnapshotReader reads the rows written by a SnapshotWriter, one row at a time.
+ * Rows sharing a schema when they were written share a schema again when they are read.
+ */
+public class SnapshotReader implements Iterator<CompositeNode> {
+
+    /**
+     * The input the snapshot is read from.
+     */
+    private final DataInput in;
+
+    /**
+     * The schemas read so far, indexed by their number.
+     */
+    private final ArrayList<RowSchema> schemas;
+
+    /**
+     * The row that will be returned by next(), null if it has not been read yet.
+     */
+    private RowNode next;
+
+    /**
+     * Whether the end of the snapshot has been read.
+     */
+    private boolean finished;
+
+    /**
+     * Create a reader of a snapshot.
+     *
+     * @param in the input to read the snapshot from, positioned at its first record
+     */
+    public SnapshotReader(DataInput in) {
+        this.in = in;
+        this.schemas = new ArrayList<>();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException whenever the snapshot can not be read or is damaged
+     */
+    @Override
+    public boolean hasNext() {
+        if (this.next == null && !this.finished) {
+            try {
+                this.next = this.readRow();
+            }
+
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return this.next != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompositeNode next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        RowNode row = this.next;
+        this.next = null;
+        return row;
+    }
+
+    /**
+     * Read records until a row or the end of the snapshot is found.
+     *
+     * @return the row, null at the end of the snapshot
+     * @throws IOException whenever the snapshot can not be read or holds an unknown record
+     */
+    private RowNode readRow() throws IOException {
+        while (true) {
+            byte tag = this.in.readByte();
+
+            switch (tag) {
+                case SnapshotWriter.END -> {
+                    this.finished = true;
+                    return null;
+                }
+                case SnapshotWriter.SCHEMA -> this.schemas.add(this.readSchema());
+                case SnapshotWriter.ROW -> {
+                    return RowNode.readSlots(this.in, this.schemas.get(this.in.readInt()));
+                }
+                default -> throw new IOException("Unknown snapshot record " + tag);
+            }
+        }
+    }
+
+    /**
+     * Read a schema written by the SnapshotWriter.
+     *
+     * @return the schema, typed when it was written with types
+     * @throws IOException whenever the snapshot can not be read
+     */
+    private RowSchema readSchema() throws IOException {
+        String[] columns = new String[this.in.readInt()];
+        ValueType[] types = new ValueType[columns.length];
+        char decimalSeparator = this.in.readChar();
+        boolean typed = false;
+
+        for (int ordinal = 0; ordinal < columns.length; ordinal++) {
+            columns[ordinal] = TypedValues.readText(this.in);
+            byte type = this.in.readByte();
+
+            if (type != SnapshotWriter.UNTYPED) {
+                types[ordinal] = ValueType.values()[type];
+                typed = true;
+            }
+        }
+
+        RowSchema schema = new RowSchema(columns);
+        return typed ? schema.withTypes(types, decimalSeparator) : schema;
+    }
+}
@@ -0,0 +1,107 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+
+/**
+ * The SnapshotWriter writes rows in a compact binary form, which SnapshotReader turns back into rows
+ * without parsing text. Every schema is written once, the first time a row uses it, after which rows only refer to
+ * its number. Values are written as the slots the row stores them in, so numbers stay primitives.
+ * Only rows are supported, since every file is read as a sequence of rows.
+ */
+public class SnapshotWriter {
+
+    /**
+     * Tag of the record ending the snapshot.
+     */
+    static final byte END = 0;
+
+    /**
+     * Tag of a record holding a schema, numbered in the order they are written.
+     */
+    static final byte SCHEMA = 1;
+
+    /**
+     * Tag of a record holding a row, starting with the number of its schema.
+     */
+    static final byte ROW = 2;
+
+    /**
+     * The type written for the columns of a schema without types.
+     */
+    static final byte UNTYPED = -1;
+
+    /**
+     * The output the snapshot is written to.
+     */
+    private final DataOutput out;
+
+    /**
+     * The numbers of the schemas that have been written, by identity since schemas are shared by their rows.
+     */
+    private final IdentityHashMap<RowSchema, Integer> schemas;
+
+    /**
+     * Create a writer of a snapshot.
+     *
+     * @param out the output to write the snapshot to
+     */
+    public SnapshotWriter(DataOutput out) {
+        this.out = out;
+        this.schemas = new IdentityHashMap<>();
+    }
+
+    /**
+     * Write a row to the snapshot, preceded by its schema if that has not been written yet.
+     *
+     * @param row the row to write
+     * @return true if the row was written, false if it is not a RowNode and can therefore not be written
+     * @throws IOException whenever the output can not be written to
+     */
+    public boolean write(CompositeNode row) throws IOException {
+        if (!(row instanceof RowNode rowNode)) {
+            return false;
+        }
+
+        RowSchema schema = rowNode.getSchema();
+        Integer number = this.schemas.get(schema);
+
+        if (number == null) {
+            number = this.schemas.size();
+            this.schemas.put(schema, number);
+            this.writeSchema(schema);
+        }
+
+        this.out.writeByte(ROW);
+        this.out.writeInt(number);
+        rowNode.writeSlots(this.out);
+        return true;
+    }
+
+    /**
+     * Write the end of the snapshot, the reader stops at this record.
+     *
+     * @throws IOException whenever the output can not be written to
+     */
+    public void finish() throws IOException {
+        this.out.writeByte(END);
+    }
+
+    /**
+     * Write the columns, types and decimal separator of a schema.
+     *
+     * @param schema the schema to write
+     * @throws IOException whenever the output can not be written to
+     */
+    private void writeSchema(RowSchema schema) throws IOException {
+        this.out.writeByte(SCHEMA);
+        this.out.writeInt(schema.size());
+        this.out.writeChar(schema.getDecimalSeparator());
+
+        for (int ordinal = 0; ordinal < schema.size(); ordinal++) {
+            TypedValues.writeText(schema.getColumn(ordinal), this.out);
+            this.out.writeByte(schema.isTyped() ? schema.getType(ordinal).ordinal() : UNTYPED);
+        }
+    }
+}
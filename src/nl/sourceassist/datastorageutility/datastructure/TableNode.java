@@ -0,0 +1,1306 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import javax.management.openmbean.KeyAlreadyExistsException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.StructureViolationException;
+
+/**
+ * The TableNode class represents tabular data in a columnar layout.
+ * It is a composite node of which the children are rows, while the children of those rows are leaf nodes.
+ * Instead of an object per row and per cell, every column is stored as a single contiguous array of values.
+ * Rows and cells are handed out as lightweight views, which read from and write to the columns directly.
+ * Since all rows share the names of the columns, renaming a cell renames its entire column,
+ * which is refused when another column already has the new name.
+ * Rows that share a RowSchema are copied by ordinal, without looking up their column names.
+ * Values a RowNode stores as primitives are copied as primitives, without turning them into text.
+ * Every column keeps a tag per row, saying whether the cell is missing, text, a primitive or text in an arena.
+ * The nodes within a table are not a part of the key index of a RootNode, which asks the table for them instead.
+ * A table tracked by a SegmentStore can be spilled to a segment file, after which its columns are read back
+ * from the file as soon as any row or cell of the table is used.
+ * A table created with a NodeArena keeps the text of its cells in the arena, the columns only hold the handles,
+ * and writing a cell decodes its text straight from the arena. Column names are kept on the heap.
+ */
+public class TableNode extends CompositeNode {
+
+    /**
+     * The amount of rows the columns can hold before they are first enlarged.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The approximate amount of bytes a string of its own costs besides its characters.
+     */
+    private static final int STRING_OVERHEAD = 56;
+
+    /**
+     * The approximate amount of bytes of a reference in an array.
+     */
+    private static final int REFERENCE_SIZE = 4;
+
+    /**
+     * The size of the buffer used to write and read segment files.
+     */
+    private static final int SEGMENT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The names of the columns, in the order they were first encountered.
+     */
+    private final ArrayList<String> columnNames;
+
+    /**
+     * Index from the name of a column to its position.
+     */
+    private final HashMap<String, Integer> columnIndex;
+
+    /**
+     * The text of the values of every column, indexed by row number.
+     * Only values tagged as text have an entry, the entry of other values is null.
+     * The list is null while the table is spilled.
+     */
+    private ArrayList<String[]> columns;
+
+    /**
+     * The tags of the values of every column, indexed by row number.
+     * The list is null while the table is spilled.
+     *
+     * @see TypedValues
+     */
+    private ArrayList<byte[]> tags;
+
+    /**
+     * The numbers of the values stored as primitives for every column, indexed by row number.
+     * An entry is null until the first number of its column is stored.
+     * The list is null while the table is spilled.
+     */
+    private ArrayList<long[]> numbers;
+
+    /**
+     * The amount of columns that store numbers.
+     */
+    private int numberColumns;
+
+    /**
+     * The approximate amount of bytes of the values that are not shared with other cells.
+     */
+    private long valueBytes;
+
+    /**
+     * The arena holding the text of the table, null if the text is kept on the heap.
+     */
+    private final NodeArena arena;
+
+    /**
+     * The store this table may be spilled to, null if it is not tracked by one.
+     */
+    SegmentStore store;
+
+    /**
+     * The segment file holding the columns of the table, null if the table has never been spilled.
+     */
+    private Path segment;
+
+    /**
+     * Whether the segment file holds the current columns, so spilling again does not have to write it.
+     */
+    private boolean segmentCurrent;
+
+    /**
+     * Whether the columns have been spilled to the segment file.
+     */
+    private volatile boolean spilled;
+
+    /**
+     * Rows that have been removed, their values are cleared but their row numbers stay reserved.
+     */
+    private final BitSet removedRows;
+
+    /**
+     * The amount of rows that have been removed.
+     */
+    private int removedCount;
+
+    /**
+     * The amount of rows that have been added, including the removed ones.
+     */
+    private int rowCount;
+
+    /**
+     * The amount of rows every column array can hold.
+     */
+    private int capacity;
+
+    /**
+     * The amount of cells in the table, used to determine the height in constant time.
+     */
+    private int cellCount;
+
+    /**
+     * For every column, the row from which the first row holding a value in the column is searched.
+     * No row before it holds a value in the column, so the search usually ends at the first row it tries.
+     */
+    private int[] firstRows;
+
+    /**
+     * Keys of the rows that are not equal to their row number, null until the first of those is added.
+     * A null entry means the row is keyed by its row number.
+     */
+    private String[] rowKeys;
+
+    /**
+     * Index from the key of a row to its row number, only for rows that are not keyed by their row number.
+     */
+    private final HashMap<String, Integer> customRowIndex;
+
+    /**
+     * The schema of the last RowNode that was added, rows sharing it are copied by ordinal.
+     */
+    private RowSchema lastSchema;
+
+    /**
+     * For the last schema, the position of the table column of every ordinal, -1 when not resolved yet.
+     */
+    private int[] lastMapping;
+
+    /**
+     * Creates an empty TableNode with the given key.
+     *
+     * @param key the key of the TableNode, used to uniquely identify it within a data structure
+     */
+    public TableNode(String key) {
+        this(key, null);
+    }
+
+    /**
+     * Creates an empty TableNode with the given key, keeping its text in an arena.
+     * The table can not be used anymore once the arena has been closed.
+     *
+     * @param key the key of the TableNode, used to uniquely identify it within a data structure
+     * @param arena the arena to store the text of the table in, null to keep the text on the heap
+     */
+    public TableNode(String key, NodeArena arena) {
+        super(key);
+        this.arena = arena;
+        this.columnNames = new ArrayList<>();
+        this.columnIndex = new HashMap<>();
+        this.columns = new ArrayList<>();
+        this.tags = new ArrayList<>();
+        this.numbers = new ArrayList<>();
+        this.removedRows = new BitSet();
+        this.customRowIndex = new HashMap<>();
+        this.capacity = INITIAL_CAPACITY;
+        this.firstRows = new int[0];
+    }
+
+    /**
+     * Adds a row to the table.
+     * The row has to be a composite node that only contains leaf nodes.
+     * Its values are copied into the columns, new columns are added for unknown keys.
+     * The row node itself is not kept, use getChild() to get the view on the stored row.
+     *
+     * @param child the row to add
+     * @return true if the row was added, false if a row with the same key already exists
+     * @throws StructureViolationException whenever the child is not a composite node of leaf nodes
+     */
+    @Override
+    public boolean addChild(IdentifiableNode child) {
+        if (!isRow(child)) {
+            throw new StructureViolationException();
+        }
+
+        Collection<IdentifiableNode> cells = ((CompositeNode) child).getChildren();
+        if (this.findRow(child.getKey()) >= 0) {
+            return false;
+        }
+
+        this.page();
+        int oldHeight = this.getHeight();
+        this.ensureCapacity(this.rowCount + 1);
+
+        int row = this.rowCount++;
+        this.setRowKey(row, child.getKey());
+
+        if (child instanceof RowNode) {
+            this.copyValues((RowNode) child, row);
+            this.notifyHeightChanged(oldHeight);
+            this.invalidateData();
+            return true;
+        }
+
+        for (IdentifiableNode cell : cells) {
+            if (cell.getData() != null) {
+                this.setCell(this.getOrAddColumn(cell.getKey()), row, TypedValues.TEXT, cell.getData(), 0);
+            }
+        }
+
+        this.notifyHeightChanged(oldHeight);
+        this.invalidateData();
+        return true;
+    }
+
+    /**
+     * Check whether a node can be added to a table as a row, which is the case for a composite node of leaf nodes.
+     *
+     * @param node the node to check
+     * @return true if the node can be a row of a table
+     */
+    public static boolean isRow(IdentifiableNode node) {
+        if (node instanceof RowNode) {
+            return true;
+        }
+
+        if (!(node instanceof CompositeNode)) {
+            return false;
+        }
+
+        for (IdentifiableNode cell : ((CompositeNode) node).getChildren()) {
+            if (cell instanceof CompositeNode) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Copy the values of a row into the columns by the ordinals of its schema.
+     * The columns belonging to a schema are only looked up when the schema differs from that of the previous row.
+     *
+     * @param source the row to copy
+     * @param row the row number to copy the values to
+     */
+    private void copyValues(RowNode source, int row) {
+        RowSchema schema = source.getSchema();
+
+        if (schema != this.lastSchema && !schema.equals(this.lastSchema)) {
+            this.lastMapping = new int[schema.size()];
+            Arrays.fill(this.lastMapping, -1);
+        }
+
+        this.lastSchema = schema;
+
+        for (int ordinal = 0; ordinal < schema.size(); ordinal++) {
+            byte tag = source.getTag(ordinal);
+
+            if (tag != TypedValues.MISSING) {
+                if (this.lastMapping[ordinal] < 0) {
+                    this.lastMapping[ordinal] = this.getOrAddColumn(schema.getColumn(ordinal));
+                }
+
+                this.setCell(this.lastMapping[ordinal], row, tag, source.getText(ordinal), source.getNumber(ordinal));
+            }
+        }
+    }
+
+    /**
+     * Removes a row from the table.
+     * The row number of the removed row is not reused, so the keys of the other rows stay the same.
+     *
+     * @param child the view on the row to remove
+     * @return true if the row was removed, false if it is not a row of this table
+     */
+    @Override
+    public boolean removeChild(IdentifiableNode child) {
+        if (!(child instanceof RowView) || ((RowView) child).table() != this) {
+            return false;
+        }
+
+        int row = ((RowView) child).row;
+        if (this.removedRows.get(row)) {
+            return false;
+        }
+
+        this.page();
+        int oldHeight = this.getHeight();
+        this.clearRowKey(row);
+        this.removedRows.set(row);
+        this.removedCount++;
+
+        for (int column = 0; column < this.columns.size(); column++) {
+            this.setCell(column, row, TypedValues.MISSING, null, 0);
+        }
+
+        this.notifyHeightChanged(oldHeight);
+        this.invalidateData();
+        return true;
+    }
+
+    /**
+     * Get the view on the row with the provided key in constant time.
+     *
+     * @param key the key of the row to look for
+     * @return the row, null if no such row exists
+     */
+    @Override
+    public IdentifiableNode getChild(String key) {
+        int row = this.findRow(key);
+        return row < 0 ? null : new RowView(row);
+    }
+
+    /**
+     * Returns views on the rows of the table in the order they were added.
+     *
+     * @return a read-only collection of the rows
+     */
+    @Override
+    public Collection<IdentifiableNode> getChildren() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<IdentifiableNode> iterator() {
+                return new Iterator<>() {
+                    private int row = TableNode.this.removedRows.nextClearBit(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return this.row < TableNode.this.rowCount;
+                    }
+
+                    @Override
+                    public IdentifiableNode next() {
+                        if (!this.hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+
+                        RowView view = new RowView(this.row);
+                        this.row = TableNode.this.removedRows.nextClearBit(this.row + 1);
+                        return view;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return TableNode.this.rowCount - TableNode.this.removedCount;
+            }
+        };
+    }
+
+    /**
+     * Returns the height of the table in constant time.
+     * An empty table has a height of 1, a table with only empty rows 2 and a table with cells 3.
+     *
+     * @return the height of the table
+     */
+    @Override
+    public int getHeight() {
+        if (this.rowCount == this.removedCount) {
+            return 1;
+        }
+
+        return this.cellCount > 0 ? 3 : 2;
+    }
+
+    /**
+     * Returns the names of the columns in the order they were first encountered.
+     *
+     * @return a read-only list of the column names
+     */
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(this.columnNames);
+    }
+
+    /**
+     * Returns the values of a single column, indexed by row number.
+     * Cells that are missing, and cells of removed rows, are null.
+     * The list reads straight from the columns, which makes it suited for scanning an entire column.
+     * It follows the column rather than its current array, so it stays valid while the table grows or is spilled,
+     * and its size follows the amount of rows in the table.
+     *
+     * @param name the name of the column
+     * @return a read-only list of the values of the column, null if the column does not exist
+     */
+    public List<String> getColumn(String name) {
+        Integer column = this.columnIndex.get(name);
+
+        if (column == null) {
+            return null;
+        }
+
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                Objects.checkIndex(index, TableNode.this.rowCount);
+                page();
+                return valueOf(column, index);
+            }
+
+            @Override
+            public int size() {
+                return TableNode.this.rowCount;
+            }
+        };
+    }
+
+    /**
+     * Find the cell of the first row holding a value in a column.
+     * The cells of a table are not indexed by key, so the RootNode uses this to look them up.
+     * The search starts at the first row that held a value the last time, so only the rows of which the value
+     * has been removed since are passed, once.
+     *
+     * @param name the name of the column
+     * @return a view of the cell, null if no row holds a value in the column
+     */
+    IdentifiableNode findCell(String name) {
+        Integer column = this.columnIndex.get(name);
+
+        if (column == null) {
+            return null;
+        }
+
+        this.page();
+        byte[] columnTags = this.tags.get(column);
+
+        for (int row = this.firstRows[column]; row < this.rowCount; row++) {
+            if (columnTags[row] != TypedValues.MISSING && !this.removedRows.get(row)) {
+                this.firstRows[column] = row;
+                return new CellView(new RowView(row), column);
+            }
+        }
+
+        this.firstRows[column] = Integer.MAX_VALUE;
+        return null;
+    }
+
+    /**
+     * Write the data of the rows straight from the columns, without creating views.
+     *
+     * @param out the output to write the data to
+     * @throws IOException whenever the output can not be written to
+     */
+    @Override
+    public void appendData(Appendable out) throws IOException {
+        this.page();
+        int row = this.removedRows.nextClearBit(0);
+
+        while (row < this.rowCount) {
+            out.append(this.getRowKey(row)).append(": ");
+            this.appendRow(row, out);
+            out.append("; ");
+            row = this.removedRows.nextClearBit(row + 1);
+        }
+    }
+
+    /**
+     * Rename a column, changing the key of its cells in every row at once.
+     *
+     * @param name the current name of the column
+     * @param newName the new name of the column
+     * @return true if the column was renamed, false if the table has no column with the name
+     * @throws KeyAlreadyExistsException whenever another column already has the new name
+     */
+    public boolean renameColumn(String name, String newName) {
+        Integer column = this.columnIndex.get(name);
+
+        if (column == null) {
+            return false;
+        }
+
+        this.renameColumn(column, newName);
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    boolean hasChildViews() {
+        return true;
+    }
+
+    /**
+     * Estimate the amount of heap memory the rows of the table take up while it is not spilled.
+     * The estimate is kept up to date while values are stored, so this only sums the sizes of the arrays.
+     *
+     * @return the approximate amount of bytes
+     */
+    public long getRetainedSize() {
+        long references = (long) this.capacity * this.columnNames.size() * (REFERENCE_SIZE + 1);
+        long primitives = (long) this.capacity * this.numberColumns * Long.BYTES;
+        long keys = this.rowKeys == null ? 0 : (long) this.capacity * REFERENCE_SIZE;
+
+        return this.valueBytes + references + primitives + keys;
+    }
+
+    /**
+     * Whether the columns of the table have been spilled to a segment file.
+     *
+     * @return true if the columns are read back from the segment file on their next use
+     */
+    public boolean isSpilled() {
+        return this.spilled;
+    }
+
+    /**
+     * Marks the segment file as outdated besides clearing the rendered data, since every change passes here.
+     */
+    @Override
+    void invalidateData() {
+        this.segmentCurrent = false;
+        super.invalidateData();
+    }
+
+    /**
+     * Write the columns to the segment file and release them.
+     * When the segment file still holds the current columns, they are released without writing.
+     * Only called by the store, while it holds its lock.
+     *
+     * @throws IOException whenever the segment file can not be written
+     */
+    void spill() throws IOException {
+        if (this.spilled) {
+            return;
+        }
+
+        if (!this.segmentCurrent) {
+            if (this.segment == null) {
+                this.segment = this.store.createSegment();
+            }
+
+            try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(this.segment), SEGMENT_BUFFER_SIZE)
+            )) {
+                for (int column = 0; column < this.columns.size(); column++) {
+                    String[] values = this.columns.get(column);
+                    byte[] columnTags = this.tags.get(column);
+                    long[] columnNumbers = this.numbers.get(column);
+                    out.writeBoolean(columnNumbers != null);
+
+                    for (int row = 0; row < this.rowCount; row++) {
+                        TypedValues.writeSlot(columnTags[row], values[row], out);
+
+                        if (columnNumbers != null && TypedValues.holdsNumber(columnTags[row])) {
+                            out.writeLong(columnNumbers[row]);
+                        }
+                    }
+                }
+            }
+
+            this.segmentCurrent = true;
+        }
+
+        this.columns = null;
+        this.tags = null;
+        this.numbers = null;
+        this.spilled = true;
+    }
+
+    /**
+     * Read the columns back from the segment file.
+     * Only called by the store, while it holds its lock.
+     *
+     * @throws IOException whenever the segment file can not be read
+     */
+    void unspill() throws IOException {
+        if (!this.spilled) {
+            return;
+        }
+
+        ArrayList<String[]> readColumns = new ArrayList<>(this.columnNames.size());
+        ArrayList<byte[]> readTags = new ArrayList<>(this.columnNames.size());
+        ArrayList<long[]> readNumbers = new ArrayList<>(this.columnNames.size());
+
+        try (DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Files.newInputStream(this.segment), SEGMENT_BUFFER_SIZE)
+        )) {
+            for (int column = 0; column < this.columnNames.size(); column++) {
+                String[] values = new String[this.capacity];
+                byte[] columnTags = new byte[this.capacity];
+                long[] columnNumbers = in.readBoolean() ? new long[this.capacity] : null;
+
+                for (int row = 0; row < this.rowCount; row++) {
+                    values[row] = TypedValues.readSlot(in, columnTags, row);
+
+                    if (columnNumbers != null && TypedValues.holdsNumber(columnTags[row])) {
+                        columnNumbers[row] = in.readLong();
+                    }
+                }
+
+                readColumns.add(values);
+                readTags.add(columnTags);
+                readNumbers.add(columnNumbers);
+            }
+        }
+
+        this.columns = readColumns;
+        this.tags = readTags;
+        this.numbers = readNumbers;
+        this.spilled = false;
+    }
+
+    /**
+     * Make sure the columns are in memory, reading them back through the store when the table has been spilled.
+     */
+    private void page() {
+        if (this.spilled) {
+            this.store.load(this);
+        }
+    }
+
+    /**
+     * Estimate the amount of bytes a stored value takes up by itself.
+     *
+     * @param tag the tag of the value
+     * @param text the text of the value
+     * @return the approximate amount of bytes, 0 for values that are not text on the heap
+     */
+    private static long sizeOf(byte tag, String text) {
+        return tag == TypedValues.TEXT ? STRING_OVERHEAD + text.length() : 0;
+    }
+
+    /**
+     * Write the data of the cells of a single row.
+     *
+     * @param row the row number
+     * @param out the output to write the data to
+     * @throws IOException whenever the output can not be written to
+     */
+    private void appendRow(int row, Appendable out) throws IOException {
+        for (int column = 0; column < this.columns.size(); column++) {
+            if (this.tags.get(column)[row] != TypedValues.MISSING) {
+                out.append(this.columnNames.get(column)).append(": ");
+                this.appendValue(column, row, out);
+                out.append("; ");
+            }
+        }
+    }
+
+    /**
+     * Store the value of a cell, keeping the amount of cells and the estimated size of the values up to date.
+     * Text is moved into the arena, if the table has one. Numbers and the other tags do not cost an object per cell,
+     * so they are kept as they are.
+     *
+     * @param column the position of the column
+     * @param row the row number
+     * @param tag the tag of the value, MISSING to remove the cell
+     * @param text the text of the value, only used when the tag is TEXT
+     * @param number the number of the value, only used when the tag holds a number
+     */
+    private void setCell(int column, int row, byte tag, String text, long number) {
+        byte[] columnTags = this.tags.get(column);
+        String[] values = this.columns.get(column);
+
+        if (tag == TypedValues.TEXT && this.arena != null) {
+            number = this.arena.store(text);
+            tag = TypedValues.ARENA;
+        }
+
+        if (columnTags[row] == TypedValues.MISSING && tag != TypedValues.MISSING) {
+            this.cellCount++;
+        }
+
+        else if (columnTags[row] != TypedValues.MISSING && tag == TypedValues.MISSING) {
+            this.cellCount--;
+        }
+
+        this.valueBytes -= sizeOf(columnTags[row], values[row]);
+        columnTags[row] = tag;
+        values[row] = tag == TypedValues.TEXT ? text : null;
+        this.valueBytes += sizeOf(tag, values[row]);
+
+        if (TypedValues.holdsNumber(tag)) {
+            this.getNumbers(column)[row] = number;
+        }
+
+        if (tag != TypedValues.MISSING && row < this.firstRows[column]) {
+            this.firstRows[column] = row;
+        }
+    }
+
+    /**
+     * Get the tag of a cell as seen from the outside, text stored in the arena is tagged as text.
+     *
+     * @param column the position of the column
+     * @param row the row number
+     * @return the tag of the cell
+     */
+    private byte tagOf(int column, int row) {
+        byte tag = this.tags.get(column)[row];
+        return tag == TypedValues.ARENA ? TypedValues.TEXT : tag;
+    }
+
+    /**
+     * Get the text of a cell, loading it from the arena when it is stored there.
+     *
+     * @param column the position of the column
+     * @param row the row number
+     * @return the text of the cell, null when the cell does not hold text
+     */
+    private String textOf(int column, int row) {
+        return this.tags.get(column)[row] == TypedValues.ARENA
+            ? this.arena.load(this.numbers.get(column)[row])
+            : this.columns.get(column)[row];
+    }
+
+    /**
+     * Get the number of a cell, only meaningful when its tag holds a number.
+     *
+     * @param column the position of the column
+     * @param row the row number
+     * @return the number of the cell
+     */
+    private long numberOf(int column, int row) {
+        long[] columnNumbers = this.numbers.get(column);
+        return columnNumbers == null ? 0 : columnNumbers[row];
+    }
+
+    /**
+     * Get the value of a cell as text.
+     *
+     * @param column the position of the column
+     * @param row the row number
+     * @return the value, null for a missing cell
+     */
+    private String valueOf(int column, int row) {
+        return TypedValues.decode(this.tagOf(column, row), this.textOf(column, row), this.numberOf(column, row));
+    }
+
+    /**
+     * Write the value of a cell to the provided output.
+     *
+     * @param column the position of the column
+     * @param row the row number
+     * @param out the output to write the value to
+     * @throws IOException whenever the output can not be written to
+     */
+    private void appendValue(int column, int row, Appendable out) throws IOException {
+        if (this.tags.get(column)[row] == TypedValues.ARENA) {
+            this.arena.appendTo(this.numbers.get(column)[row], out);
+        }
+
+        else {
+            TypedValues.append(this.tagOf(column, row), this.textOf(column, row), this.numberOf(column, row), out);
+        }
+    }
+
+    /**
+     * Notify the parent of the table whenever a change altered its height.
+     *
+     * @param oldHeight the height of the table before the change
+     */
+    private void notifyHeightChanged(int oldHeight) {
+        if (this.getHeight() != oldHeight && this.parent != null) {
+            this.parent.onChildHeightChanged(oldHeight, this.getHeight());
+        }
+    }
+
+    /**
+     * Get the position of a column, adding it when it does not exist yet.
+     *
+     * @param name the name of the column
+     * @return the position of the column
+     */
+    private int getOrAddColumn(String name) {
+        Integer column = this.columnIndex.get(name);
+
+        if (column == null) {
+            column = this.columns.size();
+            this.columnIndex.put(name, column);
+            this.columnNames.add(name);
+            this.columns.add(new String[this.capacity]);
+            this.tags.add(new byte[this.capacity]);
+            this.numbers.add(null);
+            this.firstRows = Arrays.copyOf(this.firstRows, column + 1);
+            this.firstRows[column] = Integer.MAX_VALUE;
+        }
+
+        return column;
+    }
+
+    /**
+     * Get the numbers of a column, creating them when the column has not stored a number yet.
+     *
+     * @param column the position of the column
+     * @return the numbers of the column, indexed by row number
+     */
+    private long[] getNumbers(int column) {
+        long[] columnNumbers = this.numbers.get(column);
+
+        if (columnNumbers == null) {
+            columnNumbers = new long[this.capacity];
+            this.numbers.set(column, columnNumbers);
+            this.numberColumns++;
+        }
+
+        return columnNumbers;
+    }
+
+    /**
+     * Rename a column, changing the key of the cells of every row at once.
+     * Column names are unique, since the cells of a row are looked up by column name.
+     *
+     * @param column the position of the column
+     * @param newName the new name of the column
+     * @throws KeyAlreadyExistsException whenever another column already has the new name
+     */
+    private void renameColumn(int column, String newName) {
+        String oldName = this.columnNames.get(column);
+
+        if (oldName.equals(newName)) {
+            return;
+        }
+
+        if (this.columnIndex.containsKey(newName)) {
+            throw new KeyAlreadyExistsException();
+        }
+
+        this.columnIndex.remove(oldName);
+        this.columnNames.set(column, newName);
+        this.columnIndex.put(newName, column);
+        this.lastSchema = null;
+        this.invalidateData();
+    }
+
+    /**
+     * Make sure every column array can hold the provided amount of rows.
+     *
+     * @param rows the amount of rows that has to fit
+     */
+    private void ensureCapacity(int rows) {
+        if (rows <= this.capacity) {
+            return;
+        }
+
+        this.capacity = Math.max(rows, this.capacity * 2);
+        this.columns.replaceAll(column -> Arrays.copyOf(column, this.capacity));
+        this.tags.replaceAll(column -> Arrays.copyOf(column, this.capacity));
+        this.numbers.replaceAll(column -> column == null ? null : Arrays.copyOf(column, this.capacity));
+
+        if (this.rowKeys != null) {
+            this.rowKeys = Arrays.copyOf(this.rowKeys, this.capacity);
+        }
+    }
+
+    /**
+     * Get the key of a row.
+     *
+     * @param row the row number
+     * @return the key of the row
+     */
+    private String getRowKey(int row) {
+        String key = this.rowKeys == null ? null : this.rowKeys[row];
+        return key == null ? String.valueOf(row) : key;
+    }
+
+    /**
+     * Set the key of a row, only storing it when it differs from the row number.
+     *
+     * @param row the row number
+     * @param key the new key of the row
+     */
+    private void setRowKey(int row, String key) {
+        this.clearRowKey(row);
+
+        if (key.equals(String.valueOf(row))) {
+            return;
+        }
+
+        if (this.rowKeys == null) {
+            this.rowKeys = new String[this.capacity];
+        }
+
+        this.rowKeys[row] = key;
+        this.customRowIndex.putIfAbsent(key, row);
+    }
+
+    /**
+     * Remove the stored key of a row, making it keyed by its row number again.
+     * If another row shares the removed key, that row takes its place in the index.
+     *
+     * @param row the row number
+     */
+    private void clearRowKey(int row) {
+        if (this.rowKeys == null || this.rowKeys[row] == null) {
+            return;
+        }
+
+        String key = this.rowKeys[row];
+        this.rowKeys[row] = null;
+
+        if (Integer.valueOf(row).equals(this.customRowIndex.get(key))) {
+            this.customRowIndex.remove(key);
+
+            for (int other = 0; other < this.rowCount; other++) {
+                if (key.equals(this.rowKeys[other])) {
+                    this.customRowIndex.put(key, other);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the row number of the row with the provided key.
+     *
+     * @param key the key of the row
+     * @return the row number, -1 if no row has the key
+     */
+    private int findRow(String key) {
+        Integer custom = this.customRowIndex.get(key);
+
+        if (custom != null) {
+            return custom;
+        }
+
+        int row = parseRowNumber(key);
+        boolean keyedByNumber = this.rowKeys == null || row < 0 || this.rowKeys[row] == null;
+
+        return row >= 0 && row < this.rowCount && !this.removedRows.get(row) && keyedByNumber ? row : -1;
+    }
+
+    /**
+     * Parse a key as a row number, only accepting the exact form String.valueOf() produces.
+     *
+     * @param key the key to parse
+     * @return the row number, -1 if the key is not a row number
+     */
+    private static int parseRowNumber(String key) {
+        if (key == null || key.isEmpty() || key.length() > 9 || (key.length() > 1 && key.charAt(0) == '0')) {
+            return -1;
+        }
+
+        int number = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char digit = key.charAt(i);
+
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+
+            number = number * 10 + (digit - '0');
+        }
+
+        return number;
+    }
+
+    /**
+     * A view on a single row of the table.
+     * It behaves like a composite node of which the children are the cells of the row.
+     */
+    private final class RowView extends CompositeNode {
+
+        /**
+         * The row number of the row.
+         */
+        private final int row;
+
+        private RowView(int row) {
+            super(null);
+            this.row = row;
+            this.parent = TableNode.this;
+        }
+
+        private TableNode table() {
+            return TableNode.this;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String getKey() {
+            return getRowKey(this.row);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void setKey(String newKey) {
+            setRowKey(this.row, newKey);
+            TableNode.this.invalidateData();
+        }
+
+        /**
+         * Adds a cell to the row, adding a column to the table when the key is unknown.
+         *
+         * @param child the leaf node of which the key and data are stored
+         * @return true if the cell was added, false if the row already has a cell with the same key
+         * @throws StructureViolationException whenever the child is a composite node
+         */
+        @Override
+        public boolean addChild(IdentifiableNode child) {
+            if (child instanceof CompositeNode) {
+                throw new StructureViolationException();
+            }
+
+            if (removedRows.get(this.row) || child.getData() == null) {
+                return false;
+            }
+
+            page();
+            int position = getOrAddColumn(child.getKey());
+            if (tags.get(position)[this.row] != TypedValues.MISSING) {
+                return false;
+            }
+
+            int oldHeight = TableNode.this.getHeight();
+            setCell(position, this.row, TypedValues.TEXT, child.getData(), 0);
+            notifyHeightChanged(oldHeight);
+            TableNode.this.invalidateData();
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean removeChild(IdentifiableNode child) {
+            if (!(child instanceof CellView cell) || cell.table() != TableNode.this || cell.row != this.row) {
+                return false;
+            }
+
+            page();
+            if (tags.get(cell.column)[this.row] == TypedValues.MISSING) {
+                return false;
+            }
+
+            int oldHeight = TableNode.this.getHeight();
+            setCell(cell.column, this.row, TypedValues.MISSING, null, 0);
+            notifyHeightChanged(oldHeight);
+            TableNode.this.invalidateData();
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public IdentifiableNode getChild(String key) {
+            Integer column = columnIndex.get(key);
+
+            if (column == null) {
+                return null;
+            }
+
+            page();
+            return tags.get(column)[this.row] == TypedValues.MISSING ? null : new CellView(this, column);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Collection<IdentifiableNode> getChildren() {
+            return new AbstractCollection<>() {
+                @Override
+                public Iterator<IdentifiableNode> iterator() {
+                    return new Iterator<>() {
+                        private int column = this.advance(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return this.column < columnNames.size();
+                        }
+
+                        @Override
+                        public IdentifiableNode next() {
+                            if (!this.hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+
+                            CellView view = new CellView(RowView.this, this.column);
+                            this.column = this.advance(this.column + 1);
+                            return view;
+                        }
+
+                        private int advance(int from) {
+                            page();
+
+                            while (from < tags.size() && tags.get(from)[RowView.this.row] == TypedValues.MISSING) {
+                                from++;
+                            }
+
+                            return from;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    page();
+                    int size = 0;
+
+                    for (byte[] column : tags) {
+                        if (column[RowView.this.row] != TypedValues.MISSING) {
+                            size++;
+                        }
+                    }
+
+                    return size;
+                }
+            };
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int getHeight() {
+            return this.getChildren().iterator().hasNext() ? 2 : 1;
+        }
+
+        /**
+         * Returns the concatenated data of the cells of the row.
+         * A view is created on request, so the result is rendered every time instead of cached.
+         *
+         * @return the concatenated data of the cells as a string
+         */
+        @Override
+        public String getData() {
+            return this.renderData();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void appendData(Appendable out) throws IOException {
+            page();
+            appendRow(this.row, out);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof RowView view && view.table() == TableNode.this && view.row == this.row;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(TableNode.this) * 31 + this.row;
+        }
+    }
+
+    /**
+     * A view on a single cell of the table.
+     * Its key is the name of its column and its data the value stored in the column.
+     */
+    private final class CellView extends LeafNode {
+
+        /**
+         * The row number of the cell.
+         */
+        private final int row;
+
+        /**
+         * The position of the column of the cell.
+         */
+        private final int column;
+
+        private CellView(RowView row, int column) {
+            super(null, null);
+            this.row = row.row;
+            this.column = column;
+            this.parent = row;
+        }
+
+        private TableNode table() {
+            return TableNode.this;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String getKey() {
+            return columnNames.get(this.column);
+        }
+
+        /**
+         * Renames the column of the cell, which changes the key of the cells in every row.
+         * A single cell can not be given a key of its own, since the rows of a table share their column names.
+         *
+         * @param newKey the new name of the column
+         * @throws KeyAlreadyExistsException whenever another column already has the new name
+         */
+        @Override
+        public void setKey(String newKey) {
+            renameColumn(this.column, newKey);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String getData() {
+            page();
+            return valueOf(this.column, this.row);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void appendData(Appendable out) throws IOException {
+            page();
+            appendValue(this.column, this.row, out);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public ValueType getType() {
+            page();
+            return TypedValues.typeOf(tagOf(this.column, this.row));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public long getLong() {
+            page();
+            return TypedValues.getLong(
+                tagOf(this.column, this.row), textOf(this.column, this.row), numberOf(this.column, this.row)
+            );
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public double getDouble() {
+            page();
+            return TypedValues.getDouble(
+                tagOf(this.column, this.row), textOf(this.column, this.row), numberOf(this.column, this.row)
+            );
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean getBoolean() {
+            page();
+            return TypedValues.getBoolean(tagOf(this.column, this.row), textOf(this.column, this.row));
+        }
+
+        /**
+         * Set the data of the cell, setting it to null removes the cell from its row.
+         * The new data is stored with the type of the current value, so a number stays a number whenever it can.
+         * Nothing is written when the data does not change.
+         *
+         * @param newData the new data of the cell
+         */
+        @Override
+        public void setData(String newData) {
+            if (removedRows.get(this.row)) {
+                return;
+            }
+
+            page();
+            byte tag = tagOf(this.column, this.row);
+
+            if (Objects.equals(newData, valueOf(this.column, this.row))) {
+                return;
+            }
+
+            long[] number = new long[1];
+            int oldHeight = TableNode.this.getHeight();
+            setCell(this.column, this.row, TypedValues.encodeLike(newData, tag, number, 0), newData, number[0]);
+            notifyHeightChanged(oldHeight);
+            TableNode.this.invalidateData();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CellView view
+                && view.table() == TableNode.this
+                && view.row == this.row
+                && view.column == this.column;
+        }
+
+        @Override
+        public int hashCode() {
+            return (System.identityHashCode(TableNode.this) * 31 + this.row) * 31 + this.column;
+        }
+    }
+}
@@ -0,0 +1,593 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * TypedValues stores typed values in three parallel arrays: an array of tags, an array of text and an array of numbers.
+ * The tag of a slot says what the slot holds and where its value lives, so no slot is recognised by its text.
+ * Text is kept in the array of text, whole numbers are stored as a long and decimal numbers as the bits of a double.
+ * The tag of a decimal number remembers its separator and the amount of digits behind it,
+ * so the number is turned back into exactly the text it was read from.
+ * Booleans and empty values only need their tag, which does not cost an object per cell.
+ * Text stored in a NodeArena is tagged as well, the array of numbers then holds the handle of the text.
+ */
+final class TypedValues {
+
+    /**
+     * Tag of a missing cell.
+     */
+    static final byte MISSING = 0;
+
+    /**
+     * Tag of a slot holding its value as text.
+     */
+    static final byte TEXT = 1;
+
+    /**
+     * Tag of a slot holding an empty value of a typed column.
+     */
+    static final byte EMPTY = 2;
+
+    /**
+     * Tag of a slot holding the boolean true.
+     */
+    static final byte TRUE = 3;
+
+    /**
+     * Tag of a slot holding the boolean false.
+     */
+    static final byte FALSE = 4;
+
+    /**
+     * Tag of a slot holding a whole number.
+     */
+    static final byte LONG = 5;
+
+    /**
+     * Tag of a slot holding text that is stored in a NodeArena.
+     * The tag does not know the arena, so the slot is resolved by the table owning it.
+     */
+    static final byte ARENA = 6;
+
+    /**
+     * Base of the tags of decimal numbers written with a decimal point, the amount of decimals is added to it.
+     */
+    private static final byte POINT_DECIMALS = 16;
+
+    /**
+     * Base of the tags of decimal numbers written with a decimal comma, the amount of decimals is added to it.
+     */
+    private static final byte COMMA_DECIMALS = 32;
+
+    /**
+     * The maximum amount of significant digits of a decimal number, every such number fits a double exactly.
+     */
+    private static final int MAX_DECIMAL_DIGITS = 15;
+
+    /**
+     * The maximum amount of significant digits of a whole number, every such number fits a long.
+     */
+    private static final int MAX_WHOLE_DIGITS = 18;
+
+    /**
+     * The powers of ten a double is able to hold exactly.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    /**
+     * The powers of ten a long is able to hold.
+     */
+    private static final long[] WHOLE_POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+        10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+        1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    /**
+     * The longest text written as modified UTF-8, which stays within the 65535 bytes DataOutput.writeUTF() accepts.
+     */
+    private static final int MAX_UTF_LENGTH = 65535 / 3;
+
+    private static final byte NULL_TEXT = 0;
+    private static final byte SHORT_TEXT = 1;
+    private static final byte LONG_TEXT = 2;
+
+    private TypedValues() {
+    }
+
+    /**
+     * Turn a value into the tag of the slot it is stored in.
+     * Values of a STRING column are stored as text, others are stored typed whenever they can be.
+     * The caller keeps the value as the text of the slot when the tag is TEXT.
+     *
+     * @param value the value to store, null for a missing cell
+     * @param type the type of the column the value belongs to
+     * @param decimalSeparator the decimal separator of the column
+     * @param numbers the numbers of the slots, only written when the value is a number
+     * @param index the index of the slot
+     * @return the tag of the slot
+     */
+    static byte encode(String value, ValueType type, char decimalSeparator, long[] numbers, int index) {
+        if (value == null) {
+            return MISSING;
+        }
+
+        if (type == ValueType.STRING) {
+            return TEXT;
+        }
+
+        if (value.isEmpty()) {
+            return EMPTY;
+        }
+
+        if (value.equals("true")) {
+            return TRUE;
+        }
+
+        if (value.equals("false")) {
+            return FALSE;
+        }
+
+        return encodeNumber(value, decimalSeparator, numbers, index);
+    }
+
+    /**
+     * Turn a new value into the tag of a slot, storing it the way the previous value of the slot was stored.
+     * Text stays text, while a slot holding a typed value keeps the type and decimal separator of its column
+     * whenever the new value allows it.
+     *
+     * @param value the new value, null for a missing cell
+     * @param previous the tag of the previous value of the slot
+     * @param numbers the numbers of the slots, only written when the value is a number
+     * @param index the index of the slot
+     * @return the tag of the slot
+     */
+    static byte encodeLike(String value, byte previous, long[] numbers, int index) {
+        ValueType type = previous == MISSING || previous == TEXT ? ValueType.STRING : ValueType.LONG;
+        char decimalSeparator = decimalsOf(previous) >= 1 ? separatorOf(previous) : '.';
+
+        return encode(value, type, decimalSeparator, numbers, index);
+    }
+
+    /**
+     * Determine the tag of a textual value by its contents, accepting both a decimal point and a decimal comma.
+     *
+     * @param value the value to determine the tag of
+     * @param numbers the array to write the number to, when the value is a number
+     * @param index the index to write the number to
+     * @return the tag of the value, TEXT if it has no other type
+     */
+    static byte parse(String value, long[] numbers, int index) {
+        byte tag = encode(value, ValueType.LONG, '.', numbers, index);
+        return tag == TEXT ? encode(value, ValueType.LONG, ',', numbers, index) : tag;
+    }
+
+    /**
+     * Turn a slot back into the text of its value.
+     *
+     * @param tag the tag of the slot
+     * @param text the text of the slot
+     * @param number the number of the slot
+     * @return the value as text, null for a missing cell
+     * @throws IllegalStateException whenever the slot is stored in an arena, which the table has to resolve
+     */
+    static String decode(byte tag, String text, long number) {
+        return switch (tag) {
+            case MISSING -> null;
+            case TEXT -> text;
+            case EMPTY -> "";
+            case TRUE -> "true";
+            case FALSE -> "false";
+            default -> render(tag, number);
+        };
+    }
+
+    /**
+     * Render the text of a number stored in a slot.
+     *
+     * @param tag the tag of the slot
+     * @param number the number of the slot
+     * @return the number as text
+     */
+    private static String render(byte tag, long number) {
+        StringBuilder builder = new StringBuilder(24);
+
+        try {
+            append(tag, null, number, builder);
+        }
+
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Write the text of the value of a slot to the provided output.
+     * Numbers are written digit by digit, without turning them into a string first.
+     *
+     * @param tag the tag of the slot, not MISSING
+     * @param text the text of the slot
+     * @param number the number of the slot
+     * @param out the output to write the value to
+     * @throws IOException whenever the output can not be written to
+     * @throws IllegalStateException whenever the slot is stored in an arena, which the table has to resolve
+     */
+    static void append(byte tag, String text, long number, Appendable out) throws IOException {
+        switch (tag) {
+            case TEXT -> out.append(text);
+            case EMPTY -> { }
+            case TRUE -> out.append("true");
+            case FALSE -> out.append("false");
+            case LONG -> {
+                if (number < 0) {
+                    out.append('-');
+                }
+
+                appendDigits(Math.abs(number), 1, -1, '.', out);
+            }
+            default -> {
+                int decimals = decimalsOf(tag);
+                if (decimals < 0) {
+                    throw new IllegalStateException("The slot does not hold a value of its own");
+                }
+
+                double value = Double.longBitsToDouble(number);
+                if (number < 0) {
+                    out.append('-');
+                }
+
+                long mantissa = Math.round(Math.abs(value) * POWERS_OF_TEN[decimals]);
+                appendDigits(mantissa, decimals + 1, decimals, separatorOf(tag), out);
+            }
+        }
+    }
+
+    /**
+     * Write the digits of a positive number, placing a decimal separator in front of the last digits.
+     *
+     * @param number the number to write
+     * @param minimumDigits the minimum amount of digits to write, padded with leading zeros
+     * @param decimals the amount of digits behind the separator, -1 to write no separator
+     * @param decimalSeparator the decimal separator
+     * @param out the output to write the digits to
+     * @throws IOException whenever the output can not be written to
+     */
+    private static void appendDigits(
+        long number, int minimumDigits, int decimals, char decimalSeparator, Appendable out
+    ) throws IOException {
+        int digits = 1;
+        while (digits < WHOLE_POWERS_OF_TEN.length && WHOLE_POWERS_OF_TEN[digits] <= number) {
+            digits++;
+        }
+
+        for (int remaining = Math.max(digits, minimumDigits); remaining > 0; remaining--) {
+            if (remaining == decimals) {
+                out.append(decimalSeparator);
+            }
+
+            out.append((char) ('0' + number / WHOLE_POWERS_OF_TEN[remaining - 1] % 10));
+        }
+    }
+
+    /**
+     * Whether a slot holds its value in the array of numbers.
+     *
+     * @param tag the tag of the slot
+     * @return true if the value of the slot is a number stored in the array of numbers
+     */
+    static boolean isNumber(byte tag) {
+        return tag == LONG || decimalsOf(tag) >= 0;
+    }
+
+    /**
+     * Whether the array of numbers holds something for a slot, either a number or the handle of text in an arena.
+     *
+     * @param tag the tag of the slot
+     * @return true if the number of the slot has to be kept along with the slot
+     */
+    static boolean holdsNumber(byte tag) {
+        return tag == ARENA || isNumber(tag);
+    }
+
+    /**
+     * Write the tag and text of a slot to a segment or snapshot.
+     * The number of the slot is written by the caller, when holdsNumber() says it belongs to the slot.
+     *
+     * @param tag the tag of the slot
+     * @param text the text of the slot, only written when the tag is TEXT
+     * @param out the output to write the slot to
+     * @throws IOException whenever the output can not be written to
+     */
+    static void writeSlot(byte tag, String text, DataOutput out) throws IOException {
+        out.writeByte(tag);
+
+        if (tag == TEXT) {
+            writeText(text, out);
+        }
+    }
+
+    /**
+     * Read a slot written by writeSlot().
+     *
+     * @param in the input to read the slot from
+     * @param tags the tags to store the tag of the slot in
+     * @param index the index of the slot
+     * @return the text of the slot, null when the tag is not TEXT
+     * @throws IOException whenever the input can not be read or does not hold a slot
+     */
+    static String readSlot(DataInput in, byte[] tags, int index) throws IOException {
+        byte tag = in.readByte();
+
+        if (tag < MISSING || (tag > ARENA && decimalsOf(tag) < 0)) {
+            throw new IOException("Unknown slot tag " + tag);
+        }
+
+        tags[index] = tag;
+        return tag == TEXT ? readText(in) : null;
+    }
+
+    /**
+     * Write text of any length, including null, to a segment or snapshot.
+     *
+     * @param text the text to write
+     * @param out the output to write the text to
+     * @throws IOException whenever the output can not be written to
+     */
+    static void writeText(String text, DataOutput out) throws IOException {
+        if (text == null) {
+            out.writeByte(NULL_TEXT);
+        }
+
+        else if (text.length() <= MAX_UTF_LENGTH) {
+            out.writeByte(SHORT_TEXT);
+            out.writeUTF(text);
+        }
+
+        else {
+            out.writeByte(LONG_TEXT);
+            out.writeInt(text.length());
+            out.writeChars(text);
+        }
+    }
+
+    /**
+     * Read text written by writeText().
+     *
+     * @param in the input to read the text from
+     * @return the text, which might be null
+     * @throws IOException whenever the input can not be read or does not hold text
+     */
+    static String readText(DataInput in) throws IOException {
+        byte kind = in.readByte();
+
+        return switch (kind) {
+            case NULL_TEXT -> null;
+            case SHORT_TEXT -> in.readUTF();
+            case LONG_TEXT -> {
+                char[] characters = new char[in.readInt()];
+                for (int i = 0; i < characters.length; i++) {
+                    characters[i] = in.readChar();
+                }
+
+                yield new String(characters);
+            }
+            default -> throw new IOException("Unknown text kind " + kind);
+        };
+    }
+
+    /**
+     * Get the type of the value of a slot, which is the type it is stored as.
+     *
+     * @param tag the tag of the slot
+     * @return the type of the value, null for a missing cell
+     */
+    static ValueType typeOf(byte tag) {
+        return switch (tag) {
+            case MISSING -> null;
+            case TEXT, ARENA -> ValueType.STRING;
+            case EMPTY -> ValueType.EMPTY;
+            case TRUE, FALSE -> ValueType.BOOLEAN;
+            case LONG -> ValueType.LONG;
+            default -> ValueType.DOUBLE;
+        };
+    }
+
+    /**
+     * Get the value of a slot as a whole number.
+     * Text is parsed, accepting both a decimal point and a decimal comma.
+     *
+     * @param tag the tag of the slot
+     * @param text the text of the slot
+     * @param number the number of the slot
+     * @return the whole number
+     * @throws IllegalStateException whenever the value is not a whole number
+     */
+    static long getLong(byte tag, String text, long number) {
+        if (tag == LONG) {
+            return number;
+        }
+
+        long[] parsed = new long[1];
+        if (tag != TEXT || parse(text, parsed, 0) != LONG) {
+            throw new IllegalStateException("The value is not a whole number");
+        }
+
+        return parsed[0];
+    }
+
+    /**
+     * Get the value of a slot as a decimal number, whole numbers are converted.
+     * Text is parsed, accepting both a decimal point and a decimal comma.
+     *
+     * @param tag the tag of the slot
+     * @param text the text of the slot
+     * @param number the number of the slot
+     * @return the decimal number
+     * @throws IllegalStateException whenever the value is not a number
+     */
+    static double getDouble(byte tag, String text, long number) {
+        if (tag == TEXT) {
+            long[] parsed = new long[1];
+            tag = parse(text, parsed, 0);
+            number = parsed[0];
+        }
+
+        if (tag == LONG) {
+            return number;
+        }
+
+        if (decimalsOf(tag) < 0) {
+            throw new IllegalStateException("The value is not a number");
+        }
+
+        return Double.longBitsToDouble(number);
+    }
+
+    /**
+     * Get the value of a slot as a boolean.
+     *
+     * @param tag the tag of the slot
+     * @param text the text of the slot
+     * @return the boolean
+     * @throws IllegalStateException whenever the value is neither true nor false
+     */
+    static boolean getBoolean(byte tag, String text) {
+        if (tag == TRUE || (tag == TEXT && "true".equals(text))) {
+            return true;
+        }
+
+        if (tag == FALSE || (tag == TEXT && "false".equals(text))) {
+            return false;
+        }
+
+        throw new IllegalStateException("The value is not a boolean");
+    }
+
+    /**
+     * Determine the type of a textual value.
+     *
+     * @param value the value to determine the type of
+     * @param decimalSeparator the decimal separator of the value
+     * @return the type of the value
+     * @see ValueType#of(String, char)
+     */
+    static ValueType detect(String value, char decimalSeparator) {
+        if (value == null || value.isEmpty()) {
+            return ValueType.EMPTY;
+        }
+
+        byte tag = encode(value, ValueType.LONG, decimalSeparator, new long[1], 0);
+        return tag == TEXT ? ValueType.STRING : typeOf(tag);
+    }
+
+    /**
+     * Parse a value as a number without creating any objects.
+     * Only plain numbers are accepted: an optional minus sign, no leading zeros and at most one decimal separator.
+     * A decimal number is computed by a single division of two exact doubles, which is correctly rounded.
+     *
+     * @param value the value to parse
+     * @param decimalSeparator the decimal separator of the value, either a point or a comma
+     * @param numbers the array to write the number to
+     * @param index the index to write the number to
+     * @return the tag of the number, TEXT if the value is not a number
+     */
+    private static byte encodeNumber(String value, char decimalSeparator, long[] numbers, int index) {
+        int length = value.length();
+        boolean negative = value.charAt(0) == '-';
+        int position = negative ? 1 : 0;
+        int wholeStart = position;
+        long mantissa = 0;
+        int digits = 0;
+
+        while (position < length && isDigit(value.charAt(position))) {
+            int digit = value.charAt(position++) - '0';
+
+            if (mantissa > 0 || digit > 0) {
+                digits++;
+            }
+
+            if (digits > MAX_WHOLE_DIGITS) {
+                return TEXT;
+            }
+
+            mantissa = mantissa * 10 + digit;
+        }
+
+        int wholeLength = position - wholeStart;
+        if (wholeLength == 0 || (wholeLength > 1 && value.charAt(wholeStart) == '0')) {
+            return TEXT;
+        }
+
+        if (position == length) {
+            if (negative && mantissa == 0) {
+                return TEXT;
+            }
+
+            numbers[index] = negative ? -mantissa : mantissa;
+            return LONG;
+        }
+
+        byte base = decimalSeparator == '.' ? POINT_DECIMALS : decimalSeparator == ',' ? COMMA_DECIMALS : -1;
+        if (base < 0 || value.charAt(position) != decimalSeparator) {
+            return TEXT;
+        }
+
+        int fractionStart = ++position;
+        while (position < length && isDigit(value.charAt(position))) {
+            int digit = value.charAt(position++) - '0';
+
+            if (mantissa > 0 || digit > 0) {
+                digits++;
+            }
+
+            if (digits > MAX_DECIMAL_DIGITS || position - fractionStart > MAX_DECIMAL_DIGITS) {
+                return TEXT;
+            }
+
+            mantissa = mantissa * 10 + digit;
+        }
+
+        int decimals = position - fractionStart;
+        if (position != length || decimals == 0 || digits > MAX_DECIMAL_DIGITS) {
+            return TEXT;
+        }
+
+        double number = mantissa / POWERS_OF_TEN[decimals];
+        numbers[index] = Double.doubleToRawLongBits(negative ? -number : number);
+        return (byte) (base + decimals);
+    }
+
+    /**
+     * Get the amount of decimals of a slot holding a decimal number.
+     *
+     * @param tag the tag of the slot
+     * @return the amount of decimals, -1 if the slot does not hold a decimal number
+     */
+    private static int decimalsOf(byte tag) {
+        int decimals = tag & 15;
+        boolean decimal = (tag & ~15) == POINT_DECIMALS || (tag & ~15) == COMMA_DECIMALS;
+
+        return decimal && decimals >= 1 ? decimals : -1;
+    }
+
+    /**
+     * Get the decimal separator of a slot holding a decimal number.
+     *
+     * @param tag the tag of the slot
+     * @return the decimal separator
+     */
+    private static char separatorOf(byte tag) {
+        return (tag & ~15) == POINT_DECIMALS ? '.' : ',';
+    }
+
+    private static boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
+    }
+}
@@ -0,0 +1,49 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+/**
+ * Enumeration of the types a value of a leaf node might have.
+ * Values of a type other than STRING can be stored as primitives instead of as text.
+ */
+public enum ValueType {
+    STRING,
+    LONG,
+    DOUBLE,
+    BOOLEAN,
+    EMPTY;
+
+    /**
+     * Get the narrowest type that is able to hold values of both this and the other type.
+     * An empty value fits every type, a whole number fits a decimal number and everything fits a string.
+     *
+     * @param other the type to combine with
+     * @return the combined type
+     */
+    public ValueType widen(ValueType other) {
+        if (this == other || other == EMPTY) {
+            return this;
+        }
+
+        if (this == EMPTY) {
+            return other;
+        }
+
+        if ((this == LONG && other == DOUBLE) || (this == DOUBLE && other == LONG)) {
+            return DOUBLE;
+        }
+
+        return STRING;
+    }
+
+    /**
+     * Determine the type of a textual value.
+     * Numbers are only recognised in their plain form, without a plus sign, leading zeros or grouping,
+     * so that turning them back into text gives the exact same value.
+     *
+     * @param value the value to determine the type of
+     * @param decimalSeparator the character separating the whole and fractional part of a decimal number
+     * @return the type of the value
+     */
+    public static ValueType of(String value, char decimalSeparator) {
+        return TypedValues.detect(value, decimalSeparator);
+    }
+}
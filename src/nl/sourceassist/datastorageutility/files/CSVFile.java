@@ -1,61 +1,276 @@
 package nl.sourceassist.datastorageutility.files;
 
 import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
+import nl.sourceassist.datastorageutility.datastructure.IdentifiableNode;
 import nl.sourceassist.datastorageutility.datastructure.LeafNode;
 import nl.sourceassist.datastorageutility.datastructure.RootNode;
+import nl.sourceassist.datastorageutility.datastructure.RowNode;
+import nl.sourceassist.datastorageutility.datastructure.RowSchema;
+import nl.sourceassist.datastorageutility.datastructure.TableNode;
+import nl.sourceassist.datastorageutility.datastructure.ValueType;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.StructureViolationException;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class CSVFile implements File {
 
+    /**
+     * The amount of rows read ahead to infer the types of the columns.
+     */
+    private static final int SAMPLE_SIZE = 100;
+
+    /**
+     * The size in bytes from which a file is read in parallel, when it has a pool to do so.
+     */
+    private static final long PARALLEL_THRESHOLD = 64L * 1024 * 1024;
+
+    /**
+     * The preferred size in bytes of the parts of a file that is read in parallel.
+     */
+    private static final long CHUNK_SIZE = 32L * 1024 * 1024;
+
     private final char delimiter;
     private final boolean hasHeadings;
+    private final char decimalSeparator;
+    private final int writeBufferSize;
+    private final SnapshotCache snapshotCache;
     private Path filePath;
 
+    /**
+     * The pool parsing the parts of the file when it is large, null to always parse it sequentially.
+     */
+    private ForkJoinPool parsePool;
+
+    /**
+     * The columns the file has last been written with, null when it has not been written by this object.
+     */
+    private LinkedHashMap<String, Integer> writtenColumns;
+
+    /**
+     * The size in bytes of the file right after it has last been written by this object.
+     */
+    private long writtenLength;
+
     public CSVFile(String filePath, boolean hasHeadings, char delimiter) {
+        this(filePath, hasHeadings, delimiter, Locale.getDefault(Locale.Category.FORMAT));
+    }
+
+    public CSVFile(String filePath, boolean hasHeadings, char delimiter, int writeBufferSize) {
+        this(filePath, hasHeadings, delimiter, Locale.getDefault(Locale.Category.FORMAT), writeBufferSize);
+    }
+
+    public CSVFile(String filePath, boolean hasHeadings, char delimiter, Locale locale) {
+        this(filePath, hasHeadings, delimiter, locale, CSVWriter.DEFAULT_BUFFER_SIZE);
+    }
+
+    public CSVFile(String filePath, boolean hasHeadings, char delimiter, Locale locale, int writeBufferSize) {
+        this(filePath, hasHeadings, delimiter, locale, writeBufferSize, null);
+    }
+
+    public CSVFile(String filePath, boolean hasHeadings, char delimiter, Locale locale, SnapshotCache snapshotCache) {
+        this(filePath, hasHeadings, delimiter, locale, CSVWriter.DEFAULT_BUFFER_SIZE, snapshotCache);
+    }
+
+    /**
+     * Create a CSV file of which the rows are cached as snapshots.
+     *
+     * @param filePath the path of the file
+     * @param hasHeadings whether the first record holds the names of the columns
+     * @param delimiter the character separating the fields of a record
+     * @param locale the locale determining the decimal separator
+     * @param writeBufferSize the size of the buffer used when writing the file
+     * @param snapshotCache the cache of snapshots of the rows, null to always parse the file
+     */
+    public CSVFile(
+        String filePath, boolean hasHeadings, char delimiter, Locale locale, int writeBufferSize,
+        SnapshotCache snapshotCache
+    ) {
         this.filePath = Paths.get(filePath);
+        this.snapshotCache = snapshotCache;
         this.hasHeadings = hasHeadings;
         this.delimiter = delimiter;
+        this.decimalSeparator = DecimalFormatSymbols.getInstance(locale).getDecimalSeparator();
+        this.writeBufferSize = writeBufferSize;
     }
 
     @Override
     public RootNode readAllData() {
-        RootNode dataStructure = new RootNode(2);
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath.toFile()))) {
-            String[] headings = this.hasHeadings
-                ? reader.readLine().split(String.valueOf(delimiter))
-                : IntStream.rangeClosed(1, 10)
-                    .mapToObj(String::valueOf)
-                    .toArray(String[]::new);
-
-            String line = reader.readLine();
-            int rowNumber = 0;
-            while (line != null) {
-                String[] values = line.split(String.valueOf(delimiter));
-
-                CompositeNode rowNode = new CompositeNode(String.valueOf(rowNumber));
-                for (int i = 0; i < values.length; i++) {
-                    rowNode.addChild(new LeafNode(headings[i], values[i]));
-                }
+        RootNode dataStructure = new RootNode(new TableNode(this.getFileName()));
+
+        try (Stream<CompositeNode> rows = this.streamAllData()) {
+            rows.forEach(dataStructure::addChild);
+        }
+
+        catch (UncheckedIOException e) {
+            System.out.println(e.getCause().toString());
+        }
+
+        return dataStructure;
+    }
+
+    /**
+     * Stream the rows of the file from its snapshot when the file has not changed since it was cached,
+     * otherwise the file is parsed.
+     *
+     * @return a lazily populated stream of the rows of the file
+     */
+    @Override
+    public Stream<CompositeNode> streamAllData() {
+        if (this.snapshotCache == null) {
+            return this.parseAllData();
+        }
 
-                dataStructure.addChild(rowNode);
-                line = reader.readLine();
-                rowNumber++;
+        String format = "csv " + this.hasHeadings + " " + this.delimiter + " " + this.decimalSeparator;
+        return this.snapshotCache.stream(this.filePath, format, this::parseAllData);
+    }
+
+    /**
+     * Parse files of PARALLEL_THRESHOLD bytes or more in parallel on the provided pool.
+     *
+     * @param pool the pool parsing the parts of a large file, null to parse sequentially
+     */
+    @Override
+    public void setParsePool(ForkJoinPool pool) {
+        this.parsePool = pool;
+    }
+
+    /**
+     * Parse the rows of the file, in parallel when the file is large and a parse pool has been provided.
+     *
+     * @return a lazily populated stream of the rows of the file
+     */
+    private Stream<CompositeNode> parseAllData() {
+        try {
+            ForkJoinPool pool = this.parsePool;
+            if (pool != null && Files.size(this.filePath) >= PARALLEL_THRESHOLD) {
+                return new ChunkedRowIterator(pool).stream();
             }
+
+            return new CSVRowIterator().stream();
         }
 
         catch (IOException e) {
             System.out.println(e.toString());
+            return Stream.empty();
         }
+    }
 
-        return dataStructure;
+    /**
+     * Read the records between two positions of the file, for example the records appended since it was last read.
+     * The headings and the types of the columns are determined from the start of the file, like a complete read,
+     * and the rows are numbered from the provided number on.
+     * A range starting within the headings starts at the first record instead.
+     * Such a range is read by the same iterator that inferred the types, so the sampled rows are not parsed again.
+     *
+     * @param start the position in the file where the first record starts
+     * @param end the position in the file where the last record ends
+     * @param firstRowNumber the number of the first row, used as its key
+     * @return a lazily populated stream of the rows in the range
+     * @throws IOException whenever the file can not be read
+     */
+    public Stream<CompositeNode> streamData(long start, long end, int firstRowNumber) throws IOException {
+        FileChannel channel = FileChannel.open(this.filePath, StandardOpenOption.READ);
+
+        try {
+            CSVRowIterator rows = new CSVRowIterator(new CSVReader(channel, delimiter, 0, end), firstRowNumber);
+
+            if (start > rows.dataStart) {
+                RowSchema schema = rows.getSchema();
+                rows.close();
+                rows = new CSVRowIterator(new CSVReader(channel, delimiter, start, end), schema, firstRowNumber);
+            }
+
+            return rows.stream().onClose(() -> {
+                try {
+                    channel.close();
+                }
+
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        catch (IOException | UncheckedIOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the position right after the last line feed of the file.
+     * While records are being appended, the records up to this position are complete.
+     *
+     * @return the length of the file up to its last line feed, 0 if it has none
+     * @throws IOException whenever the file can not be read
+     */
+    public long getCompleteLength() throws IOException {
+        try (FileChannel channel = FileChannel.open(this.filePath, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long end = channel.size();
+
+            while (end > 0) {
+                long start = Math.max(0, end - buffer.capacity());
+                buffer.clear().limit((int) (end - start));
+
+                int read = 0;
+                while (buffer.hasRemaining() && read >= 0) {
+                    read = channel.read(buffer, start + buffer.position());
+                }
+
+                for (int i = buffer.position() - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return start + i + 1;
+                    }
+                }
+
+                end = start;
+            }
+
+            return 0;
+        }
+    }
+
+    /**
+     * Read the rows of the file in parallel, regardless of its size.
+     * The file is split into parts at record boundaries, which are parsed on the pool,
+     * while the stream returns the rows in the order and with the keys of a sequential read.
+     * Only a limited amount of parts is read ahead of the part the stream is at.
+     *
+     * @param pool the pool parsing the parts of the file
+     * @return a lazily populated stream of the rows of the file
+     */
+    public Stream<CompositeNode> streamAllData(ForkJoinPool pool) {
+        try {
+            return new ChunkedRowIterator(pool).stream();
+        }
+
+        catch (IOException e) {
+            System.out.println(e.toString());
+            return Stream.empty();
+        }
     }
 
     @Override
@@ -64,16 +279,494 @@ public class CSVFile implements File {
             throw new StructureViolationException();
         }
 
-        return false;
+        LinkedHashMap<String, Integer> columns = new LinkedHashMap<>();
+        addColumns(data.getChildren(), columns);
+        return this.writeRows(columns, List.of(data.getChildren()), false);
+    }
+
+    /**
+     * Write the rows of several nodes to the file, with a column for every key found in any of the rows.
+     * The columns of a table are taken from its column names, so its rows are only read once, while writing them.
+     * A cell holding nested nodes is written as the data of those nodes.
+     *
+     * @param nodes the nodes of which the children are the rows to write, other than composite nodes are skipped
+     * @return true if the data was saved successfully, false otherwise.
+     */
+    @Override
+    public boolean writeAllRows(Collection<? extends IdentifiableNode> nodes) {
+        LinkedHashMap<String, Integer> columns = new LinkedHashMap<>();
+        List<Collection<IdentifiableNode>> parts = new ArrayList<>();
+
+        for (IdentifiableNode node : nodes) {
+            if (node instanceof TableNode table) {
+                table.getColumnNames().forEach(name -> columns.putIfAbsent(name, columns.size()));
+                parts.add(table.getChildren());
+            }
+
+            else if (node instanceof CompositeNode composite) {
+                addColumns(composite.getChildren(), columns);
+                parts.add(composite.getChildren());
+            }
+        }
+
+        return this.writeRows(columns, parts, false);
     }
 
+    /**
+     * Add rows to the end of the file, in the columns it has last been written with.
+     * Rows holding a key that is not one of those columns are refused, since the headings would have to change.
+     *
+     * @param rows the rows to add
+     * @return true if the rows were added, false if the file has to be written completely.
+     */
     @Override
-    public boolean saveFileAs(Paths newFilePath) {
-        return false;
+    public boolean appendRows(Collection<? extends IdentifiableNode> rows) {
+        LinkedHashMap<String, Integer> columns = this.writtenColumns;
+
+        if (columns == null || !this.isAsWritten()) {
+            return false;
+        }
+
+        for (IdentifiableNode row : rows) {
+            if (row instanceof CompositeNode composite
+                && !composite.getChildren().stream().allMatch(cell -> columns.containsKey(cell.getKey()))) {
+                return false;
+            }
+        }
+
+        return this.writeRows(columns, List.of(Collections.unmodifiableCollection(rows)), true);
+    }
+
+    /**
+     * Write the headings and the rows of one or more parts to the file.
+     * Rows that are not composite nodes are written as a record holding their data.
+     * Cells are written through appendData into buffers reused for every row, so the text of a table is
+     * copied straight from its columns or its arena, without building a string per cell.
+     *
+     * @param columns the position of every column by its name
+     * @param parts the rows to write, in order
+     * @param append whether the rows are added to the end of the file, without headings
+     * @return true if the data was saved successfully, false otherwise.
+     */
+    private boolean writeRows(
+        LinkedHashMap<String, Integer> columns, List<Collection<IdentifiableNode>> parts, boolean append
+    ) {
+        this.writtenColumns = null;
+
+        try (CSVWriter writer = new CSVWriter(this.filePath, this.delimiter, this.writeBufferSize, append)) {
+            if (this.hasHeadings && !append) {
+                for (String heading : columns.keySet()) {
+                    writer.writeField(heading);
+                }
+
+                writer.endRecord();
+            }
+
+            StringBuilder[] values = new StringBuilder[columns.size()];
+            boolean[] present = new boolean[columns.size()];
+            Arrays.setAll(values, i -> new StringBuilder());
+
+            for (Collection<IdentifiableNode> part : parts) {
+                for (IdentifiableNode row : part) {
+                    if (row instanceof CompositeNode) {
+                        Arrays.fill(present, false);
+
+                        for (IdentifiableNode cell : ((CompositeNode) row).getChildren()) {
+                            if (!(cell instanceof LeafNode leaf) || leaf.getType() != null) {
+                                int column = columns.get(cell.getKey());
+                                values[column].setLength(0);
+                                cell.appendData(values[column]);
+                                present[column] = true;
+                            }
+                        }
+
+                        for (int i = 0; i < values.length; i++) {
+                            writer.writeField(present[i] ? values[i] : null);
+                        }
+                    }
+
+                    else {
+                        writer.writeField(row.getData());
+                    }
+
+                    writer.endRecord();
+                }
+            }
+        }
+
+        catch (IOException e) {
+            System.out.println(e.toString());
+            return false;
+        }
+
+        this.writtenColumns = columns;
+        this.writtenLength = this.filePath.toFile().length();
+        return true;
+    }
+
+    /**
+     * Check whether the file still has the size it had right after it has last been written by this object.
+     *
+     * @return true if the file has not grown or shrunk since it has been written
+     */
+    private boolean isAsWritten() {
+        return this.filePath.toFile().length() == this.writtenLength;
+    }
+
+    /**
+     * Add the keys of the cells of rows to the columns, in the order they are first found.
+     *
+     * @param rows the rows to take the keys from
+     * @param columns the position of every column by its name
+     */
+    private static void addColumns(Collection<IdentifiableNode> rows, LinkedHashMap<String, Integer> columns) {
+        for (IdentifiableNode row : rows) {
+            if (row instanceof CompositeNode) {
+                for (IdentifiableNode cell : ((CompositeNode) row).getChildren()) {
+                    columns.putIfAbsent(cell.getKey(), columns.size());
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean saveFileAs(Path newFilePath) {
+        try {
+            Files.copy(this.filePath, newFilePath, StandardCopyOption.REPLACE_EXISTING);
+            this.filePath = newFilePath;
+            return true;
+        }
+
+        catch (IOException e) {
+            System.out.println(e.toString());
+            return false;
+        }
     }
 
     @Override
     public String getFileName() {
         return this.filePath.getFileName().toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * Iterator that reads the rows of the CSV file through a memory mapped CSVReader.
+     * The headings are read when the iterator is created and shared by all rows as their schema.
+     * Columns without a heading are named after their position, starting at 1.
+     * Before the first row is returned, a sample of rows is read ahead to infer the type of every column.
+     */
+    private class CSVRowIterator extends RowIterator {
+
+        private final CSVReader reader;
+        private final ArrayDeque<String[]> sample;
+        private final long dataStart;
+        private RowSchema schema;
+        private boolean sampled;
+
+        private CSVRowIterator() throws IOException {
+            this(new CSVReader(filePath, delimiter), 0);
+        }
+
+        /**
+         * Create an iterator reading the headings at the start of a reader,
+         * numbering its rows from the provided number on.
+         *
+         * @param reader the reader positioned at the start of the file
+         * @param firstRowNumber the number of the first row, used as its key
+         * @throws IOException whenever the headings can not be read
+         */
+        private CSVRowIterator(CSVReader reader, int firstRowNumber) throws IOException {
+            super(firstRowNumber);
+            this.reader = reader;
+            this.sample = new ArrayDeque<>();
+
+            try {
+                this.schema = new RowSchema(hasHeadings && this.reader.nextRecord()
+                    ? IntStream.range(0, this.reader.getFieldCount())
+                        .mapToObj(this.reader::getField)
+                        .toArray(String[]::new)
+                    : new String[0]);
+            }
+
+            catch (IOException e) {
+                this.reader.close();
+                throw e;
+            }
+
+            this.dataStart = this.reader.getPosition();
+        }
+
+        /**
+         * Create an iterator over a part of the file of which the schema is already known.
+         *
+         * @param reader the reader of the part
+         * @param schema the typed schema of the rows
+         */
+        private CSVRowIterator(CSVReader reader, RowSchema schema) {
+            this(reader, schema, 0);
+        }
+
+        /**
+         * Create an iterator over a part of the file of which the schema is already known,
+         * numbering its rows from the provided number on.
+         *
+         * @param reader the reader of the part
+         * @param schema the typed schema of the rows
+         * @param firstRowNumber the number of the first row, used as its key
+         */
+        private CSVRowIterator(CSVReader reader, RowSchema schema, int firstRowNumber) {
+            super(firstRowNumber);
+            this.reader = reader;
+            this.sample = new ArrayDeque<>();
+            this.dataStart = reader.getPosition();
+            this.schema = schema;
+            this.sampled = true;
+        }
+
+        /**
+         * Get the schema of the rows, inferring the types of the columns if that has not happened yet.
+         *
+         * @return the typed schema of the rows
+         * @throws IOException whenever the file can not be read
+         */
+        private RowSchema getSchema() throws IOException {
+            if (!this.sampled) {
+                this.inferTypes();
+            }
+
+            return this.schema;
+        }
+
+        @Override
+        protected CompositeNode readRow(String key) throws IOException {
+            if (!this.sampled) {
+                this.inferTypes();
+            }
+
+            String[] values = this.sample.isEmpty() ? this.readValues() : this.sample.poll();
+            if (values == null) {
+                return null;
+            }
+
+            return new RowNode(key, this.extendSchema(values.length), values);
+        }
+
+        /**
+         * Read the fields of the next record.
+         *
+         * @return the fields of the record, null if no records are left
+         * @throws IOException whenever the file can not be read
+         */
+        private String[] readValues() throws IOException {
+            if (!this.reader.nextRecord()) {
+                return null;
+            }
+
+            String[] values = new String[this.reader.getFieldCount()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = this.reader.getField(i);
+            }
+
+            return values;
+        }
+
+        /**
+         * Read a sample of rows ahead and give every column the narrowest type that fits all of its sampled values.
+         *
+         * @throws IOException whenever the file can not be read
+         */
+        private void inferTypes() throws IOException {
+            this.sampled = true;
+            String[] values;
+
+            while (this.sample.size() < SAMPLE_SIZE && (values = this.readValues()) != null) {
+                this.sample.add(values);
+                this.schema = this.extendSchema(values.length);
+            }
+
+            ValueType[] types = new ValueType[this.schema.size()];
+            for (String[] row : this.sample) {
+                for (int i = 0; i < row.length; i++) {
+                    ValueType type = ValueType.of(row[i], decimalSeparator);
+                    types[i] = types[i] == null ? type : types[i].widen(type);
+                }
+            }
+
+            this.schema = this.schema.withTypes(types, decimalSeparator);
+        }
+
+        /**
+         * Turn the rows sampled to infer the types into rows, so they do not have to be parsed again.
+         *
+         * @return the sampled rows, in file order
+         * @throws IOException whenever the file can not be read
+         */
+        private List<CompositeNode> drainSample() throws IOException {
+            List<CompositeNode> rows = new ArrayList<>(this.sample.size());
+
+            while (!this.sample.isEmpty()) {
+                rows.add(this.readRow(""));
+            }
+
+            return rows;
+        }
+
+        /**
+         * Get the schema of a row, adding a column named after its position for every field without a heading.
+         *
+         * @param fieldCount the amount of fields of the row
+         * @return the schema of the row
+         */
+        private RowSchema extendSchema(int fieldCount) {
+            RowSchema rowSchema = this.schema;
+
+            while (rowSchema.size() < fieldCount) {
+                rowSchema = rowSchema.withColumn(String.valueOf(rowSchema.size() + 1));
+            }
+
+            return rowSchema;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.reader.close();
+        }
+    }
+
+    /**
+     * Iterator that parses the parts of the CSV file on a ForkJoinPool and returns their rows in file order.
+     * The headings and types are determined from the start of the file before any part is parsed,
+     * so every part produces rows of the same schema as a sequential read would.
+     * The rows sampled to determine the types are returned first, the rest of the file is split after them.
+     * A part that ends inside a quoted field shows that the split was misled by quotes within unquoted fields,
+     * in which case the rest of the file is read sequentially from the start of that part.
+     * Rows are keyed by the iterator as they are returned, so the numbering continues across the parts.
+     */
+    private class ChunkedRowIterator extends RowIterator {
+
+        private final FileChannel channel;
+        private final ForkJoinPool pool;
+        private final ArrayDeque<ForkJoinTask<List<CompositeNode>>> pending;
+        private RowSchema schema;
+        private long[] boundaries;
+        private int nextPart;
+        private int polledParts;
+        private Iterator<CompositeNode> part;
+        private CSVRowIterator rest;
+
+        private ChunkedRowIterator(ForkJoinPool pool) throws IOException {
+            this.channel = FileChannel.open(filePath, StandardOpenOption.READ);
+            this.pool = pool;
+            this.pending = new ArrayDeque<>();
+
+            try {
+                CSVRowIterator head = new CSVRowIterator(new CSVReader(this.channel, delimiter, 0, -1), 0);
+                this.schema = head.getSchema();
+                this.part = head.drainSample().iterator();
+                long sampleEnd = head.reader.getPosition();
+                head.close();
+
+                long size = this.channel.size();
+                int parts = (int) Math.max(pool.getParallelism(), (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+                this.boundaries = CSVSplitter.split(this.channel, sampleEnd, parts, pool);
+
+                if (this.boundaries == null) {
+                    this.boundaries = new long[] { sampleEnd, size };
+                }
+            }
+
+            catch (IOException | UncheckedIOException e) {
+                this.channel.close();
+                throw e;
+            }
+        }
+
+        @Override
+        protected CompositeNode readRow(String key) throws IOException {
+            while (!this.part.hasNext()) {
+                int lastPart = this.boundaries.length - 1;
+
+                while (this.nextPart < lastPart && this.pending.size() <= this.pool.getParallelism()) {
+                    long start = this.boundaries[this.nextPart];
+                    long end = this.boundaries[++this.nextPart];
+                    this.pending.add(this.pool.submit(() -> this.readPart(start, end)));
+                }
+
+                if (this.pending.isEmpty()) {
+                    return null;
+                }
+
+                List<CompositeNode> rows = this.pending.poll().join();
+                long start = this.boundaries[this.polledParts++];
+
+                if (rows == null) {
+                    this.readRest(start);
+                }
+
+                else {
+                    this.part = rows.iterator();
+                }
+            }
+
+            CompositeNode row = this.part.next();
+            row.setKey(key);
+            return row;
+        }
+
+        /**
+         * Stop reading parts and read the rest of the file sequentially, from the start of a part on.
+         *
+         * @param start the position in the file where the part starts
+         * @throws IOException whenever the file can not be read
+         */
+        private void readRest(long start) throws IOException {
+            for (ForkJoinTask<List<CompositeNode>> task : this.pending) {
+                task.cancel(true);
+            }
+
+            this.pending.clear();
+            this.nextPart = this.boundaries.length - 1;
+            this.rest = new CSVRowIterator(new CSVReader(this.channel, delimiter, start, -1), this.schema);
+            this.part = this.rest;
+        }
+
+        /**
+         * Parse all rows of a single part of the file.
+         *
+         * @param start the position in the file where the part starts
+         * @param end the position in the file where the part ends
+         * @return the rows of the part, in file order, null if the part does not end at a record boundary
+         */
+        private List<CompositeNode> readPart(long start, long end) {
+            try (CSVReader reader = new CSVReader(this.channel, delimiter, start, end)) {
+                CSVRowIterator rows = new CSVRowIterator(reader, this.schema);
+                List<CompositeNode> result = new ArrayList<>();
+                CompositeNode row;
+
+                while ((row = rows.readRow("")) != null) {
+                    result.add(row);
+                }
+
+                return reader.endsInQuotes() && end < this.boundaries[this.boundaries.length - 1] ? null : result;
+            }
+
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (ForkJoinTask<List<CompositeNode>> task : this.pending) {
+                task.cancel(true);
+            }
+
+            this.pending.clear();
+
+            if (this.rest != null) {
+                this.rest.close();
+            }
+
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,529 @@
+package nl.sourceassist.datastorageutility.files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * CSVReader is a forward-only reader for UTF-8 encoded, delimiter separated files.
+ * The file is memory mapped in windows and scanned byte by byte for delimiters, quotes and line endings.
+ * A record is stored as the byte positions of its fields,
+ * the value of a field is only decoded to a string when it is requested.
+ * Quoted fields are supported, including doubled quotes and line endings inside the quotes.
+ */
+class CSVReader implements Closeable {
+
+    /**
+     * The default amount of bytes mapped into memory at once.
+     */
+    static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The byte order mark some editors place at the start of a UTF-8 file.
+     */
+    private static final byte[] BYTE_ORDER_MARK = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    private static final byte QUOTE = '"';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte LINE_FEED = '\n';
+
+    /**
+     * The channel of the file that is read.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Whether the channel has been opened by this reader and should be closed by it.
+     */
+    private final boolean ownsChannel;
+
+    /**
+     * The position in the file after which no more bytes are read.
+     */
+    private final long end;
+
+    /**
+     * The byte separating two fields.
+     */
+    private final byte delimiter;
+
+    /**
+     * The amount of bytes that is mapped into memory at once.
+     * Grows whenever a single record does not fit a window.
+     */
+    private int windowSize;
+
+    /**
+     * The part of the file currently mapped into memory, null before the first record.
+     */
+    private MappedByteBuffer window;
+
+    /**
+     * The position in the file of the first byte in the window.
+     */
+    private long windowStart;
+
+    /**
+     * The position within the window where the next record starts.
+     */
+    private int position;
+
+    /**
+     * The position in the file where the current record starts.
+     */
+    private long recordStart;
+
+    /**
+     * Start positions within the window of the fields of the current record.
+     */
+    private int[] fieldStarts;
+
+    /**
+     * End positions (exclusive) within the window of the fields of the current record.
+     */
+    private int[] fieldEnds;
+
+    /**
+     * Per field of the current record, whether it contains doubled quotes that need unescaping.
+     */
+    private boolean[] fieldEscaped;
+
+    /**
+     * The amount of fields in the current record.
+     */
+    private int fieldCount;
+
+    /**
+     * Whether the last scanned record ends inside a quoted field that is not closed before the end of the part.
+     */
+    private boolean endsInQuotes;
+
+    /**
+     * Reusable buffer to copy field bytes into before decoding.
+     */
+    private byte[] scratch;
+
+    /**
+     * Create a reader for an entire file.
+     *
+     * @param path the path of the file to read
+     * @param delimiter the character separating two fields, has to be a single byte character
+     * @throws IOException whenever the file can not be opened
+     * @throws IllegalArgumentException whenever the delimiter is not a single byte character
+     */
+    CSVReader(Path path, char delimiter) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), true, delimiter, 0, -1);
+    }
+
+    /**
+     * Create a reader for a part of a file.
+     * The start and end of the part should be the start of a record or the end of the file.
+     *
+     * @param channel the channel of the file, it is not closed by this reader
+     * @param delimiter the character separating two fields, has to be a single byte character
+     * @param start the position in the file of the first record to read
+     * @param end the position in the file after which no more bytes are read
+     * @throws IOException whenever the size of the file can not be determined
+     * @throws IllegalArgumentException whenever the delimiter is not a single byte character
+     */
+    CSVReader(FileChannel channel, char delimiter, long start, long end) throws IOException {
+        this(channel, false, delimiter, start, end);
+    }
+
+    private CSVReader(FileChannel channel, boolean ownsChannel, char delimiter, long start, long end)
+        throws IOException {
+        if (delimiter > 0x7F || delimiter == QUOTE || delimiter == CARRIAGE_RETURN || delimiter == LINE_FEED) {
+            throw new IllegalArgumentException("The delimiter has to be a single byte character");
+        }
+
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.delimiter = (byte) delimiter;
+        this.end = end < 0 ? channel.size() : Math.min(end, channel.size());
+        this.windowSize = DEFAULT_WINDOW_SIZE;
+        this.windowStart = start;
+        this.fieldStarts = new int[16];
+        this.fieldEnds = new int[16];
+        this.fieldEscaped = new boolean[16];
+        this.scratch = new byte[256];
+    }
+
+    /**
+     * Move the reader to the next record.
+     * Empty lines are skipped.
+     *
+     * @return true if a record was read, false if the end of the file has been reached
+     * @throws IOException whenever the file can not be mapped into memory
+     */
+    boolean nextRecord() throws IOException {
+        if (this.window == null) {
+            this.map(this.windowStart);
+            this.skipByteOrderMark();
+        }
+
+        while (true) {
+            if (this.windowStart + this.position >= this.end) {
+                this.fieldCount = 0;
+                return false;
+            }
+
+            if (!this.scanRecord()) {
+                this.remap();
+            }
+
+            else if (this.fieldCount > 1 || this.fieldStarts[0] != this.fieldEnds[0]) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Get the amount of fields in the current record.
+     *
+     * @return the amount of fields
+     */
+    int getFieldCount() {
+        return this.fieldCount;
+    }
+
+    /**
+     * Check whether the last record read runs into the end of the part inside a quoted field.
+     * For a part that does not end at the end of the file, this means the part does not end at a record boundary.
+     *
+     * @return true if a quoted field of the last record is not closed before the end of the part
+     */
+    boolean endsInQuotes() {
+        return this.endsInQuotes;
+    }
+
+    /**
+     * Check whether a field of the current record is empty without decoding it.
+     *
+     * @param index the index of the field
+     * @return true if the field contains no characters
+     */
+    boolean isFieldEmpty(int index) {
+        this.checkIndex(index);
+        return this.fieldStarts[index] == this.fieldEnds[index];
+    }
+
+    /**
+     * Decode a field of the current record.
+     * Surrounding quotes are removed and doubled quotes are unescaped.
+     *
+     * @param index the index of the field
+     * @return the value of the field
+     */
+    String getField(int index) {
+        this.checkIndex(index);
+
+        int start = this.fieldStarts[index];
+        int length = this.fieldEnds[index] - start;
+
+        if (length == 0) {
+            return "";
+        }
+
+        if (this.scratch.length < length) {
+            this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+        }
+
+        this.window.get(start, this.scratch, 0, length);
+
+        if (this.fieldEscaped[index]) {
+            length = unescapeQuotes(this.scratch, length);
+        }
+
+        return new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the position in the file where the current record starts.
+     *
+     * @return the position of the current record
+     */
+    long getRecordStart() {
+        return this.recordStart;
+    }
+
+    /**
+     * Get the position in the file where the record after the current record starts.
+     *
+     * @return the position of the next record
+     */
+    long getPosition() {
+        return this.windowStart + this.position;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() throws IOException {
+        this.window = null;
+
+        if (this.ownsChannel) {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Scan a single record starting at the current position in the window.
+     * When the record runs past the end of the window, but not past the end of the file,
+     * nothing is consumed and false is returned so the window can be moved.
+     *
+     * @return true if a complete record was scanned, false if the window has to be moved
+     */
+    private boolean scanRecord() {
+        int limit = this.window.limit();
+        boolean windowReachesEnd = this.windowStart + limit >= this.end;
+        int index = this.position;
+        int fieldStart = index;
+        boolean escaped = false;
+        this.fieldCount = 0;
+        this.endsInQuotes = false;
+
+        while (true) {
+            if (index >= limit) {
+                if (!windowReachesEnd) {
+                    return false;
+                }
+
+                this.addField(fieldStart, index, escaped);
+                return this.finishRecord(limit);
+            }
+
+            byte current = this.window.get(index);
+
+            if (current == QUOTE && index == fieldStart) {
+                int closingQuote = index + 1;
+
+                while (true) {
+                    if (closingQuote >= limit) {
+                        if (!windowReachesEnd) {
+                            return false;
+                        }
+
+                        this.endsInQuotes = true;
+                        break;
+                    }
+
+                    if (this.window.get(closingQuote) == QUOTE) {
+                        if (closingQuote + 1 >= limit && !windowReachesEnd) {
+                            return false;
+                        }
+
+                        if (closingQuote + 1 < limit && this.window.get(closingQuote + 1) == QUOTE) {
+                            escaped = true;
+                            closingQuote += 2;
+                            continue;
+                        }
+
+                        break;
+                    }
+
+                    closingQuote++;
+                }
+
+                this.addField(index + 1, Math.min(closingQuote, limit), escaped);
+                index = this.skipToFieldEnd(closingQuote + 1, limit);
+
+                if (index >= limit) {
+                    if (!windowReachesEnd) {
+                        return false;
+                    }
+
+                    return this.finishRecord(limit);
+                }
+
+                current = this.window.get(index);
+
+                if (current == this.delimiter) {
+                    index++;
+                    fieldStart = index;
+                    escaped = false;
+                    continue;
+                }
+
+                return this.finishLine(index, limit, windowReachesEnd);
+            }
+
+            if (current == this.delimiter) {
+                this.addField(fieldStart, index, escaped);
+                index++;
+                fieldStart = index;
+                escaped = false;
+            }
+
+            else if (current == LINE_FEED || current == CARRIAGE_RETURN) {
+                this.addField(fieldStart, index, escaped);
+                return this.finishLine(index, limit, windowReachesEnd);
+            }
+
+            else {
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Skip the characters between a closing quote and the next delimiter or line ending.
+     *
+     * @param index the position directly after the closing quote
+     * @param limit the end of the window
+     * @return the position of the next delimiter, line ending or the end of the window
+     */
+    private int skipToFieldEnd(int index, int limit) {
+        while (index < limit) {
+            byte current = this.window.get(index);
+
+            if (current == this.delimiter || current == LINE_FEED || current == CARRIAGE_RETURN) {
+                return index;
+            }
+
+            index++;
+        }
+
+        return index;
+    }
+
+    /**
+     * Finish a record that ends with a line ending at the provided position.
+     * A carriage return followed by a line feed is consumed as a single line ending.
+     *
+     * @param index the position of the line ending
+     * @param limit the end of the window
+     * @param windowReachesEnd whether the window contains the end of the file
+     * @return true if the record was finished, false if the window has to be moved first
+     */
+    private boolean finishLine(int index, int limit, boolean windowReachesEnd) {
+        if (this.window.get(index) == CARRIAGE_RETURN) {
+            if (index + 1 >= limit && !windowReachesEnd) {
+                return false;
+            }
+
+            if (index + 1 < limit && this.window.get(index + 1) == LINE_FEED) {
+                index++;
+            }
+        }
+
+        return this.finishRecord(index + 1);
+    }
+
+    /**
+     * Mark the current record as complete and move the position to the next record.
+     *
+     * @param next the position within the window where the next record starts
+     * @return always true, to allow tail calls from the scan
+     */
+    private boolean finishRecord(int next) {
+        this.recordStart = this.windowStart + this.position;
+        this.position = next;
+        return true;
+    }
+
+    /**
+     * Store the position of a field of the current record.
+     *
+     * @param start the start of the field within the window
+     * @param end the end (exclusive) of the field within the window
+     * @param escaped whether the field contains doubled quotes
+     */
+    private void addField(int start, int end, boolean escaped) {
+        if (this.fieldCount == this.fieldStarts.length) {
+            int newLength = this.fieldStarts.length * 2;
+            this.fieldStarts = Arrays.copyOf(this.fieldStarts, newLength);
+            this.fieldEnds = Arrays.copyOf(this.fieldEnds, newLength);
+            this.fieldEscaped = Arrays.copyOf(this.fieldEscaped, newLength);
+        }
+
+        this.fieldStarts[this.fieldCount] = start;
+        this.fieldEnds[this.fieldCount] = end;
+        this.fieldEscaped[this.fieldCount] = escaped;
+        this.fieldCount++;
+    }
+
+    /**
+     * Move the window so that it starts at the current record.
+     * If the record already started at the beginning of the window, the window is enlarged instead.
+     *
+     * @throws IOException whenever the file can not be mapped into memory
+     */
+    private void remap() throws IOException {
+        if (this.position == 0) {
+            if (this.windowSize == Integer.MAX_VALUE) {
+                throw new IOException("A single record exceeds the maximum window size");
+            }
+
+            this.windowSize = (int) Math.min(Integer.MAX_VALUE, this.windowSize * 2L);
+        }
+
+        this.map(this.windowStart + this.position);
+    }
+
+    /**
+     * Map a new window of the file into memory.
+     *
+     * @param start the position in the file where the window starts
+     * @throws IOException whenever the file can not be mapped into memory
+     */
+    private void map(long start) throws IOException {
+        long size = Math.min(this.windowSize, this.end - start);
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, Math.max(size, 0));
+        this.windowStart = start;
+        this.position = 0;
+    }
+
+    /**
+     * Skip the UTF-8 byte order mark when the reader starts at the beginning of the file.
+     */
+    private void skipByteOrderMark() {
+        if (this.windowStart != 0 || this.window.limit() < BYTE_ORDER_MARK.length) {
+            return;
+        }
+
+        for (int i = 0; i < BYTE_ORDER_MARK.length; i++) {
+            if (this.window.get(i) != BYTE_ORDER_MARK[i]) {
+                return;
+            }
+        }
+
+        this.position = BYTE_ORDER_MARK.length;
+    }
+
+    /**
+     * Check whether the index refers to a field of the current record.
+     *
+     * @param index the index of the field
+     * @throws IndexOutOfBoundsException whenever the field does not exist
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.fieldCount) {
+            throw new IndexOutOfBoundsException(index);
+        }
+    }
+
+    /**
+     * Replace all doubled quotes in a buffer with a single quote.
+     *
+     * @param bytes the buffer containing the field
+     * @param length the length of the field in the buffer
+     * @return the length of the field after unescaping
+     */
+    private static int unescapeQuotes(byte[] bytes, int length) {
+        int write = 0;
+
+        for (int read = 0; read < length; read++) {
+            bytes[write++] = bytes[read];
+
+            if (bytes[read] == QUOTE && read + 1 < length && bytes[read + 1] == QUOTE) {
+                read++;
+            }
+        }
+
+        return write;
+    }
+}
@@ -0,0 +1,174 @@
+package nl.sourceassist.datastorageutility.files;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * CSVSplitter divides a delimiter separated file into parts that can each be read by their own CSVReader.
+ * A part always starts at the start of a record, so a line ending inside a quoted field never splits a record.
+ * The file is first cut into segments of equal size, which are scanned in parallel for quotes and line endings.
+ * The amount of quotes before a segment tells whether it starts inside a quoted field,
+ * after which the first line ending outside of quotes in every segment marks the start of the next part.
+ * Doubled quotes inside a quoted field do not change whether a position is inside quotes,
+ * so the count is exact as long as quotes only surround fields.
+ * A quote within an unquoted field can make a line ending inside a quoted field look like a record boundary,
+ * which the reader of the part before it notices, since that part then ends inside a quoted field.
+ */
+final class CSVSplitter {
+
+    /**
+     * The amount of bytes mapped into memory at once while scanning a segment.
+     */
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private static final byte QUOTE = '"';
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte LINE_FEED = '\n';
+
+    /**
+     * The result of scanning a single segment.
+     *
+     * @param quotes the amount of quotes in the segment
+     * @param evenLineEnd the position after the first line ending preceded by an even amount of quotes in the segment
+     * @param oddLineEnd the position after the first line ending preceded by an odd amount of quotes in the segment
+     */
+    private record Segment(long quotes, long evenLineEnd, long oddLineEnd) {
+
+        /**
+         * Get the position after the first line ending of the segment that is outside of quotes.
+         *
+         * @param startsInQuotes whether the segment starts inside a quoted field
+         * @return the position after the line ending, -1 if the segment has no line ending outside of quotes
+         */
+        long lineEnd(boolean startsInQuotes) {
+            return startsInQuotes ? this.oddLineEnd : this.evenLineEnd;
+        }
+    }
+
+    private CSVSplitter() {
+    }
+
+    /**
+     * Determine the boundaries of the parts of a file.
+     * The first boundary is the start position and the last boundary is the end of the file,
+     * every part runs from a boundary up to the next one. Parts may be empty.
+     *
+     * @param channel the channel of the file to split
+     * @param start the position in the file where the first record to split starts
+     * @param parts the amount of parts to split into
+     * @param pool the pool scanning the segments
+     * @return the boundaries of the parts, null if the quotes in the file do not pair up
+     * @throws IOException whenever the file can not be read
+     */
+    static long[] split(FileChannel channel, long start, int parts, ForkJoinPool pool) throws IOException {
+        long end = channel.size();
+        long length = Math.max(end - start, 0);
+        parts = (int) Math.max(1, Math.min(parts, length));
+
+        long[] boundaries = new long[parts + 1];
+        for (int i = 0; i <= parts; i++) {
+            boundaries[i] = start + length * i / parts;
+        }
+
+        List<ForkJoinTask<Segment>> scans = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            long segmentStart = boundaries[i];
+            long segmentEnd = boundaries[i + 1];
+
+            scans.add(pool.submit(() -> {
+                try {
+                    return scan(channel, segmentStart, segmentEnd);
+                }
+
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
+        Segment[] segments = new Segment[parts];
+        try {
+            for (int i = 0; i < parts; i++) {
+                segments[i] = scans.get(i).join();
+            }
+        }
+
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        long quotes = 0;
+        boolean[] startsInQuotes = new boolean[parts];
+        for (int i = 0; i < parts; i++) {
+            startsInQuotes[i] = quotes % 2 == 1;
+            quotes += segments[i].quotes();
+        }
+
+        if (quotes % 2 == 1) {
+            return null;
+        }
+
+        for (int i = 1; i < parts; i++) {
+            long boundary = end;
+
+            for (int j = i; j < parts; j++) {
+                long lineEnd = segments[j].lineEnd(startsInQuotes[j]);
+
+                if (lineEnd >= 0) {
+                    boundary = lineEnd;
+                    break;
+                }
+            }
+
+            boundaries[i] = boundary;
+        }
+
+        return boundaries;
+    }
+
+    /**
+     * Count the quotes of a segment and find its first line endings preceded by an even and an odd amount of quotes.
+     *
+     * @param channel the channel of the file
+     * @param start the position in the file where the segment starts
+     * @param end the position in the file where the segment ends
+     * @return the result of the scan
+     * @throws IOException whenever the segment can not be mapped into memory
+     */
+    private static Segment scan(FileChannel channel, long start, long end) throws IOException {
+        long quotes = 0;
+        long evenLineEnd = -1;
+        long oddLineEnd = -1;
+
+        for (long windowStart = start; windowStart < end; windowStart += WINDOW_SIZE) {
+            int size = (int) Math.min(WINDOW_SIZE, end - windowStart);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, size);
+
+            for (int i = 0; i < size; i++) {
+                byte current = window.get(i);
+
+                if (current == QUOTE) {
+                    quotes++;
+                }
+
+                else if (current == LINE_FEED || current == CARRIAGE_RETURN) {
+                    if (quotes % 2 == 0 && evenLineEnd < 0) {
+                        evenLineEnd = windowStart + i + 1;
+                    }
+
+                    else if (quotes % 2 == 1 && oddLineEnd < 0) {
+                        oddLineEnd = windowStart + i + 1;
+                    }
+                }
+            }
+        }
+
+        return new Segment(quotes, evenLineEnd, oddLineEnd);
+    }
+}
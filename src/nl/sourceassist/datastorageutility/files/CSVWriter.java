@@ -0,0 +1,240 @@
+package nl.sourceassist.datastorageutility.files;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * CSVWriter writes UTF-8 encoded, delimiter separated records to a file.
+ * Fields are encoded straight into a buffer, which is written to the file channel whenever it is full.
+ * A field is only quoted when it contains the delimiter, a quote or a line ending.
+ */
+class CSVWriter implements Closeable {
+
+    /**
+     * The default size of the buffer in bytes.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private static final byte QUOTE = '"';
+    private static final byte LINE_FEED = '\n';
+
+    /**
+     * The channel of the file that is written to.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The buffer the encoded records are collected in.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The character separating two fields.
+     */
+    private final char delimiter;
+
+    /**
+     * Whether the next field is the first field of a record.
+     */
+    private boolean atRecordStart;
+
+    /**
+     * Create a writer that replaces the contents of a file.
+     *
+     * @param path the path of the file to write to, it is created when it does not exist
+     * @param delimiter the character separating two fields, has to be a single byte character
+     * @param bufferSize the amount of bytes collected before they are written to the file
+     * @throws IOException whenever the file can not be opened
+     * @throws IllegalArgumentException whenever the delimiter is not a single byte character or the buffer is too small
+     */
+    CSVWriter(Path path, char delimiter, int bufferSize) throws IOException {
+        this(path, delimiter, bufferSize, false);
+    }
+
+    /**
+     * Create a writer that either replaces the contents of a file or adds records to its end.
+     *
+     * @param path the path of the file to write to, it is created when it does not exist
+     * @param delimiter the character separating two fields, has to be a single byte character
+     * @param bufferSize the amount of bytes collected before they are written to the file
+     * @param append whether records are added to the end of the file instead of replacing its contents
+     * @throws IOException whenever the file can not be opened
+     * @throws IllegalArgumentException whenever the delimiter is not a single byte character or the buffer is too small
+     */
+    CSVWriter(Path path, char delimiter, int bufferSize, boolean append) throws IOException {
+        if (delimiter > 0x7F || delimiter == QUOTE || delimiter == '\r' || delimiter == LINE_FEED) {
+            throw new IllegalArgumentException("The delimiter has to be a single byte character");
+        }
+
+        if (bufferSize < 4) {
+            throw new IllegalArgumentException("The buffer has to hold at least a single character");
+        }
+
+        this.delimiter = delimiter;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.atRecordStart = true;
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+            append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING
+        );
+    }
+
+    /**
+     * Write a field to the current record.
+     * The delimiter is placed in front of every field except the first of a record.
+     *
+     * @param value the value of the field, null is written as an empty field
+     * @throws IOException whenever the buffer can not be written to the file
+     */
+    void writeField(CharSequence value) throws IOException {
+        if (!this.atRecordStart) {
+            this.writeByte((byte) this.delimiter);
+        }
+
+        this.atRecordStart = false;
+
+        if (value == null || value.length() == 0) {
+            return;
+        }
+
+        if (this.needsQuotes(value)) {
+            this.writeByte(QUOTE);
+            this.writeCharacters(value, true);
+            this.writeByte(QUOTE);
+        }
+
+        else {
+            this.writeCharacters(value, false);
+        }
+    }
+
+    /**
+     * End the current record by writing a line ending.
+     *
+     * @throws IOException whenever the buffer can not be written to the file
+     */
+    void endRecord() throws IOException {
+        this.writeByte(LINE_FEED);
+        this.atRecordStart = true;
+    }
+
+    /**
+     * Write everything that is left in the buffer to the file and close it.
+     *
+     * @throws IOException whenever the buffer can not be written to the file
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        }
+
+        finally {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Check whether a value has to be surrounded by quotes.
+     *
+     * @param value the value to check
+     * @return true if the value contains the delimiter, a quote or a line ending
+     */
+    private boolean needsQuotes(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            char current = value.charAt(i);
+
+            if (current == this.delimiter || current == QUOTE || current == LINE_FEED || current == '\r') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Encode the characters of a value as UTF-8 into the buffer.
+     *
+     * @param value the value to encode
+     * @param escapeQuotes whether quotes in the value should be doubled
+     * @throws IOException whenever the buffer can not be written to the file
+     */
+    private void writeCharacters(CharSequence value, boolean escapeQuotes) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char current = value.charAt(i);
+
+            if (current < 0x80) {
+                if (escapeQuotes && current == QUOTE) {
+                    this.writeByte(QUOTE);
+                }
+
+                this.writeByte((byte) current);
+            }
+
+            else if (current < 0x800) {
+                this.ensureCapacity(2);
+                this.buffer.put((byte) (0xC0 | (current >> 6)));
+                this.buffer.put((byte) (0x80 | (current & 0x3F)));
+            }
+
+            else if (Character.isHighSurrogate(current) && i + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(current, value.charAt(++i));
+                this.ensureCapacity(4);
+                this.buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                this.buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                this.buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                this.buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            }
+
+            else {
+                char encoded = Character.isSurrogate(current) ? '?' : current;
+                this.ensureCapacity(3);
+                this.buffer.put((byte) (0xE0 | (encoded >> 12)));
+                this.buffer.put((byte) (0x80 | ((encoded >> 6) & 0x3F)));
+                this.buffer.put((byte) (0x80 | (encoded & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * Write a single byte into the buffer.
+     *
+     * @param value the byte to write
+     * @throws IOException whenever the buffer can not be written to the file
+     */
+    private void writeByte(byte value) throws IOException {
+        this.ensureCapacity(1);
+        this.buffer.put(value);
+    }
+
+    /**
+     * Make sure the buffer has room for the provided amount of bytes, writing it to the file if not.
+     *
+     * @param bytes the amount of bytes that will be put into the buffer
+     * @throws IOException whenever the buffer can not be written to the file
+     */
+    private void ensureCapacity(int bytes) throws IOException {
+        if (this.buffer.remaining() < bytes) {
+            this.flush();
+        }
+    }
+
+    /**
+     * Write the contents of the buffer to the file.
+     *
+     * @throws IOException whenever the buffer can not be written to the file
+     */
+    private void flush() throws IOException {
+        this.buffer.flip();
+
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+
+        this.buffer.clear();
+    }
+}
@@ -1,9 +1,13 @@
 package nl.sourceassist.datastorageutility.files;
 
+import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
 import nl.sourceassist.datastorageutility.datastructure.IdentifiableNode;
 import nl.sourceassist.datastorageutility.datastructure.RootNode;
 
-import java.nio.file.Paths;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 /**
  * An interface representing a file.
@@ -18,6 +22,25 @@ public interface File {
      */
     RootNode readAllData();
 
+    /**
+     * Read the data of the file row by row, without building the complete data structure.
+     * Rows are only read when the stream requests them.
+     * The stream keeps the file open and should therefore be closed after use.
+     *
+     * @return a lazily populated stream of the rows of the file.
+     */
+    Stream<CompositeNode> streamAllData();
+
+    /**
+     * Let the file parse itself in parallel on a pool whenever it is large enough to benefit from it.
+     * Without a pool, which is the default, the file is parsed sequentially by the thread reading it.
+     * Formats that can not be parsed in parallel ignore the pool.
+     *
+     * @param pool the pool parsing the parts of a large file, null to parse sequentially
+     */
+    default void setParsePool(ForkJoinPool pool) {
+    }
+
     /**
      * Write all the data provided to the given file.
      *
@@ -27,14 +50,36 @@ public interface File {
      */
     boolean writeAllData(RootNode data);
 
+    /**
+     * Write the rows of several nodes to the file, in the order of the nodes,
+     * as if they were the children of the root of a single data structure.
+     * The rows are written straight from the nodes without being copied,
+     * so a table that has been spilled is only read back while its own rows are written.
+     *
+     * @param nodes the nodes of which the children are the rows to write, other than composite nodes are skipped
+     * @return true if the data was saved successfully, false otherwise.
+     */
+    boolean writeAllRows(Collection<? extends IdentifiableNode> nodes);
+
+    /**
+     * Add rows to the end of the file, after the rows this object has last written to it.
+     * The rows are refused without touching the file when the format can not grow without being rewritten,
+     * when the rows do not fit what has been written, or when the file has been changed by someone else since.
+     * The file should then be written completely instead.
+     *
+     * @param rows the rows to add
+     * @return true if the rows were added, false if the file has to be written completely.
+     */
+    boolean appendRows(Collection<? extends IdentifiableNode> rows);
+
     /**
      * Save the file on a different location.
      *
      * @param path the new path of the file.
      * @return true if the file was saved successfully, false otherwise.
-     * @see Paths Java's cross.
+     * @see Path Java's cross-platform file path.
      */
-    boolean saveFileAs(Paths path);
+    boolean saveFileAs(Path path);
 
     /**
      * Get the name of the file without extension.
@@ -1,21 +1,91 @@
 package nl.sourceassist.datastorageutility.files;
 
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Locale;
 
 public class FileFactory {
+    private static final String CACHE_DIRECTORY_PROPERTY = "datastorageutility.snapshotCache";
+    private static final String CACHE_SIZE_PROPERTY = "datastorageutility.snapshotCacheSize";
+    private static final long DEFAULT_CACHE_SIZE = 1024L * 1024 * 1024;
+
+    private static SnapshotCache snapshotCache;
+    private static boolean snapshotCacheConfigured;
+
     public static File OpenFileFactory(String filePath) {
         int lastPeriodIndex = filePath.lastIndexOf(".");
 
         if (lastPeriodIndex > -1 && Files.exists(Paths.get(filePath))) {
-            String extension = filePath.substring(lastPeriodIndex + 1);
-            return switch (extension) {
-                case "csv" -> new CSVFile(filePath, true, ';');
-                case "json" -> new JSONFile(filePath);
-                default -> throw new IllegalArgumentException("Invalid file extension");
-            };
+            return createFile(filePath, filePath.substring(lastPeriodIndex + 1), getSnapshotCache());
+        }
+
+        throw new IllegalArgumentException("Invalid path or file name");
+    }
+
+    /**
+     * Create a file that does not have to exist yet, for example to write results to.
+     * The type of the file follows from its extension, like for OpenFileFactory().
+     *
+     * @param filePath the path of the file
+     * @return the file
+     * @throws IllegalArgumentException whenever the path has no supported extension
+     */
+    public static File CreateFileFactory(String filePath) {
+        int lastPeriodIndex = filePath.lastIndexOf(".");
+
+        if (lastPeriodIndex > -1) {
+            return createFile(filePath, filePath.substring(lastPeriodIndex + 1), null);
         }
 
         throw new IllegalArgumentException("Invalid path or file name");
     }
-}
\ No newline at end of file
+
+    private static File createFile(String filePath, String extension, SnapshotCache cache) {
+        return switch (extension) {
+            case "csv" -> new CSVFile(filePath, true, ';', Locale.forLanguageTag("nl-NL"), cache);
+            case "json" -> new JSONFile(filePath, false, cache);
+            case "jsonl" -> new JSONFile(filePath, true, cache);
+            default -> throw new IllegalArgumentException("Invalid file extension");
+        };
+    }
+
+    /**
+     * Set the cache consulted by the files that are opened from now on.
+     *
+     * @param cache the cache of snapshots of the rows of files, null to always parse files
+     */
+    public static synchronized void setSnapshotCache(SnapshotCache cache) {
+        snapshotCache = cache;
+        snapshotCacheConfigured = true;
+    }
+
+    /**
+     * Get the cache consulted by opened files.
+     * Unless a cache has been set, it is created the first time from the system property
+     * datastorageutility.snapshotCache holding its directory, limited to datastorageutility.snapshotCacheSize bytes.
+     *
+     * @return the cache, null when snapshots are not used
+     */
+    private static synchronized SnapshotCache getSnapshotCache() {
+        if (!snapshotCacheConfigured) {
+            snapshotCacheConfigured = true;
+            String directory = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+
+            if (directory != null) {
+                try {
+                    snapshotCache = new SnapshotCache(
+                        Path.of(directory), Long.getLong(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE)
+                    );
+                }
+
+                catch (IOException e) {
+                    System.out.println(e.toString());
+                }
+            }
+        }
+
+        return snapshotCache;
+    }
+}
@@ -1,84 +1,822 @@
 package nl.sourceassist.datastorageutility.files;
 
 import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
+import nl.sourceassist.datastorageutility.datastructure.IdentifiableNode;
 import nl.sourceassist.datastorageutility.datastructure.LeafNode;
 import nl.sourceassist.datastorageutility.datastructure.RootNode;
+import nl.sourceassist.datastorageutility.datastructure.RowNode;
+import nl.sourceassist.datastorageutility.datastructure.RowSchema;
+import nl.sourceassist.datastorageutility.datastructure.ValueType;
 
-import javax.json.*;
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.json.stream.JsonParser;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.StringReader;
+import java.io.ByteArrayInputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.concurrent.StructureViolationException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
 
 public class JSONFile implements File {
 
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The size in bytes from which a file is read in parallel, when it has a pool to do so.
+     */
+    private static final long PARALLEL_THRESHOLD = 64L * 1024 * 1024;
+
+    /**
+     * The minimum size in bytes of the parts of a file that is read in parallel.
+     */
+    private static final long CHUNK_SIZE = 16L * 1024 * 1024;
+
+    private final boolean jsonLines;
+    private final SnapshotCache snapshotCache;
     private Path filePath;
 
+    /**
+     * The pool parsing the parts of the file when it is large, null to always parse it sequentially.
+     */
+    private ForkJoinPool parsePool;
+
+    /**
+     * The size in bytes of the file right after it has last been written by this object, -1 when it has not.
+     */
+    private long writtenLength = -1;
+
     public JSONFile(String filePath) {
+        this(filePath, false);
+    }
+
+    /**
+     * Create a JSON file.
+     * In JSON Lines mode, every line of the file holds a single object instead of the file holding one array.
+     *
+     * @param filePath the path of the file
+     * @param jsonLines whether the file is read and written as JSON Lines
+     */
+    public JSONFile(String filePath, boolean jsonLines) {
+        this(filePath, jsonLines, null);
+    }
+
+    /**
+     * Create a JSON file of which the rows are cached as snapshots.
+     *
+     * @param filePath the path of the file
+     * @param jsonLines whether the file is read and written as JSON Lines
+     * @param snapshotCache the cache of snapshots of the rows, null to always parse the file
+     */
+    public JSONFile(String filePath, boolean jsonLines, SnapshotCache snapshotCache) {
         this.filePath = Path.of(filePath);
+        this.jsonLines = jsonLines;
+        this.snapshotCache = snapshotCache;
     }
 
     @Override
     public RootNode readAllData() {
         RootNode dataStructure = new RootNode();
 
-        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
-            StringBuilder jsonContent = new StringBuilder();
-            String line;
+        try (Stream<CompositeNode> rows = this.streamAllData()) {
+            rows.forEach(dataStructure::addChild);
+        }
 
-            while ((line = reader.readLine()) != null) {
-                jsonContent.append(line);
-            }
+        catch (UncheckedIOException e) {
+            System.out.println(e.getCause().toString());
+        }
 
-            try (JsonReader jsonReader = Json.createReader(new StringReader(jsonContent.toString()))) {
-                JsonArray jsonArray = jsonReader.readArray();
-                int rowNumber = 0;
+        return dataStructure;
+    }
 
-                for (int i = 0; i < jsonArray.size(); i++) {
-                    JsonObject jsonObject = jsonArray.getJsonObject(i);
+    /**
+     * Stream the rows of the file from its snapshot when the file has not changed since it was cached,
+     * otherwise the file is parsed.
+     *
+     * @return a lazily populated stream of the rows of the file
+     */
+    @Override
+    public Stream<CompositeNode> streamAllData() {
+        if (this.snapshotCache == null) {
+            return this.parseAllData();
+        }
 
-                    CompositeNode rowNode = new CompositeNode(String.valueOf(rowNumber)); // Assuming the first column is an identifier
+        return this.snapshotCache.stream(this.filePath, "json " + this.jsonLines, this::parseAllData);
+    }
 
-                    for (String key : jsonObject.keySet()) {
-                        rowNode.addChild(new LeafNode(key, jsonObject.get(key).toString()));
-                    }
+    /**
+     * Parse files of PARALLEL_THRESHOLD bytes or more in parallel on the provided pool.
+     *
+     * @param pool the pool parsing the parts of a large file, null to parse sequentially
+     */
+    @Override
+    public void setParsePool(ForkJoinPool pool) {
+        this.parsePool = pool;
+    }
 
-                    dataStructure.addChild(rowNode);
-                    rowNumber++;
-                }
+    /**
+     * Parse the rows of the file, in parallel when the file is large and a parse pool has been provided.
+     *
+     * @return a lazily populated stream of the rows of the file
+     */
+    private Stream<CompositeNode> parseAllData() {
+        try {
+            ForkJoinPool pool = this.parsePool;
+            if (pool != null && Files.size(this.filePath) >= PARALLEL_THRESHOLD) {
+                return new ChunkedRowIterator(pool).stream();
             }
-        } catch (IOException e) {
+
+            return this.jsonLines
+                ? new JSONLinesRowIterator().stream()
+                : new JSONRowIterator().stream();
+        }
+
+        catch (IOException e) {
             System.out.println(e.toString());
+            return Stream.empty();
         }
+    }
 
-        return dataStructure;
+    /**
+     * Read the rows of the file in parallel, regardless of its size.
+     * The file is split into parts of whole elements by a structural scan, which are parsed on the pool,
+     * while the stream returns the rows in the order and with the keys and types of a sequential read.
+     * Only a limited amount of parts is read ahead of the part the stream is at.
+     * The file has to be encoded in UTF-8.
+     *
+     * @param pool the pool parsing the parts of the file
+     * @return a lazily populated stream of the rows of the file
+     */
+    public Stream<CompositeNode> streamAllData(ForkJoinPool pool) {
+        try {
+            return new ChunkedRowIterator(pool).stream();
+        }
+
+        catch (IOException e) {
+            System.out.println(e.toString());
+            return Stream.empty();
+        }
     }
 
+    /**
+     * Write the data to the file through a streaming generator, without building a JSON object tree.
+     * The nodes directly below the root become the elements of the top-level array,
+     * or the lines of the file in JSON Lines mode.
+     * Composite nodes are written as objects, or as arrays when their children are keyed by their index.
+     * Leaf nodes are written as a number or a boolean when their value has that type, as a string otherwise,
+     * and as null when they have no data.
+     *
+     * @param data the data to be saved to the file.
+     * @return true if the data was saved successfully, false otherwise.
+     */
     @Override
     public boolean writeAllData(RootNode data) {
-        if (data.getDepth() != 2) {
-            throw new StructureViolationException();
+        return this.writeRows(List.of(data.getChildren()), false);
+    }
+
+    /**
+     * Write the rows of several nodes to the file, as the elements of a single top-level array
+     * or as the lines of the file in JSON Lines mode.
+     *
+     * @param nodes the nodes of which the children are the rows to write, other than composite nodes are skipped
+     * @return true if the data was saved successfully, false otherwise.
+     */
+    @Override
+    public boolean writeAllRows(Collection<? extends IdentifiableNode> nodes) {
+        List<Collection<IdentifiableNode>> parts = new ArrayList<>();
+
+        for (IdentifiableNode node : nodes) {
+            if (node instanceof CompositeNode composite) {
+                parts.add(composite.getChildren());
+            }
+        }
+
+        return this.writeRows(parts, false);
+    }
+
+    /**
+     * Add rows to the end of the file, which is only possible in JSON Lines mode:
+     * a single array can not grow without rewriting its end.
+     *
+     * @param rows the rows to add
+     * @return true if the rows were added, false if the file has to be written completely.
+     */
+    @Override
+    public boolean appendRows(Collection<? extends IdentifiableNode> rows) {
+        if (!this.jsonLines || this.writtenLength < 0 || this.filePath.toFile().length() != this.writtenLength) {
+            return false;
+        }
+
+        return this.writeRows(List.of(Collections.unmodifiableCollection(rows)), true);
+    }
+
+    /**
+     * Write the rows of one or more parts to the file through a streaming generator.
+     *
+     * @param parts the rows to write, in order
+     * @param append whether the rows are added to the end of the file, only used in JSON Lines mode
+     * @return true if the data was saved successfully, false otherwise.
+     */
+    private boolean writeRows(List<Collection<IdentifiableNode>> parts, boolean append) {
+        JsonGeneratorFactory factory = Json.createGeneratorFactory(Map.of());
+        this.writtenLength = -1;
+
+        try (OutputStream output = new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(this.filePath,
+            StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+            append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING
+        )), BUFFER_SIZE)) {
+            if (this.jsonLines) {
+                OutputStream line = new FilterOutputStream(output) {
+                    @Override
+                    public void close() throws IOException {
+                        this.flush();
+                    }
+                };
+
+                for (Collection<IdentifiableNode> part : parts) {
+                    for (IdentifiableNode node : part) {
+                        try (JsonGenerator generator = factory.createGenerator(line, StandardCharsets.UTF_8)) {
+                            writeValue(generator, node);
+                        }
+
+                        output.write('\n');
+                    }
+                }
+            }
+
+            else {
+                try (JsonGenerator generator = factory.createGenerator(output, StandardCharsets.UTF_8)) {
+                    generator.writeStartArray();
+
+                    for (Collection<IdentifiableNode> part : parts) {
+                        part.forEach(node -> writeValue(generator, node));
+                    }
+
+                    generator.writeEnd();
+                }
+            }
         }
 
-        // TODO
-        // Implement the logic to write data to a JSON file using java.io
-        // You need to convert the RootNode structure into a JSON format and write it to the file
+        catch (IOException | JsonException e) {
+            System.out.println(e.toString());
+            return false;
+        }
 
-        return false;
+        this.writtenLength = this.filePath.toFile().length();
+        return true;
     }
 
     @Override
-    public boolean saveFileAs(Paths path) {
-        // TODO Auto-generated method stub
-        throw new UnsupportedOperationException("Unimplemented method 'saveFileAs'");
+    public boolean saveFileAs(Path path) {
+        try {
+            Files.copy(this.filePath, path, StandardCopyOption.REPLACE_EXISTING);
+            this.filePath = path;
+            return true;
+        }
+
+        catch (IOException e) {
+            System.out.println(e.toString());
+            return false;
+        }
     }
 
     @Override
     public String getFileName() {
-        return null;
+        return this.filePath.getFileName().toString();
+    }
+
+    /**
+     * Write a node as a value, following the name of a member when the generator is within an object.
+     * Numbers and booleans are written from the typed values of a leaf, only text is turned into a string,
+     * since the generator takes strings only.
+     *
+     * @param generator the generator to write to
+     * @param node the node to write
+     */
+    private static void writeValue(JsonGenerator generator, IdentifiableNode node) {
+        if (node instanceof CompositeNode composite && isArray(composite)) {
+            generator.writeStartArray();
+            composite.getChildren().forEach(child -> writeValue(generator, child));
+            generator.writeEnd();
+        }
+
+        else if (node instanceof CompositeNode composite) {
+            generator.writeStartObject();
+
+            for (IdentifiableNode child : composite.getChildren()) {
+                generator.writeKey(child.getKey());
+                writeValue(generator, child);
+            }
+
+            generator.writeEnd();
+        }
+
+        else if (node instanceof LeafNode leaf) {
+            ValueType type = leaf.getType();
+
+            if (type == null) {
+                generator.writeNull();
+                return;
+            }
+
+            switch (type) {
+                case LONG -> generator.write(leaf.getLong());
+                case DOUBLE -> generator.write(leaf.getDouble());
+                case BOOLEAN -> generator.write(leaf.getBoolean());
+                default -> generator.write(leaf.getData());
+            }
+        }
+
+        else {
+            generator.write(node.getData());
+        }
+    }
+
+    /**
+     * Check whether a composite node holds the elements of an array, which are keyed by their index.
+     *
+     * @param node the node to check
+     * @return true if the children are keyed 0, 1, 2 and so on in order, false for a node without children
+     */
+    private static boolean isArray(CompositeNode node) {
+        int index = 0;
+
+        for (IdentifiableNode child : node.getChildren()) {
+            if (!child.getKey().equals(String.valueOf(index++))) {
+                return false;
+            }
+        }
+
+        return index > 0;
+    }
+
+    /**
+     * Base of the JSON iterators, converting objects to rows.
+     * Rows with the same members in the same order share a schema.
+     * The types of the columns of a schema follow from the values of the first object with those members:
+     * numbers and booleans make a typed column, of which the values are stored as primitives.
+     * Members that are null become missing cells.
+     * An object holding nested objects or arrays becomes a composite node instead, of which the nested values
+     * are composite nodes as well. The elements of an array are keyed by their index, a null element
+     * becomes a leaf node without data.
+     */
+    private abstract static class JSONRowReader extends RowIterator {
+
+        private final HashMap<List<String>, RowSchema> schemas = new HashMap<>();
+        private final ArrayList<String> keys = new ArrayList<>();
+        private final ArrayList<String> values = new ArrayList<>();
+        private final ArrayList<ValueType> types = new ArrayList<>();
+        private RowSchema schema;
+
+        /**
+         * Read the members of an object into a row, after the parser has passed the start of the object.
+         * Strings are stored without their quotes, numbers and booleans as their JSON representation.
+         * A row whose strings and other values do not line up with the types of the current schema gets a schema
+         * with its own types, so a string is never stored as a number or a boolean and the other way around.
+         *
+         * @param parser the parser positioned directly after the start of an object
+         * @param key the key of the row
+         * @return the row containing a cell per member
+         */
+        protected CompositeNode readObject(JsonParser parser, String key) {
+            this.keys.clear();
+            this.values.clear();
+            this.types.clear();
+
+            while (parser.next() == JsonParser.Event.KEY_NAME) {
+                this.keys.add(parser.getString());
+
+                JsonParser.Event event = parser.next();
+                if (event == JsonParser.Event.START_OBJECT || event == JsonParser.Event.START_ARRAY) {
+                    return this.readNestedObject(parser, key, event);
+                }
+
+                this.types.add(typeOf(parser, event));
+                this.values.add(textOf(parser, event));
+            }
+
+            if (!this.hasSchemaColumns()) {
+                this.schema = this.schemas.get(this.keys);
+
+                if (this.schema == null) {
+                    this.schema = new RowSchema(this.keys.toArray(String[]::new))
+                        .withTypes(this.types.toArray(ValueType[]::new), '.');
+                    this.schemas.put(this.schema.getColumns(), this.schema);
+                }
+            }
+
+            if (!this.hasSchemaTypes()) {
+                this.schema = this.schema.withTypes(this.types.toArray(ValueType[]::new), '.');
+            }
+
+            return new RowNode(key, this.schema, this.values.toArray(String[]::new));
+        }
+
+        /**
+         * Continue reading an object as a composite node, after the parser has reached its first nested value.
+         * The members read before the nested value become leaf nodes of their type.
+         *
+         * @param parser the parser positioned at the start of the nested value
+         * @param key the key of the row
+         * @param event the event starting the nested value
+         * @return the row containing a node per member
+         */
+        private CompositeNode readNestedObject(JsonParser parser, String key, JsonParser.Event event) {
+            CompositeNode row = new CompositeNode(key);
+            int nested = this.keys.size() - 1;
+
+            for (int i = 0; i < nested; i++) {
+                if (this.values.get(i) != null) {
+                    row.addChild(new LeafNode(this.keys.get(i), this.values.get(i), this.types.get(i)));
+                }
+            }
+
+            row.addChild(readValue(parser, this.keys.get(nested), event));
+            readMembers(parser, row);
+            return row;
+        }
+
+        /**
+         * Read the remaining members of an object into a composite node, up to the end of the object.
+         * Members that are null are left out.
+         *
+         * @param parser the parser positioned within an object
+         * @param node the node to add a child per member to
+         */
+        private static void readMembers(JsonParser parser, CompositeNode node) {
+            while (parser.next() == JsonParser.Event.KEY_NAME) {
+                String key = parser.getString();
+                JsonParser.Event event = parser.next();
+
+                if (event != JsonParser.Event.VALUE_NULL) {
+                    node.addChild(readValue(parser, key, event));
+                }
+            }
+        }
+
+        /**
+         * Read the value the parser has just reached into a node.
+         *
+         * @param parser the parser positioned at the value
+         * @param key the key of the node
+         * @param event the event of the value
+         * @return a composite node for an object or an array, a leaf node of the type of the value otherwise
+         */
+        private static IdentifiableNode readValue(JsonParser parser, String key, JsonParser.Event event) {
+            if (event == JsonParser.Event.START_OBJECT) {
+                CompositeNode node = new CompositeNode(key);
+                readMembers(parser, node);
+                return node;
+            }
+
+            if (event == JsonParser.Event.START_ARRAY) {
+                CompositeNode node = new CompositeNode(key);
+                int index = 0;
+
+                for (event = parser.next(); event != JsonParser.Event.END_ARRAY; event = parser.next()) {
+                    node.addChild(readValue(parser, String.valueOf(index++), event));
+                }
+
+                return node;
+            }
+
+            return new LeafNode(key, textOf(parser, event), typeOf(parser, event));
+        }
+
+        /**
+         * Get the type of a value that is not an object or an array.
+         *
+         * @param parser the parser positioned at the value
+         * @param event the event of the value
+         * @return the type of the value
+         */
+        private static ValueType typeOf(JsonParser parser, JsonParser.Event event) {
+            return switch (event) {
+                case VALUE_NUMBER -> parser.isIntegralNumber() ? ValueType.LONG : ValueType.DOUBLE;
+                case VALUE_TRUE, VALUE_FALSE -> ValueType.BOOLEAN;
+                default -> ValueType.STRING;
+            };
+        }
+
+        /**
+         * Get the text of a value that is not an object or an array.
+         *
+         * @param parser the parser positioned at the value
+         * @param event the event of the value
+         * @return the text of the value, null for a null value
+         */
+        private static String textOf(JsonParser parser, JsonParser.Event event) {
+            return switch (event) {
+                case VALUE_STRING -> parser.getString();
+                case VALUE_NULL -> null;
+                default -> parser.getValue().toString();
+            };
+        }
+
+        /**
+         * Check whether the members that were just read are the columns of the current schema.
+         *
+         * @return true if the current schema can be reused
+         */
+        private boolean hasSchemaColumns() {
+            if (this.schema == null || this.schema.size() != this.keys.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < this.keys.size(); i++) {
+                if (!this.schema.getColumn(i).equals(this.keys.get(i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Check whether the values that were just read are strings exactly where the current schema has STRING columns.
+         * Numbers of both types can share a column, since a number is stored with the type of its own value.
+         *
+         * @return true if the values can be stored with the types of the current schema
+         */
+        private boolean hasSchemaTypes() {
+            for (int i = 0; i < this.types.size(); i++) {
+                boolean text = this.types.get(i) == ValueType.STRING;
+
+                if (this.values.get(i) != null && text != (this.schema.getType(i) == ValueType.STRING)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Iterator that reads the top-level JSON array one element at a time through a streaming parser.
+     * Only the element that is currently converted to a row is held in memory.
+     */
+    private class JSONRowIterator extends JSONRowReader {
+
+        private final JsonParser parser;
+
+        private JSONRowIterator() throws IOException {
+            this(new BufferedInputStream(
+                Channels.newInputStream(FileChannel.open(filePath, StandardOpenOption.READ)),
+                BUFFER_SIZE
+            ));
+        }
+
+        private JSONRowIterator(InputStream input) throws IOException {
+            try {
+                this.parser = Json.createParser(input);
+
+                if (!this.parser.hasNext() || this.parser.next() != JsonParser.Event.START_ARRAY) {
+                    this.parser.close();
+                    throw new IOException("The file does not contain a JSON array");
+                }
+            }
+
+            catch (JsonException e) {
+                input.close();
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        protected CompositeNode readRow(String key) throws IOException {
+            try {
+                JsonParser.Event event = this.parser.next();
+
+                if (event == JsonParser.Event.END_ARRAY) {
+                    return null;
+                }
+
+                if (event != JsonParser.Event.START_OBJECT) {
+                    throw new IOException("Element " + key + " of the JSON array is not an object");
+                }
+
+                return this.readObject(this.parser, key);
+            }
+
+            catch (JsonException | NoSuchElementException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            this.parser.close();
+        }
+    }
+
+    /**
+     * Iterator that reads a JSON Lines file, converting the object on every line to a row.
+     * Empty lines are skipped.
+     */
+    private class JSONLinesRowIterator extends JSONRowReader {
+
+        private final BufferedReader reader;
+
+        private JSONLinesRowIterator() throws IOException {
+            this(Channels.newInputStream(FileChannel.open(filePath, StandardOpenOption.READ)));
+        }
+
+        private JSONLinesRowIterator(InputStream input) {
+            this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        @Override
+        protected CompositeNode readRow(String key) throws IOException {
+            String line = this.reader.readLine();
+
+            while (line != null && line.isBlank()) {
+                line = this.reader.readLine();
+            }
+
+            if (line == null) {
+                return null;
+            }
+
+            try (JsonParser parser = Json.createParser(new StringReader(line))) {
+                if (parser.next() != JsonParser.Event.START_OBJECT) {
+                    throw new IOException("Line " + key + " does not contain a JSON object");
+                }
+
+                return this.readObject(parser, key);
+            }
+
+            catch (JsonException | NoSuchElementException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.reader.close();
+        }
+    }
+
+    /**
+     * Iterator that parses the parts of the JSON file on a ForkJoinPool and returns their rows in file order.
+     * Every part is parsed by its own JSON iterator, so its rows get the types of the first object
+     * with the same members in that part. A schema that differs from the one of the first object with those
+     * members in the entire file is replaced, so the types are the same as those of a sequential read.
+     * Rows are keyed by the iterator as they are returned, so the numbering continues across the parts.
+     */
+    private class ChunkedRowIterator extends RowIterator {
+
+        private final FileChannel channel;
+        private final ForkJoinPool pool;
+        private final JSONSplitter splitter;
+        private final ArrayDeque<ForkJoinTask<List<CompositeNode>>> pending;
+        private final HashMap<List<String>, RowSchema> schemas;
+        private Iterator<CompositeNode> part;
+
+        private ChunkedRowIterator(ForkJoinPool pool) throws IOException {
+            this.channel = FileChannel.open(filePath, StandardOpenOption.READ);
+            this.pool = pool;
+            this.pending = new ArrayDeque<>();
+            this.schemas = new HashMap<>();
+            this.part = Collections.emptyIterator();
+
+            try {
+                this.splitter = new JSONSplitter(this.channel, jsonLines);
+            }
+
+            catch (IOException e) {
+                this.channel.close();
+                throw e;
+            }
+        }
+
+        @Override
+        protected CompositeNode readRow(String key) throws IOException {
+            while (!this.part.hasNext()) {
+                while (this.pending.size() <= this.pool.getParallelism()) {
+                    long[] range = this.splitter.nextPart(CHUNK_SIZE);
+
+                    if (range == null) {
+                        break;
+                    }
+
+                    this.pending.add(this.pool.submit(() -> this.readPart(range[0], range[1])));
+                }
+
+                if (this.pending.isEmpty()) {
+                    return null;
+                }
+
+                this.part = this.pending.poll().join().iterator();
+            }
+
+            CompositeNode next = this.part.next();
+            if (!(next instanceof RowNode row)) {
+                next.setKey(key);
+                return next;
+            }
+
+            RowSchema schema = this.schemas.putIfAbsent(row.getSchema().getColumns(), row.getSchema());
+
+            if (schema == null || schema.equals(row.getSchema())) {
+                row.setKey(key);
+                return row;
+            }
+
+            String[] values = new String[schema.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = row.getValue(i);
+            }
+
+            return new RowNode(key, schema, values);
+        }
+
+        /**
+         * Parse all rows of a single part of the file.
+         * The elements of a part of an array are parsed as an array of their own.
+         *
+         * @param start the position in the file where the part starts
+         * @param end the position in the file where the part ends
+         * @return the rows of the part, in file order
+         */
+        private List<CompositeNode> readPart(long start, long end) {
+            try {
+                int offset = jsonLines ? 0 : 1;
+
+                if (end - start > Integer.MAX_VALUE - 2 * offset) {
+                    throw new IOException("A part of the JSON file exceeds the maximum size");
+                }
+
+                byte[] content = new byte[(int) (end - start) + 2 * offset];
+                ByteBuffer buffer = ByteBuffer.wrap(content, offset, (int) (end - start));
+
+                while (buffer.hasRemaining()) {
+                    if (this.channel.read(buffer, start + buffer.position() - offset) < 0) {
+                        throw new IOException("The JSON file ended unexpectedly");
+                    }
+                }
+
+                if (!jsonLines) {
+                    content[0] = '[';
+                    content[content.length - 1] = ']';
+                }
+
+                InputStream input = new ByteArrayInputStream(content);
+                List<CompositeNode> rows = new ArrayList<>();
+
+                try (RowIterator iterator = jsonLines ? new JSONLinesRowIterator(input) : new JSONRowIterator(input)) {
+                    iterator.forEachRemaining(rows::add);
+                }
+
+                return rows;
+            }
+
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            catch (UncheckedIOException e) {
+                throw new UncheckedIOException(
+                    new IOException("The part of the JSON file starting at byte " + start + " is invalid", e.getCause())
+                );
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (ForkJoinTask<List<CompositeNode>> task : this.pending) {
+                task.cancel(true);
+            }
+
+            this.pending.clear();
+            this.channel.close();
+        }
     }
-}
\ No newline at end of file
+}
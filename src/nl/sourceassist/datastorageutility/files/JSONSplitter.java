@@ -0,0 +1,233 @@
+package nl.sourceassist.datastorageutility.files;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * JSONSplitter divides a UTF-8 encoded JSON file into parts of whole elements, which can be parsed independently.
+ * For a top-level array, a structural scan tracks the nesting depth and whether it is inside a string,
+ * including escaped quotes, so only the commas separating the elements of the array end a part.
+ * For JSON Lines, every line ending ends an element, since a line ending can not appear inside a JSON value.
+ * The scan only looks at single bytes and never decodes a value, so it is much cheaper than parsing the file.
+ * Parts are found one at a time, which allows parsing the first parts while the rest of the file is scanned.
+ */
+final class JSONSplitter {
+
+    /**
+     * The amount of bytes mapped into memory at once while scanning.
+     */
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The byte order mark some editors place at the start of a UTF-8 file.
+     */
+    private static final byte[] BYTE_ORDER_MARK = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+    private static final byte QUOTE = '"';
+    private static final byte BACKSLASH = '\\';
+    private static final byte COMMA = ',';
+    private static final byte LINE_FEED = '\n';
+
+    /**
+     * The channel of the file that is scanned.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Whether the file holds an element per line instead of a single array.
+     */
+    private final boolean jsonLines;
+
+    /**
+     * The size of the file.
+     */
+    private final long end;
+
+    /**
+     * The part of the file currently mapped into memory.
+     */
+    private MappedByteBuffer window;
+
+    /**
+     * The position in the file of the first byte in the window.
+     */
+    private long windowStart;
+
+    /**
+     * The position in the file of the next byte to scan.
+     */
+    private long position;
+
+    /**
+     * The position in the file where the next part starts.
+     */
+    private long partStart;
+
+    /**
+     * The nesting depth of arrays and objects at the current position, 1 inside the top-level array.
+     */
+    private int depth;
+
+    /**
+     * Whether the current position is inside a string.
+     */
+    private boolean inString;
+
+    /**
+     * Whether the previous byte was a backslash escaping the current byte of a string.
+     */
+    private boolean escaped;
+
+    /**
+     * Whether the last part has been returned.
+     */
+    private boolean finished;
+
+    /**
+     * Create a splitter positioned at the first element of the file.
+     *
+     * @param channel the channel of the file to split
+     * @param jsonLines whether the file holds an element per line instead of a single array
+     * @throws IOException whenever the file can not be read or does not start with an array
+     */
+    JSONSplitter(FileChannel channel, boolean jsonLines) throws IOException {
+        this.channel = channel;
+        this.jsonLines = jsonLines;
+        this.end = channel.size();
+        this.map(0);
+
+        if (!jsonLines) {
+            this.skipByteOrderMark();
+
+            while (this.position < this.end && Character.isWhitespace(this.byteAt(this.position))) {
+                this.position++;
+            }
+
+            if (this.position >= this.end || this.byteAt(this.position) != '[') {
+                throw new IOException("The file does not contain a JSON array");
+            }
+
+            this.position++;
+            this.depth = 1;
+        }
+
+        this.partStart = this.position;
+    }
+
+    /**
+     * Find the next part of the file.
+     * A part ends at the first element boundary after it has reached the minimum size, or at the end of the elements.
+     * For an array, the part excludes the commas around it and the closing bracket.
+     *
+     * @param minimumSize the minimum amount of bytes of a part that is not the last part
+     * @return the start and end position of the part in the file, null if no parts are left
+     * @throws IOException whenever the file can not be read or an array is not closed
+     */
+    long[] nextPart(long minimumSize) throws IOException {
+        if (this.finished) {
+            return null;
+        }
+
+        long start = this.partStart;
+
+        while (this.position < this.end) {
+            byte current = this.byteAt(this.position);
+
+            if (this.jsonLines) {
+                if (current == LINE_FEED && this.position + 1 - start >= minimumSize) {
+                    this.partStart = ++this.position;
+                    return new long[] { start, this.partStart };
+                }
+            }
+
+            else if (this.inString) {
+                if (this.escaped) {
+                    this.escaped = false;
+                }
+
+                else if (current == BACKSLASH) {
+                    this.escaped = true;
+                }
+
+                else if (current == QUOTE) {
+                    this.inString = false;
+                }
+            }
+
+            else if (current == QUOTE) {
+                this.inString = true;
+            }
+
+            else if (current == '[' || current == '{') {
+                this.depth++;
+            }
+
+            else if (current == ']' || current == '}') {
+                if (--this.depth == 0) {
+                    this.finished = true;
+                    return new long[] { start, this.position };
+                }
+            }
+
+            else if (current == COMMA && this.depth == 1 && this.position - start >= minimumSize) {
+                this.partStart = ++this.position;
+                return new long[] { start, this.position - 1 };
+            }
+
+            this.position++;
+        }
+
+        if (!this.jsonLines) {
+            throw new IOException("The JSON array is not closed");
+        }
+
+        this.finished = true;
+        return start < this.end ? new long[] { start, this.end } : null;
+    }
+
+    /**
+     * Get a byte of the file, moving the window when the byte is outside of it.
+     *
+     * @param filePosition the position of the byte in the file
+     * @return the byte at the position
+     * @throws IOException whenever the file can not be mapped into memory
+     */
+    private byte byteAt(long filePosition) throws IOException {
+        if (filePosition - this.windowStart >= this.window.limit()) {
+            this.map(filePosition);
+        }
+
+        return this.window.get((int) (filePosition - this.windowStart));
+    }
+
+    /**
+     * Map a new window of the file into memory.
+     *
+     * @param start the position in the file where the window starts
+     * @throws IOException whenever the file can not be mapped into memory
+     */
+    private void map(long start) throws IOException {
+        this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, this.end - start));
+        this.windowStart = start;
+    }
+
+    /**
+     * Skip the UTF-8 byte order mark at the start of the file.
+     *
+     * @throws IOException whenever the file can not be read
+     */
+    private void skipByteOrderMark() throws IOException {
+        if (this.end < BYTE_ORDER_MARK.length) {
+            return;
+        }
+
+        for (int i = 0; i < BYTE_ORDER_MARK.length; i++) {
+            if (this.byteAt(i) != BYTE_ORDER_MARK[i]) {
+                return;
+            }
+        }
+
+        this.position = BYTE_ORDER_MARK.length;
+    }
+}
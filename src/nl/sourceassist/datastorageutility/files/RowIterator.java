@@ -0,0 +1,119 @@
+package nl.sourceassist.datastorageutility.files;
+
+import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * RowIterator is the base of the streaming read mode of the File implementations.
+ * Rows are read from the underlying source one at a time, only when they are requested.
+ * Each row is keyed by its row number, starting at 0.
+ */
+abstract class RowIterator implements Iterator<CompositeNode>, Closeable {
+
+    /**
+     * The row that has been read ahead by hasNext(), null if no row is waiting.
+     */
+    private CompositeNode next;
+
+    /**
+     * Whether the underlying source has run out of rows.
+     */
+    private boolean finished;
+
+    /**
+     * The number of the next row to be read, used as its key.
+     */
+    private int rowNumber;
+
+    /**
+     * Create a RowIterator of which the first row gets the key 0.
+     */
+    protected RowIterator() {
+        this(0);
+    }
+
+    /**
+     * Create a RowIterator of which the first row gets the provided number as key.
+     *
+     * @param firstRowNumber the number of the first row read by this iterator
+     */
+    protected RowIterator(int firstRowNumber) {
+        this.rowNumber = firstRowNumber;
+    }
+
+    /**
+     * Read the next row from the underlying source.
+     *
+     * @param key the key the row node should get
+     * @return the next row, null if no rows are left
+     * @throws IOException whenever the underlying source can not be read
+     */
+    protected abstract CompositeNode readRow(String key) throws IOException;
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean hasNext() {
+        if (this.next == null && !this.finished) {
+            try {
+                this.next = this.readRow(String.valueOf(this.rowNumber));
+            }
+
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            if (this.next == null) {
+                this.finished = true;
+            }
+
+            else {
+                this.rowNumber++;
+            }
+        }
+
+        return this.next != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompositeNode next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        CompositeNode row = this.next;
+        this.next = null;
+        return row;
+    }
+
+    /**
+     * Wrap the iterator in a sequential stream.
+     * Closing the stream closes the iterator and with it the underlying source.
+     *
+     * @return a lazily populated stream of the rows
+     */
+    Stream<CompositeNode> stream() {
+        Spliterator<CompositeNode> spliterator = Spliterators.spliteratorUnknownSize(
+            this, Spliterator.ORDERED | Spliterator.NONNULL
+        );
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                this.close();
+            }
+
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,451 @@
+package nl.sourceassist.datastorageutility.files;
+
+import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
+import nl.sourceassist.datastorageutility.datastructure.SnapshotReader;
+import nl.sourceassist.datastorageutility.datastructure.SnapshotWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * The SnapshotCache keeps the rows of files that have been read as binary snapshots in a directory.
+ * A snapshot is used instead of parsing the file as long as the path, size, modification time and checksum of the
+ * contents of the file, and the settings it is read with, are unchanged. Snapshots are read through a memory mapping.
+ * Whenever a file is parsed completely, its rows are written to a new snapshot along the way.
+ * The directory is kept below a maximum size by removing the snapshots that were used longest ago,
+ * their modification time is updated whenever they are used.
+ */
+public class SnapshotCache {
+
+    /**
+     * The first bytes of every snapshot.
+     */
+    private static final int MAGIC = 0x44535553;
+
+    /**
+     * The version of the snapshot format, snapshots of other versions are ignored.
+     */
+    private static final byte VERSION = 2;
+
+    /**
+     * The extension of the snapshots in the directory.
+     */
+    private static final String EXTENSION = ".snapshot";
+
+    /**
+     * The size of the buffers used to write snapshots and to compute checksums.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final Path directory;
+    private final long maximumSize;
+
+    /**
+     * Create a cache keeping its snapshots in a directory, the directory is created when it does not exist.
+     *
+     * @param directory the directory to keep the snapshots in
+     * @param maximumSize the amount of bytes the snapshots may take up together
+     * @throws IOException whenever the directory can not be created
+     */
+    public SnapshotCache(Path directory, long maximumSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Stream the rows of a file from its snapshot, or parse it when there is no valid snapshot.
+     * When the file is parsed, the rows are written to a new snapshot as they are returned.
+     * The snapshot is only kept when the stream has returned every row before it is closed.
+     *
+     * @param source the file to stream the rows of
+     * @param format a description of the settings the file is read with
+     * @param parser the parser of the file, used when there is no valid snapshot
+     * @return a stream of the rows of the file
+     */
+    public Stream<CompositeNode> stream(Path source, String format, Supplier<Stream<CompositeNode>> parser) {
+        Path snapshot = this.directory.resolve(nameOf(source, format));
+        Header header;
+
+        try {
+            header = Header.of(source, format);
+            Stream<CompositeNode> cached = this.open(snapshot, header);
+
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        catch (IOException e) {
+            System.out.println(e.toString());
+            return parser.get();
+        }
+
+        Stream<CompositeNode> rows = parser.get();
+
+        try {
+            return this.record(rows, snapshot, header);
+        }
+
+        catch (IOException e) {
+            System.out.println(e.toString());
+            return rows;
+        }
+    }
+
+    /**
+     * Open a snapshot and check whether it belongs to the current contents of the file.
+     *
+     * @param snapshot the path of the snapshot
+     * @param header the header describing the file as it is now
+     * @return the stream of the rows in the snapshot, null if there is no valid snapshot
+     * @throws IOException whenever the snapshot exists but can not be read
+     */
+    private Stream<CompositeNode> open(Path snapshot, Header header) throws IOException {
+        if (!Files.isRegularFile(snapshot)) {
+            return null;
+        }
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(snapshot)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        DataInputStream in = new DataInputStream(new MappedInputStream(buffer));
+
+        try {
+            if (!header.equals(Header.read(in))) {
+                return null;
+            }
+        }
+
+        catch (IOException e) {
+            return null;
+        }
+
+        Files.setLastModifiedTime(snapshot, FileTime.fromMillis(System.currentTimeMillis()));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+            new SnapshotReader(in), Spliterator.ORDERED | Spliterator.NONNULL
+        ), false);
+    }
+
+    /**
+     * Write the rows of a stream to a temporary snapshot as they are returned.
+     * Closing the stream after its last row moves the temporary snapshot in place, otherwise it is deleted.
+     * Rows that can not be written make the snapshot incomplete, but are returned as usual.
+     *
+     * @param rows the parsed rows of the file
+     * @param snapshot the path of the snapshot
+     * @param header the header describing the file
+     * @return the stream returning the same rows
+     * @throws IOException whenever the temporary snapshot can not be created
+     */
+    private Stream<CompositeNode> record(Stream<CompositeNode> rows, Path snapshot, Header header) throws IOException {
+        Recorder recorder = new Recorder(rows.iterator(), snapshot, header);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+            recorder, Spliterator.ORDERED | Spliterator.NONNULL
+        ), false).onClose(rows::close).onClose(recorder::close);
+    }
+
+    /**
+     * Remove the snapshots used longest ago until the directory fits the maximum size.
+     * Snapshots that can not be removed, for example because they are in use, are skipped.
+     *
+     * @param keep the snapshot that has just been written, which is never removed
+     * @throws IOException whenever the directory can not be listed
+     */
+    private synchronized void evict(Path keep) throws IOException {
+        List<Path> snapshots;
+        try (Stream<Path> files = Files.list(this.directory)) {
+            snapshots = new ArrayList<>(files.filter(file -> file.toString().endsWith(EXTENSION)).toList());
+        }
+
+        long totalSize = 0;
+        for (Path file : snapshots) {
+            totalSize += Files.size(file);
+        }
+
+        snapshots.sort(Comparator.comparing(SnapshotCache::lastUsed));
+
+        for (Path file : snapshots) {
+            if (totalSize <= this.maximumSize) {
+                return;
+            }
+
+            if (!file.equals(keep)) {
+                long size = Files.size(file);
+
+                try {
+                    Files.delete(file);
+                    totalSize -= size;
+                }
+
+                catch (IOException e) {
+                    System.out.println(e.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the moment a snapshot was last used.
+     *
+     * @param snapshot the path of the snapshot
+     * @return the modification time of the snapshot, the epoch if it can not be read
+     */
+    private static FileTime lastUsed(Path snapshot) {
+        try {
+            return Files.getLastModifiedTime(snapshot);
+        }
+
+        catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Get the name of the snapshot of a file, derived from its absolute path and the settings it is read with.
+     *
+     * @param source the file
+     * @param format a description of the settings the file is read with
+     * @return the name of the snapshot
+     */
+    private static String nameOf(Path source, String format) {
+        String identity = source.toAbsolutePath().normalize() + "\n" + format;
+        return UUID.nameUUIDFromBytes(identity.getBytes(StandardCharsets.UTF_8)) + EXTENSION;
+    }
+
+    /**
+     * The description of a file a snapshot belongs to, written at the start of the snapshot.
+     *
+     * @param path the absolute path of the file
+     * @param format a description of the settings the file is read with
+     * @param size the size of the file in bytes
+     * @param modified the modification time of the file in milliseconds
+     * @param checksum the CRC32C checksum of the contents of the file
+     */
+    private record Header(String path, String format, long size, long modified, long checksum) {
+
+        /**
+         * Describe a file as it is now, reading it completely to compute the checksum.
+         *
+         * @param source the file
+         * @param format a description of the settings the file is read with
+         * @return the header of the file
+         * @throws IOException whenever the file can not be read
+         */
+        private static Header of(Path source, String format) throws IOException {
+            CRC32C checksum = new CRC32C();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+            try (FileChannel channel = FileChannel.open(source)) {
+                while (channel.read(buffer.clear()) > 0) {
+                    checksum.update(buffer.flip());
+                }
+            }
+
+            return new Header(
+                source.toAbsolutePath().normalize().toString(),
+                format,
+                Files.size(source),
+                Files.getLastModifiedTime(source).toMillis(),
+                checksum.getValue()
+            );
+        }
+
+        /**
+         * Read the header at the start of a snapshot.
+         *
+         * @param in the input positioned at the start of the snapshot
+         * @return the header, null if the snapshot is not of the current version
+         * @throws IOException whenever the snapshot can not be read
+         */
+        private static Header read(DataInputStream in) throws IOException {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return null;
+            }
+
+            return new Header(in.readUTF(), in.readUTF(), in.readLong(), in.readLong(), in.readLong());
+        }
+
+        /**
+         * Write the header at the start of a snapshot.
+         *
+         * @param out the output positioned at the start of the snapshot
+         * @throws IOException whenever the output can not be written to
+         */
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeUTF(this.path);
+            out.writeUTF(this.format);
+            out.writeLong(this.size);
+            out.writeLong(this.modified);
+            out.writeLong(this.checksum);
+        }
+    }
+
+    /**
+     * An iterator returning the parsed rows of a file, writing each row to a temporary snapshot before returning it.
+     * Rows are written before they are handed out, so later changes to them do not end up in the snapshot.
+     */
+    private final class Recorder implements Iterator<CompositeNode> {
+        private final Iterator<CompositeNode> rows;
+        private final Path snapshot;
+        private final Path temporary;
+        private DataOutputStream out;
+        private SnapshotWriter writer;
+        private boolean complete;
+
+        private Recorder(Iterator<CompositeNode> rows, Path snapshot, Header header) throws IOException {
+            this.rows = rows;
+            this.snapshot = snapshot;
+            this.temporary = Files.createTempFile(directory, "snapshot", ".tmp");
+
+            try {
+                this.out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(this.temporary), BUFFER_SIZE)
+                );
+                this.writer = new SnapshotWriter(this.out);
+                header.write(this.out);
+            }
+
+            catch (IOException e) {
+                this.abandon();
+                throw e;
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = this.rows.hasNext();
+            this.complete = !hasNext;
+            return hasNext;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public CompositeNode next() {
+            CompositeNode row = this.rows.next();
+
+            if (this.writer != null) {
+                try {
+                    if (!this.writer.write(row)) {
+                        this.abandon();
+                    }
+                }
+
+                catch (IOException e) {
+                    System.out.println(e.toString());
+                    this.abandon();
+                }
+            }
+
+            return row;
+        }
+
+        /**
+         * Move the snapshot in place if every row has been written, otherwise delete it.
+         */
+        private void close() {
+            if (this.writer == null) {
+                return;
+            }
+
+            if (!this.complete) {
+                this.abandon();
+                return;
+            }
+
+            try {
+                this.writer.finish();
+                this.out.close();
+                this.writer = null;
+                Files.move(
+                    this.temporary, this.snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE
+                );
+                evict(this.snapshot);
+            }
+
+            catch (IOException e) {
+                System.out.println(e.toString());
+                this.abandon();
+            }
+        }
+
+        /**
+         * Stop writing the snapshot and delete what has been written so far.
+         */
+        private void abandon() {
+            this.writer = null;
+
+            try {
+                if (this.out != null) {
+                    this.out.close();
+                }
+
+                Files.deleteIfExists(this.temporary);
+            }
+
+            catch (IOException e) {
+                System.out.println(e.toString());
+            }
+        }
+    }
+
+    /**
+     * An input stream reading the bytes of a memory mapped snapshot.
+     */
+    private static final class MappedInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private MappedInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int count = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
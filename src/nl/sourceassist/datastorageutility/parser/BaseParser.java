@@ -8,6 +8,7 @@ import nl.sourceassist.datastorageutility.datastructure.LeafNode;
  * BaseParser is an abstract class meant to simplify the processing of nodes.
  * It handles the base functionality of the process function,
  * while allowing subclasses to define functionality for composite and leaf nodes separately.
+ * Processing a node processes its entire subtree, the chain is executed as a compiled ParserPipeline.
  */
 public abstract class BaseParser implements Parser {
     /**
@@ -16,6 +17,11 @@ public abstract class BaseParser implements Parser {
      */
     private final Parser parent;
 
+    /**
+     * The chain ending in this parser compiled into a pipeline, created when the first node is processed.
+     */
+    private ParserPipeline pipeline;
+
     /**
      * Create an instance of BaseParser.
      * Creating it sets the parent of the Parser.
@@ -26,14 +32,40 @@ public abstract class BaseParser implements Parser {
         this.parent = parent;
     }
 
-    /** {@inheritDoc} **/
+    /**
+     * Perform the operations of this parser and its parents on a node and every node below it.
+     * The subtree is walked once, every node gets all operations applied when it is visited.
+     *
+     * @param target the target node to parse
+     * @return the updated node.
+     */
     @Override
     public IdentifiableNode process(IdentifiableNode target) {
-        IdentifiableNode node = target instanceof CompositeNode
-            ? this.handleCompositeNode((CompositeNode) target)
-            : this.handleLeadNode((LeafNode) target);
+        if (this.pipeline == null) {
+            this.pipeline = ParserPipeline.compile(this);
+        }
+
+        return this.pipeline.process(target);
+    }
 
-        return this.parent.process(node);
+    /**
+     * Get the parent parser, which is applied after this one.
+     *
+     * @return the parent of this parser
+     */
+    Parser getParent() {
+        return this.parent;
+    }
+
+    /**
+     * Whether this parser only changes the keys of nodes, leaving their data alone.
+     * The cells of a table share the name of their column, so a ParserPipeline applies such parsers
+     * to the name of every column once, instead of to every cell.
+     *
+     * @return true if the parser only changes keys, false by default
+     */
+    protected boolean changesKeysOnly() {
+        return false;
     }
 
     /**
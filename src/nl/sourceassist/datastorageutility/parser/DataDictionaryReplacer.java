@@ -0,0 +1,51 @@
+package nl.sourceassist.datastorageutility.parser;
+
+import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
+import nl.sourceassist.datastorageutility.datastructure.LeafNode;
+
+import java.util.Map;
+
+/**
+ * The DataDictionaryReplacer is a decorator parser that replaces every string of a dictionary in a node's data.
+ * All strings are replaced in a single scan of the data, the data is only changed when something matches.
+ * Overlapping matches are resolved leftmost-longest: the match starting first wins, then the longest.
+ * Whenever the provided node is a compositeNode, it is skipped, its leaf nodes are processed instead.
+ */
+public class DataDictionaryReplacer extends BaseParser {
+
+    /**
+     * The automaton the dictionary is compiled into.
+     */
+    private final ReplacementAutomaton automaton;
+
+    /**
+     * Create an instance of a parser that replaces the strings of a dictionary in a node's data.
+     *
+     * @param parent the parent parser, the list needs to end with an instance of NodeParser
+     * @param dictionary the strings to look for, mapped to the strings to replace them with
+     * @throws IllegalArgumentException whenever the dictionary contains an empty string to look for
+     */
+    public DataDictionaryReplacer(Parser parent, Map<String, String> dictionary) {
+        super(parent);
+        this.automaton = new ReplacementAutomaton(dictionary);
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    protected CompositeNode handleCompositeNode(CompositeNode target) {
+        return target;
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    protected LeafNode handleLeadNode(LeafNode target) {
+        String data = target.getData();
+        String replaced = this.automaton.replace(data);
+
+        if (replaced != data) {
+            target.setData(replaced);
+        }
+
+        return target;
+    }
+}
@@ -0,0 +1,49 @@
+package nl.sourceassist.datastorageutility.parser;
+
+import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
+import nl.sourceassist.datastorageutility.datastructure.LeafNode;
+
+/**
+ * The DataRegexReplacer is a decorator parser that replaces every match of a regular expression in a node's data.
+ * The replacement may refer to capture groups of the expression, for example $1.
+ * Whenever the provided node is a compositeNode, it is skipped, its leaf nodes are processed instead.
+ */
+public class DataRegexReplacer extends BaseParser {
+
+    /**
+     * The compiled regular expression and its replacement.
+     */
+    private final RegexReplacement replacement;
+
+    /**
+     * Create an instance of a parser that replaces the matches of a regular expression in a node's data.
+     *
+     * @param parent the parent parser, the list needs to end with an instance of NodeParser
+     * @param regex the regular expression to look for
+     * @param replaceWith the string to replace matches with, which may refer to capture groups
+     * @throws java.util.regex.PatternSyntaxException whenever the regular expression is not valid
+     */
+    public DataRegexReplacer(Parser parent, String regex, String replaceWith) {
+        super(parent);
+        this.replacement = new RegexReplacement(regex, replaceWith);
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    protected CompositeNode handleCompositeNode(CompositeNode target) {
+        return target;
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    protected LeafNode handleLeadNode(LeafNode target) {
+        String data = target.getData();
+        String replaced = this.replacement.replace(data);
+
+        if (replaced != data) {
+            target.setData(replaced);
+        }
+
+        return target;
+    }
+}
@@ -5,7 +5,8 @@ import nl.sourceassist.datastorageutility.datastructure.LeafNode;
 
 /**
  * The DataStringReplacer is a decorator parser that replaces (a part of) a string in a node's data.
- * Whenever the provided node is a compositeNode, it is skipped.
+ * Whenever the provided node is a compositeNode, it is skipped, its leaf nodes are processed instead.
+ * Nodes without data are left alone, and the data is only changed when something has been replaced.
  */
 public class DataStringReplacer extends BaseParser {
 
@@ -41,7 +42,17 @@ public class DataStringReplacer extends BaseParser {
     /** {@inheritDoc} **/
     @Override
     protected LeafNode handleLeadNode(LeafNode target) {
-        target.setData(target.getData().replace(this.toReplace, this.replaceWith));
+        String data = target.getData();
+        if (data == null) {
+            return target;
+        }
+
+        String replaced = data.replace(this.toReplace, this.replaceWith);
+
+        if (replaced != data) {
+            target.setData(replaced);
+        }
+
         return target;
     }
 }
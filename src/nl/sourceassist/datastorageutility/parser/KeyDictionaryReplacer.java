@@ -0,0 +1,68 @@
+package nl.sourceassist.datastorageutility.parser;
+
+import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
+import nl.sourceassist.datastorageutility.datastructure.IdentifiableNode;
+import nl.sourceassist.datastorageutility.datastructure.LeafNode;
+
+import java.util.Map;
+
+/**
+ * The KeyDictionaryReplacer is a decorator parser that replaces every string of a dictionary in a node's key.
+ * All strings are replaced in a single scan of the key, the key is only changed when something matches.
+ * Overlapping matches are resolved leftmost-longest: the match starting first wins, then the longest.
+ */
+public class KeyDictionaryReplacer extends BaseParser {
+
+    /**
+     * The automaton the dictionary is compiled into.
+     */
+    private final ReplacementAutomaton automaton;
+
+    /**
+     * Create an instance of a parser that replaces the strings of a dictionary in a node's key.
+     *
+     * @param parent the parent parser, the list needs to end with an instance of NodeParser
+     * @param dictionary the strings to look for, mapped to the strings to replace them with
+     * @throws IllegalArgumentException whenever the dictionary contains an empty string to look for
+     */
+    public KeyDictionaryReplacer(Parser parent, Map<String, String> dictionary) {
+        super(parent);
+        this.automaton = new ReplacementAutomaton(dictionary);
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    protected CompositeNode handleCompositeNode(CompositeNode target) {
+        return (CompositeNode) this.changeTargetKey(target);
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    protected LeafNode handleLeadNode(LeafNode target) {
+        return (LeafNode) this.changeTargetKey(target);
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    protected boolean changesKeysOnly() {
+        return true;
+    }
+
+    /**
+     * Helper function that changes the key of a node whenever it contains a string of the dictionary.
+     * This action is the same for both types of nodes.
+     *
+     * @param target the node to change the key of
+     * @return a reference to the node of which the key was changed
+     */
+    private IdentifiableNode changeTargetKey(IdentifiableNode target) {
+        String key = target.getKey();
+        String replaced = this.automaton.replace(key);
+
+        if (replaced != key) {
+            target.setKey(replaced);
+        }
+
+        return target;
+    }
+}
@@ -0,0 +1,66 @@
+package nl.sourceassist.datastorageutility.parser;
+
+import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
+import nl.sourceassist.datastorageutility.datastructure.IdentifiableNode;
+import nl.sourceassist.datastorageutility.datastructure.LeafNode;
+
+/**
+ * The KeyRegexReplacer is a decorator parser that replaces every match of a regular expression in a node's key.
+ * The replacement may refer to capture groups of the expression, for example $1.
+ */
+public class KeyRegexReplacer extends BaseParser {
+
+    /**
+     * The compiled regular expression and its replacement.
+     */
+    private final RegexReplacement replacement;
+
+    /**
+     * Create an instance of a parser that replaces the matches of a regular expression in a node's key.
+     *
+     * @param parent the parent parser, the list needs to end with an instance of NodeParser
+     * @param regex the regular expression to look for
+     * @param replaceWith the string to replace matches with, which may refer to capture groups
+     * @throws java.util.regex.PatternSyntaxException whenever the regular expression is not valid
+     */
+    public KeyRegexReplacer(Parser parent, String regex, String replaceWith) {
+        super(parent);
+        this.replacement = new RegexReplacement(regex, replaceWith);
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    protected CompositeNode handleCompositeNode(CompositeNode target) {
+        return (CompositeNode) this.changeTargetKey(target);
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    protected LeafNode handleLeadNode(LeafNode target) {
+        return (LeafNode) this.changeTargetKey(target);
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+    protected boolean changesKeysOnly() {
+        return true;
+    }
+
+    /**
+     * Helper function that changes the key of a node whenever the regular expression matches it.
+     * This action is the same for both types of nodes.
+     *
+     * @param target the node to change the key of
+     * @return a reference to the node of which the key was changed
+     */
+    private IdentifiableNode changeTargetKey(IdentifiableNode target) {
+        String key = target.getKey();
+        String replaced = this.replacement.replace(key);
+
+        if (replaced != key) {
+            target.setKey(replaced);
+        }
+
+        return target;
+    }
+}
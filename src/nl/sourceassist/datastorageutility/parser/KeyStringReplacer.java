@@ -44,6 +44,12 @@ public class KeyStringReplacer extends BaseParser {
         return (LeafNode) this.changeTargetKey(target);
     }
 
+    /** {@inheritDoc} **/
+    @Override
+    protected boolean changesKeysOnly() {
+        return true;
+    }
+
     /**
      * Helper function that changes the key of a node.
      * This action is the same for both types of nodes.
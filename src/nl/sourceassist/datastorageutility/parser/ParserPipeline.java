@@ -0,0 +1,202 @@
+package nl.sourceassist.datastorageutility.parser;
+
+import nl.sourceassist.datastorageutility.datastructure.CompositeNode;
+import nl.sourceassist.datastorageutility.datastructure.IdentifiableNode;
+import nl.sourceassist.datastorageutility.datastructure.LeafNode;
+import nl.sourceassist.datastorageutility.datastructure.TableNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The ParserPipeline executes a chain of decorator parsers on an entire subtree.
+ * The chain is compiled into a flat array of steps, ordered from the outermost decorator to the innermost.
+ * The subtree is walked once, and every node visited has all steps applied to it before its children are visited.
+ * This means a chain of any length costs a single walk, without a stack frame per decorator.
+ */
+public final class ParserPipeline implements Parser {
+
+    /**
+     * The decorators of the chain in the order they are applied.
+     */
+    private final BaseParser[] steps;
+
+    /**
+     * The steps that only change keys, applied once to the name of every column of a table.
+     */
+    private final BaseParser[] columnSteps;
+
+    /**
+     * The steps that may change data, applied to every cell of a table.
+     */
+    private final BaseParser[] cellSteps;
+
+    /**
+     * The parser at the end of the chain, applied to the result of the walk.
+     */
+    private final Parser terminal;
+
+    /**
+     * Create a pipeline from already compiled steps.
+     *
+     * @param steps the decorators of the chain in the order they are applied
+     * @param terminal the parser at the end of the chain
+     */
+    private ParserPipeline(BaseParser[] steps, Parser terminal) {
+        this.steps = steps;
+        this.columnSteps = Arrays.stream(steps).filter(BaseParser::changesKeysOnly).toArray(BaseParser[]::new);
+        this.cellSteps = Arrays.stream(steps).filter(step -> !step.changesKeysOnly()).toArray(BaseParser[]::new);
+        this.terminal = terminal;
+    }
+
+    /**
+     * Compile a chain of decorator parsers into a pipeline.
+     *
+     * @param chain the outermost parser of the chain
+     * @return the pipeline executing the chain
+     */
+    public static ParserPipeline compile(Parser chain) {
+        if (chain instanceof ParserPipeline) {
+            return (ParserPipeline) chain;
+        }
+
+        List<BaseParser> steps = new ArrayList<>();
+        Parser parser = chain;
+
+        while (parser instanceof BaseParser) {
+            steps.add((BaseParser) parser);
+            parser = ((BaseParser) parser).getParent();
+        }
+
+        return new ParserPipeline(steps.toArray(BaseParser[]::new), parser);
+    }
+
+    /**
+     * Get the amount of steps in the pipeline.
+     *
+     * @return the amount of decorators that are applied to every node
+     */
+    public int size() {
+        return this.steps.length;
+    }
+
+    /**
+     * Apply every step to the target and to every node below it.
+     * Whenever a step replaces a child by another node, the replacement takes the place of the child.
+     *
+     * @param target the root of the subtree to parse
+     * @return the processed target, or the node it was replaced by
+     */
+    @Override
+    public IdentifiableNode process(IdentifiableNode target) {
+        return this.terminal.process(this.visit(target));
+    }
+
+    /**
+     * Apply the steps to a node, followed by its children.
+     *
+     * @param node the node to visit
+     * @return the processed node
+     */
+    private IdentifiableNode visit(IdentifiableNode node) {
+        IdentifiableNode result = this.apply(node, this.steps);
+
+        if (result instanceof TableNode) {
+            this.visitTable((TableNode) result);
+        }
+
+        else if (result instanceof CompositeNode composite) {
+            List<IdentifiableNode> replaced = null;
+            List<IdentifiableNode> replacements = null;
+
+            for (IdentifiableNode child : composite.getChildren()) {
+                IdentifiableNode processed = this.visit(child);
+
+                if (processed != child) {
+                    if (replaced == null) {
+                        replaced = new ArrayList<>();
+                        replacements = new ArrayList<>();
+                    }
+
+                    replaced.add(child);
+                    replacements.add(processed);
+                }
+            }
+
+            for (int i = 0; replaced != null && i < replaced.size(); i++) {
+                if (!composite.replaceChild(replaced.get(i), replacements.get(i))) {
+                    composite.removeChild(replaced.get(i));
+                    composite.addChild(replacements.get(i));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Apply the steps to the rows and cells of a table.
+     * All cells of a column share its name, so the steps that only change keys decide the new name
+     * of every column once. The other steps are applied to the cells in place, changing the columns directly.
+     * A column keeps its name when the new name is already taken by another column of the table.
+     *
+     * @param table the table to visit
+     */
+    private void visitTable(TableNode table) {
+        for (String name : new ArrayList<>(table.getColumnNames())) {
+            IdentifiableNode column = this.apply(new LeafNode(name, ""), this.columnSteps);
+
+            if (!column.getKey().equals(name) && !table.getColumnNames().contains(column.getKey())) {
+                table.renameColumn(name, column.getKey());
+            }
+        }
+
+        for (IdentifiableNode row : table.getChildren()) {
+            IdentifiableNode processedRow = this.apply(row, this.steps);
+
+            if (processedRow instanceof CompositeNode && this.cellSteps.length > 0) {
+                for (IdentifiableNode cell : ((CompositeNode) processedRow).getChildren()) {
+                    IdentifiableNode processed = this.apply(cell, this.cellSteps);
+
+                    if (processed != cell && !Objects.equals(processed.getData(), cell.getData())) {
+                        ((LeafNode) cell).setData(processed.getData());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply steps to a single node, without visiting its children.
+     * The steps only handle composite nodes and leaf nodes, any other node is returned unchanged.
+     *
+     * @param node the node to apply the steps to
+     * @param steps the steps to apply
+     * @return the processed node
+     */
+    private IdentifiableNode apply(IdentifiableNode node, BaseParser[] steps) {
+        if (node instanceof CompositeNode) {
+            CompositeNode composite = (CompositeNode) node;
+
+            for (BaseParser step : steps) {
+                composite = step.handleCompositeNode(composite);
+            }
+
+            return composite;
+        }
+
+        if (!(node instanceof LeafNode)) {
+            return node;
+        }
+
+        LeafNode leaf = (LeafNode) node;
+
+        for (BaseParser step : steps) {
+            leaf = step.handleLeadNode(leaf);
+        }
+
+        return leaf;
+    }
+}
@@ -0,0 +1,187 @@
+package nl.sourceassist.datastorageutility.parser;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The RegexReplacement replaces every match of a regular expression in a string.
+ * The pattern is compiled once, and every thread reuses a single matcher instead of creating one per string.
+ * Whenever the pattern requires a literal string, strings without it are skipped without running the matcher.
+ * The replacement may refer to capture groups, for example $1 or ${name}.
+ */
+final class RegexReplacement {
+
+    /**
+     * The characters that have a special meaning in a regular expression.
+     */
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    /**
+     * The compiled regular expression.
+     */
+    private final Pattern pattern;
+
+    /**
+     * The replacement of every match.
+     */
+    private final String replacement;
+
+    /**
+     * The literal string every match starts with, empty when the pattern does not start with one.
+     */
+    private final String prefix;
+
+    /**
+     * Whether the pattern is anchored to the start of the string, so the prefix has to be found there.
+     */
+    private final boolean anchored;
+
+    /**
+     * The matcher of every thread, reset to the string that is currently replaced in.
+     */
+    private final ThreadLocal<Matcher> matchers;
+
+    /**
+     * Compile a regular expression and its replacement.
+     *
+     * @param regex the regular expression to look for
+     * @param replacement the replacement of every match, which may refer to capture groups
+     * @throws java.util.regex.PatternSyntaxException whenever the regular expression is not valid
+     */
+    RegexReplacement(String regex, String replacement) {
+        this.pattern = Pattern.compile(regex);
+        this.replacement = replacement;
+        this.anchored = regex.startsWith("^");
+        this.prefix = literalPrefix(regex, this.anchored ? 1 : 0);
+        this.matchers = ThreadLocal.withInitial(() -> this.pattern.matcher(""));
+    }
+
+    /**
+     * Replace every match in a string.
+     *
+     * @param text the string to replace matches in
+     * @return the string with its matches replaced, the same instance if nothing matched
+     */
+    String replace(String text) {
+        if (text == null || !this.mightMatch(text)) {
+            return text;
+        }
+
+        Matcher matcher = this.matchers.get().reset(text);
+        if (!matcher.find()) {
+            matcher.reset("");
+            return text;
+        }
+
+        StringBuilder result = new StringBuilder(text.length() + 16);
+
+        do {
+            matcher.appendReplacement(result, this.replacement);
+        } while (matcher.find());
+
+        matcher.appendTail(result);
+        matcher.reset("");
+        return result.toString();
+    }
+
+    /**
+     * Check whether a string contains the literal prefix every match starts with.
+     *
+     * @param text the string to check
+     * @return false if the string can not contain a match, true otherwise
+     */
+    private boolean mightMatch(String text) {
+        if (this.prefix.isEmpty()) {
+            return true;
+        }
+
+        return this.anchored ? text.startsWith(this.prefix) : text.contains(this.prefix);
+    }
+
+    /**
+     * Determine the literal string every match of a regular expression starts with.
+     * Escaped punctuation counts as literal, a character followed by a quantifier does not.
+     * Expressions with an alternative at the top level have no common prefix.
+     *
+     * @param regex the regular expression
+     * @param start the position in the expression to start at
+     * @return the literal prefix, empty if there is none
+     */
+    private static String literalPrefix(String regex, int start) {
+        if (hasTopLevelAlternative(regex)) {
+            return "";
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        int position = start;
+
+        while (position < regex.length()) {
+            char current = regex.charAt(position);
+            int length = 1;
+
+            if (current == '\\') {
+                if (position + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(position + 1))) {
+                    break;
+                }
+
+                current = regex.charAt(position + 1);
+                length = 2;
+            }
+
+            else if (METACHARACTERS.indexOf(current) >= 0) {
+                break;
+            }
+
+            int next = position + length;
+            if (next < regex.length() && "?*{".indexOf(regex.charAt(next)) >= 0) {
+                break;
+            }
+
+            prefix.append(current);
+            position = next;
+        }
+
+        return prefix.toString();
+    }
+
+    /**
+     * Check whether a regular expression contains an alternative outside of any group or character class.
+     *
+     * @param regex the regular expression
+     * @return true if the expression has an alternative at the top level
+     */
+    private static boolean hasTopLevelAlternative(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+
+        for (int position = 0; position < regex.length(); position++) {
+            char current = regex.charAt(position);
+
+            if (current == '\\') {
+                position++;
+            }
+
+            else if (inClass) {
+                inClass = current != ']';
+            }
+
+            else if (current == '[') {
+                inClass = true;
+            }
+
+            else if (current == '(') {
+                depth++;
+            }
+
+            else if (current == ')') {
+                depth--;
+            }
+
+            else if (current == '|' && depth == 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,249 @@
+package nl.sourceassist.datastorageutility.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The ReplacementAutomaton replaces every occurrence of any string of a dictionary in a single scan.
+ * The strings to replace are compiled into an Aho-Corasick automaton: a trie with a failure link per state.
+ * Matches follow leftmost-longest semantics: of all matches, the one starting first wins,
+ * and of the matches starting at the same position, the longest wins. Matches never overlap.
+ * A new string is only created when something matches, otherwise the input is returned as is.
+ */
+final class ReplacementAutomaton {
+
+    /**
+     * The characters leading out of every state, sorted to allow a binary search.
+     */
+    private final char[][] labels;
+
+    /**
+     * The states the characters of the labels lead to.
+     */
+    private final int[][] targets;
+
+    /**
+     * The state to continue from whenever a state has no transition for a character.
+     */
+    private final int[] failures;
+
+    /**
+     * The length of the string leading to every state.
+     */
+    private final int[] depths;
+
+    /**
+     * For every state, the state of the longest string to replace that ends in it, -1 if none does.
+     */
+    private final int[] matches;
+
+    /**
+     * The replacement of every state that completes a string to replace, null for other states.
+     */
+    private final String[] replacements;
+
+    /**
+     * Compile a dictionary into an automaton.
+     *
+     * @param dictionary the strings to replace, mapped to their replacements, a null replacement removes the string
+     * @throws IllegalArgumentException whenever the dictionary contains an empty string to replace
+     */
+    ReplacementAutomaton(Map<String, String> dictionary) {
+        ArrayList<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        ArrayList<String> stateReplacements = new ArrayList<>();
+        ArrayList<Integer> stateDepths = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        stateReplacements.add(null);
+        stateDepths.add(0);
+
+        for (Map.Entry<String, String> entry : dictionary.entrySet()) {
+            if (entry.getKey().isEmpty()) {
+                throw new IllegalArgumentException("The strings to replace can not be empty");
+            }
+
+            int state = 0;
+            for (char character : entry.getKey().toCharArray()) {
+                Integer next = trie.get(state).get(character);
+
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(character, next);
+                    trie.add(new TreeMap<>());
+                    stateReplacements.add(null);
+                    stateDepths.add(stateDepths.get(state) + 1);
+                }
+
+                state = next;
+            }
+
+            stateReplacements.set(state, entry.getValue() == null ? "" : entry.getValue());
+        }
+
+        int size = trie.size();
+        this.labels = new char[size][];
+        this.targets = new int[size][];
+        this.failures = new int[size];
+        this.depths = new int[size];
+        this.matches = new int[size];
+        this.replacements = stateReplacements.toArray(String[]::new);
+
+        for (int state = 0; state < size; state++) {
+            TreeMap<Character, Integer> transitions = trie.get(state);
+            this.labels[state] = new char[transitions.size()];
+            this.targets[state] = new int[transitions.size()];
+            this.depths[state] = stateDepths.get(state);
+
+            int i = 0;
+            for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                this.labels[state][i] = transition.getKey();
+                this.targets[state][i++] = transition.getValue();
+            }
+        }
+
+        this.linkFailures();
+    }
+
+    /**
+     * Replace every match in a string.
+     * A match is final once no match can start at or before it anymore,
+     * after which scanning continues directly behind it.
+     *
+     * @param text the string to replace matches in
+     * @return the string with its matches replaced, the same instance if nothing matched
+     */
+    String replace(String text) {
+        if (text == null) {
+            return null;
+        }
+
+        StringBuilder result = null;
+        int copied = 0;
+        int state = 0;
+        int matchStart = -1;
+        int matchEnd = -1;
+        int matchState = -1;
+        int position = 0;
+
+        while (position < text.length() || matchStart >= 0) {
+            if (position < text.length()) {
+                state = this.next(state, text.charAt(position));
+            }
+
+            if (matchStart >= 0 && (position == text.length() || position - this.depths[state] + 1 > matchStart)) {
+                if (result == null) {
+                    result = new StringBuilder(text.length() + 16);
+                }
+
+                result.append(text, copied, matchStart).append(this.replacements[matchState]);
+                copied = matchEnd + 1;
+                position = copied;
+                state = 0;
+                matchStart = -1;
+                continue;
+            }
+
+            int match = this.matches[state];
+            if (match >= 0) {
+                int start = position - this.depths[match] + 1;
+
+                if (matchStart < 0 || start <= matchStart) {
+                    matchStart = start;
+                    matchEnd = position;
+                    matchState = match;
+                }
+            }
+
+            position++;
+        }
+
+        return result == null ? text : result.append(text, copied, text.length()).toString();
+    }
+
+    /**
+     * Follow the transition of a character, falling back along the failure links when a state has none.
+     *
+     * @param state the current state
+     * @param character the next character of the text
+     * @return the next state
+     */
+    private int next(int state, char character) {
+        while (true) {
+            int target = this.transition(state, character);
+
+            if (target >= 0) {
+                return target;
+            }
+
+            if (state == 0) {
+                return 0;
+            }
+
+            state = this.failures[state];
+        }
+    }
+
+    /**
+     * Get the state a character leads to from the trie of a state.
+     *
+     * @param state the state to leave
+     * @param character the character to follow
+     * @return the next state, -1 if the state has no transition for the character
+     */
+    private int transition(int state, char character) {
+        char[] stateLabels = this.labels[state];
+        int low = 0;
+        int high = stateLabels.length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+
+            if (stateLabels[middle] < character) {
+                low = middle + 1;
+            }
+
+            else if (stateLabels[middle] > character) {
+                high = middle - 1;
+            }
+
+            else {
+                return this.targets[state][middle];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Compute the failure link and longest match of every state, in breadth first order.
+     * The failure link of a state leads to the state of its longest proper suffix that is also in the trie.
+     */
+    private void linkFailures() {
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        this.matches[0] = -1;
+
+        for (int child : this.targets[0]) {
+            this.failures[child] = 0;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            this.matches[state] = this.replacements[state] != null ? state : this.matches[this.failures[state]];
+
+            for (int i = 0; i < this.labels[state].length; i++) {
+                int child = this.targets[state][i];
+                int fallback = this.failures[state];
+
+                while (fallback != 0 && this.transition(fallback, this.labels[state][i]) < 0) {
+                    fallback = this.failures[fallback];
+                }
+
+                int failure = this.transition(fallback, this.labels[state][i]);
+                this.failures[child] = failure >= 0 && failure != child ? failure : 0;
+                queue.add(child);
+            }
+        }
+    }
+}
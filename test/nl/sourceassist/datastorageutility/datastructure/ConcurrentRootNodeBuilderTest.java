@@ -0,0 +1,218 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.openmbean.KeyAlreadyExistsException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.StructureViolationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests the ConcurrentRootNodeBuilder, of which the checks have to hold while many threads add nodes at once.
+ */
+class ConcurrentRootNodeBuilderTest {
+    private static final int THREADS = 8;
+
+    /**
+     * Run a task on several threads at the same time and wait for all of them.
+     *
+     * @param task the task, receiving the number of the thread
+     * @return the results of the threads
+     * @throws Exception whenever a thread failed
+     */
+    private static List<Integer> runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>();
+
+        try {
+            for (int thread = 0; thread < THREADS; thread++) {
+                int number = thread;
+                futures.add(threads.submit((Callable<Integer>) () -> {
+                    start.await();
+                    return task.run(number);
+                }));
+            }
+
+            start.countDown();
+            List<Integer> results = new ArrayList<>();
+
+            for (Future<Integer> future : futures) {
+                results.add(future.get());
+            }
+
+            return results;
+        }
+
+        finally {
+            threads.shutdown();
+        }
+    }
+
+    /**
+     * A task run by every thread.
+     */
+    @FunctionalInterface
+    private interface ThreadTask {
+        int run(int thread) throws Exception;
+    }
+
+    @Test
+    void everyKeyIsClaimedOnceBelowEveryParent() throws Exception {
+        ConcurrentRootNodeBuilder builder = new ConcurrentRootNodeBuilder();
+        builder.addChild(new CompositeNode("file"));
+
+        List<Integer> added = runConcurrently(thread -> {
+            int count = 0;
+
+            for (int row = 0; row < 1_000; row++) {
+                try {
+                    builder.addChild(new CompositeNode(String.valueOf(row)), "file");
+                    builder.addChild(new LeafNode("thread", String.valueOf(thread)), "file/" + row);
+                    count++;
+                }
+
+                catch (KeyAlreadyExistsException e) {
+                    // Another thread added the row first, so this thread does not add a cell to it.
+                }
+            }
+
+            return count;
+        });
+
+        RootNode root = builder.freeze();
+        CompositeNode file = (CompositeNode) root.getChild("file");
+
+        assertEquals(1_000, added.stream().mapToInt(Integer::intValue).sum());
+        assertEquals(1_000, file.getChildren().size());
+        assertEquals(3, root.getDepth());
+
+        for (IdentifiableNode row : file.getChildren()) {
+            assertEquals(1, ((CompositeNode) row).getChildren().size());
+        }
+    }
+
+    @Test
+    void theNodesOfAThreadKeepTheirOrder() throws Exception {
+        ConcurrentRootNodeBuilder builder = new ConcurrentRootNodeBuilder();
+
+        runConcurrently(thread -> {
+            builder.addChild(new CompositeNode("file " + thread));
+
+            for (int row = 0; row < 500; row++) {
+                builder.addChild(new CompositeNode(String.valueOf(row)), "file " + thread);
+                builder.addChild(new LeafNode("row", String.valueOf(row)), "file " + thread + "/" + row);
+            }
+
+            return 0;
+        });
+
+        RootNode root = builder.freeze();
+        assertEquals(THREADS, root.getChildren().size());
+
+        for (IdentifiableNode file : root.getChildren()) {
+            int expected = 0;
+
+            for (IdentifiableNode row : ((CompositeNode) file).getChildren()) {
+                assertEquals(String.valueOf(expected++), ((CompositeNode) row).getChild("row").getData());
+            }
+
+            assertEquals(500, expected);
+        }
+    }
+
+    /**
+     * Build a file of five levels, one more than the structure of the depth test allows.
+     *
+     * @return the root node of the file
+     */
+    private static CompositeNode tooDeepFile() {
+        CompositeNode node = new CompositeNode("level 5");
+        node.addChild(new LeafNode("leaf", "data"));
+
+        for (int level = 4; level > 0; level--) {
+            CompositeNode parent = new CompositeNode("level " + level);
+            parent.addChild(node);
+            node = parent;
+        }
+
+        return node;
+    }
+
+    @Test
+    void theDepthIsCheckedWhenANodeIsAdded() throws Exception {
+        ConcurrentRootNodeBuilder builder = new ConcurrentRootNodeBuilder(4);
+        builder.addChild(new CompositeNode("file"));
+        builder.addChild(new CompositeNode("row"), "file");
+        builder.addChild(new CompositeNode("nested"), "file/row");
+
+        List<Integer> rejected = runConcurrently(thread -> {
+            int count = 0;
+
+            for (int i = 0; i < 100; i++) {
+                builder.addChild(new LeafNode(thread + " " + i, "fits"), "file/row/nested");
+
+                CompositeNode tooDeep = new CompositeNode("deep " + thread + " " + i);
+                tooDeep.addChild(new LeafNode("leaf", "data"));
+
+                try {
+                    builder.addChild(tooDeep, "file/row/nested");
+                }
+
+                catch (IndexOutOfBoundsException e) {
+                    count++;
+                }
+            }
+
+            return count;
+        });
+
+        assertEquals(THREADS * 100, rejected.stream().mapToInt(Integer::intValue).sum());
+        assertThrows(IndexOutOfBoundsException.class, () -> builder.addChild(tooDeepFile(), null));
+
+        RootNode root = builder.freeze();
+        assertEquals(4, root.getDepth());
+        assertEquals(THREADS * 100, ((CompositeNode) root.getChildByPath("file/row/nested")).getChildren().size());
+    }
+
+    @Test
+    void nodesATableRefusesAreRejectedWhenAdded() {
+        ConcurrentRootNodeBuilder builder = new ConcurrentRootNodeBuilder();
+        builder.addChild(new TableNode("table"));
+        builder.addChild(new CompositeNode("0"), "table");
+
+        assertThrows(StructureViolationException.class, () -> builder.addChild(new LeafNode("1", "cell"), "table"));
+        assertThrows(StructureViolationException.class,
+            () -> builder.addChild(new CompositeNode("nested"), "table/0"));
+        assertThrows(KeyAlreadyExistsException.class, () -> builder.addChild(new CompositeNode("0"), "table"));
+        assertThrows(StructureViolationException.class, () -> builder.addChild(new LeafNode("a", "b"), "missing"));
+
+        builder.addChild(new LeafNode("cell", "value"), "table/0");
+        RootNode root = builder.freeze();
+
+        assertEquals("value", root.getChildByPath("table/0/cell").getData());
+        assertThrows(IllegalStateException.class, () -> builder.addChild(new LeafNode("late", "data")));
+    }
+
+    @Test
+    void theChildrenANodeIsAddedWithCountAsDuplicates() {
+        ConcurrentRootNodeBuilder builder = new ConcurrentRootNodeBuilder();
+        CompositeNode file = new CompositeNode("file");
+        file.addChild(new LeafNode("existing", "data"));
+        builder.addChild(file);
+
+        assertThrows(KeyAlreadyExistsException.class, () -> builder.addChild(new LeafNode("existing", "other"), "file"));
+        assertThrows(KeyAlreadyExistsException.class, () -> builder.addChild(new CompositeNode("file")));
+
+        builder.addChild(new LeafNode("added", "data"), "file");
+        assertEquals(2, ((CompositeNode) builder.freeze().getChild("file")).getChildren().size());
+    }
+}
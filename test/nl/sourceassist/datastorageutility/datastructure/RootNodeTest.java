@@ -0,0 +1,134 @@
+package nl.sourceassist.datastorageutility.datastructure;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests the lookups of RootNode on the rows and cells of tables and rows,
+ * which should not take longer as the amount of rows grows.
+ */
+class RootNodeTest {
+    private static final RowSchema SCHEMA = new RowSchema("id", "name");
+
+    /**
+     * A row counting how often it is asked for one of its cells.
+     */
+    private static final class CountingRow extends RowNode {
+        private static int lookups;
+
+        private CountingRow(String key, String[] values) {
+            super(key, SCHEMA, values);
+        }
+
+        @Override
+        public IdentifiableNode getChild(String key) {
+            lookups++;
+            return super.getChild(key);
+        }
+    }
+
+    /**
+     * Build a structure holding a file of rows, where only the last row has a name.
+     *
+     * @param rows the amount of rows
+     * @return the structure
+     */
+    private static RootNode fileOfRows(int rows) {
+        RootNode root = new RootNode();
+        root.addChild(new CompositeNode("file"));
+
+        for (int row = 0; row < rows; row++) {
+            String name = row == rows - 1 ? "last" : null;
+            root.addChild(new CountingRow("row " + row, new String[] {String.valueOf(row), name}), "file");
+        }
+
+        return root;
+    }
+
+    /**
+     * Count how often the rows are asked for a cell while looking up a key.
+     *
+     * @param root the structure to look in
+     * @param key the key to look up
+     * @return the amount of times a row was asked for a cell
+     */
+    private static int countLookups(RootNode root, String key) {
+        CountingRow.lookups = 0;
+        root.getChild(key);
+        return CountingRow.lookups;
+    }
+
+    @Test
+    void lookingUpACellDoesNotDependOnTheAmountOfRows() {
+        RootNode small = fileOfRows(10);
+        RootNode large = fileOfRows(10_000);
+
+        assertEquals("last", small.getChild("name").getData());
+        assertEquals("last", large.getChild("name").getData());
+        assertEquals(countLookups(small, "name"), countLookups(large, "name"));
+        assertEquals(countLookups(small, "id"), countLookups(large, "id"));
+        assertEquals(0, countLookups(large, "missing"));
+    }
+
+    @Test
+    void lookingUpACellOfATableDoesNotScanTheRowsAgain() {
+        TableNode table = new TableNode("table");
+        RootNode root = new RootNode(table);
+
+        for (int row = 0; row < 10_000; row++) {
+            String name = row == 9_999 ? "last" : null;
+            root.addChild(new RowNode(String.valueOf(row), SCHEMA, new String[] {String.valueOf(row), name}));
+        }
+
+        assertEquals("last", root.getChild("name").getData());
+        assertEquals(2, root.getNodeDepth("name"));
+        assertEquals("0", root.getChild("id").getData());
+
+        table.removeChild(table.getChild("0"));
+        assertEquals("1", root.getChild("id").getData());
+    }
+
+    @Test
+    void aRemovedCellIsReplacedByTheCellOfTheNextRow() {
+        RootNode root = fileOfRows(3);
+        ((LeafNode) root.getChild("id")).setData(null);
+
+        assertEquals("1", root.getChild("id").getData());
+
+        ((CompositeNode) root.getChildByPath("file/row 1")).getChild("id").setKey("number");
+        assertEquals("2", root.getChild("id").getData());
+        assertEquals("1", root.getChild("number").getData());
+    }
+
+    @Test
+    void aCellAddedToARowCanBeLookedUp() {
+        RootNode root = fileOfRows(3);
+        CompositeNode row = (CompositeNode) root.getChildByPath("file/row 0");
+        row.addChild(new LeafNode("extra", "value"));
+
+        assertEquals("value", root.getChild("extra").getData());
+        assertEquals(3, root.getNodeDepth("extra"));
+    }
+
+    @Test
+    void aRemovedRowIsNoLongerFound() {
+        RootNode root = fileOfRows(3);
+        CompositeNode file = (CompositeNode) root.getChild("file");
+        file.removeChild(file.getChild("row 2"));
+
+        assertNull(root.getChild("name"));
+        assertEquals("0", root.getChild("id").getData());
+    }
+
+    @Test
+    void aChildIsAddedBelowAParentFoundByKeyOrPath() {
+        RootNode root = fileOfRows(2);
+        root.addChild(new CompositeNode("nested"), "file");
+        root.addChild(new LeafNode("leaf", "data"), "file/nested");
+
+        assertEquals(3, root.getNodeDepth("leaf"));
+        assertEquals("data", root.getChild("leaf").getData());
+    }
+}
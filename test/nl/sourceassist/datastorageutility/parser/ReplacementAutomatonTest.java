@@ -0,0 +1,133 @@
+package nl.sourceassist.datastorageutility.parser;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Compares the ReplacementAutomaton with a brute-force reference of its leftmost-longest rule.
+ */
+class ReplacementAutomatonTest {
+
+    /**
+     * The characters of the generated keys and texts. The small alphabet makes keys prefixes, suffixes and infixes
+     * of each other, which exercises the failure links. It includes a character outside ASCII and a lone surrogate.
+     */
+    private static final String ALPHABET = "abcé\uD83D";
+
+    /**
+     * Replace the matches of a dictionary the slow way: at every position the longest key starting there is replaced,
+     * after which the scan continues behind it. Positions where no key starts are copied.
+     *
+     * @param dictionary the strings to replace, mapped to their replacements
+     * @param text the text to replace matches in
+     * @return the text with its matches replaced
+     */
+    private static String reference(Map<String, String> dictionary, String text) {
+        StringBuilder result = new StringBuilder();
+        int position = 0;
+
+        while (position < text.length()) {
+            String longest = null;
+
+            for (String key : dictionary.keySet()) {
+                if (text.startsWith(key, position) && (longest == null || key.length() > longest.length())) {
+                    longest = key;
+                }
+            }
+
+            if (longest == null) {
+                result.append(text.charAt(position++));
+            }
+
+            else {
+                result.append(dictionary.get(longest));
+                position += longest.length();
+            }
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Generate a string of random characters.
+     *
+     * @param random the source of the characters
+     * @param characters the characters to choose from
+     * @param length the length of the string
+     * @return the generated string
+     */
+    private static String generate(Random random, String characters, int length) {
+        StringBuilder result = new StringBuilder();
+
+        for (int i = 0; i < length; i++) {
+            result.append(characters.charAt(random.nextInt(characters.length())));
+        }
+
+        return result.toString();
+    }
+
+    @Test
+    void replacesLikeTheReference() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 5_000; round++) {
+            Map<String, String> dictionary = new LinkedHashMap<>();
+            int keys = 1 + random.nextInt(8);
+
+            for (int i = 0; i < keys; i++) {
+                String key = generate(random, ALPHABET, 1 + random.nextInt(4));
+                dictionary.put(key, generate(random, "XYZ", random.nextInt(3)));
+            }
+
+            ReplacementAutomaton automaton = new ReplacementAutomaton(dictionary);
+
+            for (int i = 0; i < 20; i++) {
+                String text = generate(random, ALPHABET, random.nextInt(30));
+                String expected = reference(dictionary, text);
+                String replaced = automaton.replace(text);
+
+                assertEquals(expected, replaced, () -> "dictionary " + dictionary + ", text " + text);
+
+                if (expected.equals(text)) {
+                    assertSame(text, replaced, () -> "copied without a match: " + text);
+                }
+            }
+        }
+    }
+
+    @Test
+    void prefersTheLongestOfTheMatchesStartingFirst() {
+        ReplacementAutomaton automaton = new ReplacementAutomaton(Map.of("he", "1", "hers", "2", "she", "3"));
+
+        assertEquals("3 2", automaton.replace("she hers"));
+        assertEquals("3rs", automaton.replace("shers"));
+        assertEquals("12", automaton.replace("hehers"));
+    }
+
+    @Test
+    void removesStringsWithoutReplacement() {
+        Map<String, String> dictionary = new HashMap<>();
+        dictionary.put("remove", null);
+
+        assertEquals("keep", new ReplacementAutomaton(dictionary).replace("keepremove"));
+    }
+
+    @Test
+    void leavesNullAlone() {
+        assertNull(new ReplacementAutomaton(Map.of("a", "b")).replace(null));
+    }
+
+    @Test
+    void rejectsEmptyStringsToReplace() {
+        assertThrows(IllegalArgumentException.class, () -> new ReplacementAutomaton(Map.of("", "a")));
+    }
+}